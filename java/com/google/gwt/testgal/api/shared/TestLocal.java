@@ -17,7 +17,9 @@ package com.google.gwt.testgal.api.shared;
 
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.List;
 
 /**
  * Provides a variable that's local to each JUnit test in a test suite.
@@ -30,18 +32,27 @@ import java.util.IdentityHashMap;
  * both to the test runner and the helper class.  For example,
  * see {@link TestOutput#OUTPUT_LISTENERS}. </p>
  *
- * <p> TestGal doesn't need thread-safety because it runs in GWT, but
- * this class is thread-safe anyway. </p>
+ * <p> This class is thread-safe, since the JVM test runner runs tests
+ * concurrently. Tests call {@link #get} much more often than test runners call
+ * {@link #set} and {@link #unset}, so get() doesn't lock. The values are spread
+ * over several maps by identity hash code, and each map is copied when it
+ * changes rather than modified, so a reader always sees a complete map.
+ * (In GWT, there's only one thread and the locking has no effect.) </p>
  *
  * @author Brian Slesinsky
  */
 public class TestLocal<R> {
+  private static final int STRIPE_COUNT = 16;
+
   private String callerName;
-  private final IdentityHashMap<TestCase, R> values;
+  private final List<Stripe<R>> stripes;
 
   protected TestLocal(String callerName) {
     this.callerName = callerName;
-    this.values = new IdentityHashMap<TestCase, R>();
+    this.stripes = new ArrayList<Stripe<R>>(STRIPE_COUNT);
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      stripes.add(new Stripe<R>());
+    }
   }
 
   /**
@@ -51,13 +62,18 @@ public class TestLocal<R> {
    * @throws IllegalStateException if a resource has already been
    * registered.
    */
-  public synchronized void set(TestCase test, R newValue) {
-    if (values.containsKey(test)) {
-      throw new IllegalStateException(
-          "Value already set for " + test.getName()
-          + " in TestLocal created by " + callerName);
+  public void set(TestCase test, R newValue) {
+    Stripe<R> stripe = getStripe(test);
+    synchronized (stripe) {
+      if (stripe.values.containsKey(test)) {
+        throw new IllegalStateException(
+            "Value already set for " + test.getName()
+            + " in TestLocal created by " + callerName);
+      }
+      IdentityHashMap<TestCase, R> newValues = new IdentityHashMap<TestCase, R>(stripe.values);
+      newValues.put(test, newValue);
+      stripe.values = newValues;
     }
-    values.put(test, newValue);
   }
 
   /**
@@ -66,17 +82,22 @@ public class TestLocal<R> {
    *
    * @throws IllegalStateException if the resource wasn't previously registered.
    */
-  public synchronized void unset(TestCase test, R oldValue) {
-    if (values.get(test) != oldValue) {
-      throw new IllegalStateException(
-          "Value not previously set for " + test.getName()
-          + " in TestLocal created by " + callerName);
+  public void unset(TestCase test, R oldValue) {
+    Stripe<R> stripe = getStripe(test);
+    synchronized (stripe) {
+      if (stripe.values.get(test) != oldValue) {
+        throw new IllegalStateException(
+            "Value not previously set for " + test.getName()
+            + " in TestLocal created by " + callerName);
+      }
+      IdentityHashMap<TestCase, R> newValues = new IdentityHashMap<TestCase, R>(stripe.values);
+      newValues.remove(test);
+      stripe.values = newValues;
     }
-    values.remove(test);
   }
 
-  public synchronized R get(TestCase testCase, R defaultResource) {
-    R result = values.get(testCase);
+  public R get(TestCase testCase, R defaultResource) {
+    R result = getStripe(testCase).values.get(testCase);
     return result == null ? defaultResource : result;
   }
 
@@ -87,4 +108,22 @@ public class TestLocal<R> {
   public static <R> TestLocal<R> create(Class<?> caller) {
     return new TestLocal<R>(caller.getName());
   }
+
+  // ==== end of public methods ===
+
+  private Stripe<R> getStripe(TestCase test) {
+    int hash = System.identityHashCode(test);
+    return stripes.get((hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1));
+  }
+
+  /**
+   * Some of the values in a TestLocal.
+   */
+  private static class Stripe<R> {
+    /**
+     * The values for the tests in this stripe. The map is replaced rather than
+     * modified, so it can be read without locking.
+     */
+    volatile IdentityHashMap<TestCase, R> values = new IdentityHashMap<TestCase, R>();
+  }
 }
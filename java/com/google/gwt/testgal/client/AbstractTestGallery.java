@@ -19,16 +19,23 @@ import com.google.gwt.core.client.EntryPoint;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.testgal.client.impl.GalleryRequest;
 import com.google.gwt.testgal.client.impl.GalleryRunner;
+import com.google.gwt.testgal.client.impl.RunOrder;
 import com.google.gwt.testgal.client.impl.Section;
+import com.google.gwt.testgal.client.impl.SplitTestClass;
 import com.google.gwt.testgal.client.impl.TestClass;
+import com.google.gwt.testgal.client.impl.TestMethod;
 import com.google.gwt.testgal.client.impl.TestMethods;
 import com.google.gwt.testgal.client.impl.TestSuite;
 import com.google.gwt.testgal.client.impl.util.Lists;
 import com.google.gwt.testgal.client.impl.util.PageHistory;
 import com.google.gwt.testgal.client.impl.util.YieldingCommands;
+import com.google.gwt.testgal.results.shared.ResultService;
+import com.google.gwt.testgal.results.shared.ResultServiceAsync;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.RootPanel;
 
+import java.util.List;
+
 /**
  * Defines an entry point for a gallery of tests that can be run in
  * a web browser.
@@ -65,6 +72,12 @@ import com.google.gwt.user.client.ui.RootPanel;
  */
 public abstract class AbstractTestGallery implements EntryPoint {
 
+  /**
+   * How long the test runner runs tests before letting the browser
+   * update the page, by default.
+   */
+  private static final int DEFAULT_TIME_SLICE_MILLIS = 12;
+
   private final String runnerElementId;
   private final GalleryRequest galleryRequest;
 
@@ -102,6 +115,53 @@ public abstract class AbstractTestGallery implements EntryPoint {
     builder.addDescription(paragraph);
   }
 
+  /**
+   * Sets the maximum number of test methods in each section that may run
+   * at the same time. This saves time when a gallery contains many
+   * asynchronous tests that spend most of their time waiting (for example,
+   * for an RPC), but the tests must not interfere with each other.
+   * The default is one, which runs each test by itself.
+   */
+  public void setConcurrency(int concurrency) {
+    builder.setConcurrency(concurrency);
+  }
+
+  /**
+   * Sets the order in which sections and test methods are run, such as
+   * {@link RunOrder#FAILED_FIRST}. The gallery still shows them in the order
+   * they were added. An "order" query parameter in the page's URL overrides
+   * this; for example, "?order=random&amp;seed=42".
+   */
+  public void setRunOrder(RunOrder order) {
+    builder.setRunOrder(order);
+  }
+
+  /**
+   * Balances the shards selected by the "shard" and "shards" query parameters
+   * using the test times in a saved history, rather than hashing test names.
+   * Every shard must be given exactly the same history, such as one the host
+   * page downloads from a server.
+   * @param savedHistory a history in the format TestGal saves in local storage
+   */
+  public void setShardHistory(String savedHistory) {
+    builder.setShardHistory(savedHistory);
+  }
+
+  /**
+   * Uploads the results of the gallery's tests to the server as they finish,
+   * where they're saved for later comparison. Results are sent in batches
+   * rather than one request per test. The server must map
+   * {@link com.google.gwt.testgal.results.server.ResultServiceImpl} to
+   * the "results" path under the module in its web.xml.
+   *
+   * @param batchSize the most results to send in one request
+   * @param maxDelayMillis the longest a result waits before it's sent
+   */
+  public void uploadResults(int batchSize, int maxDelayMillis) {
+    ResultServiceAsync service = GWT.create(ResultService.class);
+    builder.uploadResults(service, batchSize, maxDelayMillis);
+  }
+
   /**
    * Adds all the tests in a test class to the gallery.  This method
    * should only be called from within defineGallery(), and the first
@@ -123,11 +183,31 @@ public abstract class AbstractTestGallery implements EntryPoint {
    * will appear in the output to write a summary.
    */
   protected void addSection(Object resultFromGwtCreate, String summary) {
+    addSection(resultFromGwtCreate, summary, 0);
+  }
+
+  /**
+   * Adds all the tests in a test class to the gallery, like
+   * {@link #addSection(Object, String)}, and allows up to the given number
+   * of its test methods to run at the same time.
+   *
+   * @param concurrency  The maximum number of this section's test methods to run at once,
+   * or zero to use the gallery's default.
+   * @see #setConcurrency
+   */
+  protected void addSection(Object resultFromGwtCreate, String summary, int concurrency) {
     if (resultFromGwtCreate instanceof TestClass) {
       TestClass testClass = (TestClass) resultFromGwtCreate;
       if (galleryRequest.includes(testClass.__getName())) {
+        List<TestMethod> allMethods = testClass.__getTestMethods();
+        List<TestMethod> methods = selectMethods(testClass.__getName(), allMethods);
+        if (methods.isEmpty() && !allMethods.isEmpty()) {
+          return; // none of its methods were selected
+        }
+        SplitTestClass code = resultFromGwtCreate instanceof SplitTestClass ?
+            (SplitTestClass) resultFromGwtCreate : null;
         builder.addSection(new Section(testClass.__getName(), summary,
-            testClass.__getTestMethods()));
+            methods, concurrency, code));
       }
     } else {
       builder.addSection(makeInvalidSection(resultFromGwtCreate));
@@ -143,7 +223,18 @@ public abstract class AbstractTestGallery implements EntryPoint {
       return;
     }
 
-    YieldingCommands.start(new GalleryRunner(this, panel, PageHistory.ENABLED));
+    YieldingCommands.start(new GalleryRunner(this, panel, PageHistory.ENABLED),
+        getTimeSliceMillis());
+  }
+
+  /**
+   * Returns how many milliseconds the test runner may spend running tests
+   * before it yields to the browser so that the page can be updated.
+   * Subclasses may override this; returning zero makes the runner yield
+   * before every test, which is slower but updates the page more often.
+   */
+  protected int getTimeSliceMillis() {
+    return DEFAULT_TIME_SLICE_MILLIS;
   }
 
   /**
@@ -151,10 +242,35 @@ public abstract class AbstractTestGallery implements EntryPoint {
    */
   public void addToSuite(TestSuite.Builder out) {
     this.builder = out;
+    out.setTimeSliceMillis(getTimeSliceMillis());
     defineGallery();
+    if (galleryRequest.getRunOrder() != null) {
+      GWT.log("running tests in " + galleryRequest.getRunOrder() + " order", null);
+      out.setRunOrder(galleryRequest.getRunOrder());
+    }
+    if (galleryRequest.isFailedOnly()) {
+      out.setFailedOnly(true);
+    }
+    if (galleryRequest.isSharded()) {
+      out.setShard(galleryRequest.getShard(), galleryRequest.getShardCount());
+    }
     this.builder = null;
   }
 
+  /**
+   * Returns the methods that the "run" and "skip" query parameters select.
+   * (The others don't get a test runner or a result page.)
+   */
+  private List<TestMethod> selectMethods(String className, List<TestMethod> methods) {
+    List<TestMethod> result = Lists.newList();
+    for (TestMethod method : methods) {
+      if (galleryRequest.includes(className, method.getName())) {
+        result.add(method);
+      }
+    }
+    return result.size() == methods.size() ? methods : result;
+  }
+
   private Section makeInvalidSection(Object invalidArgument) {
     String galleryClassName = getClass().getName();
     if (invalidArgument == null) {
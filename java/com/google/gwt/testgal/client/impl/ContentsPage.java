@@ -19,6 +19,7 @@ import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.testgal.client.impl.util.HtmlWriter;
 import com.google.gwt.testgal.client.impl.util.PageHistory;
+import com.google.gwt.testgal.client.impl.util.TraceLog;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.FlowPanel;
@@ -53,9 +54,15 @@ class ContentsPage extends Composite {
         .setRunAll()
         .setAnchorText("Run all tests")
         .build());
+    panel.add(galleryRequestBuilder
+        .setRunFailed()
+        .setAnchorText("Rerun failed tests")
+        .addStyleName("tg-rerun-link")
+        .build());
+    panel.add(makeTraceLink());
 
     if (suite.getSections().isEmpty()) {
-      html.textP("TODO: add some test classes to this gallery.");
+      html.textP(suite.getEmptyMessage());
       return;
     }
 
@@ -74,6 +81,43 @@ class ContentsPage extends Composite {
     }
   }
 
+  /**
+   * Makes a link that saves a trace of the tests that ran so far,
+   * which can be loaded into a trace viewer such as Chrome's about:tracing.
+   */
+  private static Label makeTraceLink() {
+    Label link = new Label("Download a trace of this run");
+    link.addStyleName("tg-trace-link");
+    link.addClickHandler(new ClickHandler() {
+      public void onClick(ClickEvent event) {
+        saveFile("testgal-trace.json", TraceLog.get().toJson());
+      }
+    });
+    return link;
+  }
+
+  /**
+   * Asks the browser to save some text as a file. (Browsers that can't
+   * do that get a new window with the text in it.)
+   */
+  private static native void saveFile(String filename, String text) /*-{
+    if ($wnd.Blob && $wnd.URL && $wnd.URL.createObjectURL) {
+      var url = $wnd.URL.createObjectURL(new $wnd.Blob([text], {type: 'application/json'}));
+      var a = $doc.createElement('a');
+      a.href = url;
+      a.download = filename;
+      $doc.body.appendChild(a);
+      a.click();
+      $doc.body.removeChild(a);
+      $wnd.setTimeout(function() { $wnd.URL.revokeObjectURL(url); }, 1000);
+    } else {
+      var win = $wnd.open('', '_blank');
+      win.document.open('text/plain');
+      win.document.write(text);
+      win.document.close();
+    }
+  }-*/;
+
   private static Label makeSectionLink(final Section section, final PageHistory history) {
     Label header = new Label(section.getName());
     header.addStyleName("tg-contents-heading");
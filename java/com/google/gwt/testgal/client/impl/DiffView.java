@@ -15,29 +15,114 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.testgal.client.impl.util.Diff;
+import com.google.gwt.testgal.client.impl.util.HtmlWriter;
+import com.google.gwt.testgal.client.impl.util.Lists;
 import com.google.gwt.testgal.client.impl.util.Widgets;
+import com.google.gwt.testgal.client.impl.util.Diff.Edit;
+import com.google.gwt.testgal.client.impl.util.Diff.Op;
+import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.ui.Composite;
+import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.HorizontalPanel;
+import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.Panel;
+import com.google.gwt.user.client.ui.UIObject;
+import com.google.gwt.user.client.ui.Widget;
 
+import java.util.List;
 
 /**
  * A view that shows the difference between two objects.
  *
+ * <p>Strings are compared a line at a time, and lines that changed are compared
+ * a character at a time. Only the lines near a difference are shown; other
+ * unchanged lines are collapsed, and can be expanded by clicking on them.
+ * Very long lines and blocks of changed lines are shortened, so that a small
+ * difference between two large strings doesn't take long to display.</p>
+ *
+ * <p>Widgets and DOM elements are compared as trees using {@link ElementDiff},
+ * and the differences are shown in an {@link ElementTreeView}.</p>
+ *
  * @author Brian Slesinsky
  */
 class DiffView extends Composite {
 
-  DiffView(Object expected, Object actual, String caption) {
+  /** How many unchanged lines to show before and after each difference. */
+  static final int CONTEXT_LINES = 3;
+
+  /** How many deleted or inserted lines in a row to show before collapsing the rest. */
+  static final int MAX_CHANGED_LINES = 100;
 
-    HorizontalPanel panel = new HorizontalPanel();
-    panel.addStyleName("tg-diff");
+  /** How many unchanged characters to show before and after a difference within a line. */
+  static final int CONTEXT_CHARS = 40;
+
+  /** How many changed characters in a row to show within a line. */
+  static final int MAX_CHANGED_CHARS = 1000;
+
+  /** The budget for comparing two lines a character at a time. */
+  private static final int CHAR_DIFF_BUDGET = 100000;
+
+  DiffView(Object expected, Object actual, String caption) {
     if (expected == null || actual == null) {
+      HorizontalPanel panel = new HorizontalPanel();
+      panel.addStyleName("tg-diff");
       addGenericDiff(panel, expected, actual);
+      initWidget(Widgets.withCaption(panel, caption));
+    } else if (asElement(expected) != null && asElement(actual) != null) {
+      initWidget(Widgets.withCaption(makeElementDiff(asElement(expected), asElement(actual)),
+          caption));
     } else {
-      addStringDiff(panel, expected.toString(), actual.toString());
+      FlowPanel panel = new FlowPanel();
+      panel.addStyleName("tg-diff-text");
+      new TextDiffWriter(panel, asText(expected), asText(actual)).write();
+      initWidget(Widgets.withCaption(panel, caption));
     }
-    initWidget(Widgets.withCaption(panel, caption));
+  }
+
+  /**
+   * Shows the differences between two DOM trees.
+   */
+  private static Widget makeElementDiff(Element expected, Element actual) {
+    List<ElementDiff.Change> changes = ElementDiff.compare(expected, actual);
+    int count = 0;
+    for (ElementDiff.Change change : changes) {
+      count += change.countChanges();
+    }
+
+    FlowPanel panel = new FlowPanel();
+    panel.addStyleName("tg-diff-tree");
+    Label summary = new Label(count == 0 ? "(The expected and actual HTML are the same.)"
+        : count == 1 ? "1 difference:" : count + " differences:");
+    summary.addStyleName("tg-diff-note");
+    panel.add(summary);
+    ElementTreeView tree = new ElementTreeView(changes);
+    tree.enableWidget();
+    panel.add(tree);
+    return panel;
+  }
+
+  /**
+   * Returns the DOM element for a widget or element, or null for other objects.
+   */
+  private static Element asElement(Object value) {
+    if (value instanceof UIObject) {
+      return ((UIObject) value).getElement();
+    } else if (value instanceof Element) {
+      return (Element) value;
+    } else {
+      return null;
+    }
+  }
+
+  private static String asText(Object value) {
+    if (value instanceof Element) {
+      return DOM.toString(((Element) value).<com.google.gwt.user.client.Element>cast());
+    }
+    return value.toString();
   }
 
   /**
@@ -49,22 +134,204 @@ class DiffView extends Composite {
   }
 
   /**
-   * Shows two string objects, highlighting the point where the first difference is.
-   * A tooltip shows the character value at the first difference.
+   * Writes a line-by-line diff of two strings to a panel. Lines are written
+   * as HTML using a buffered HtmlWriter; collapsed lines are separate widgets
+   * so they can be clicked on.
    */
-  private void addStringDiff(Panel panel, String expectedString, String actualString) {
-    int firstDiff = findFirstDiffIndex(expectedString, actualString);
-    panel.add(Snapshots.makeStringSnapshotWithError(expectedString, firstDiff));
-    panel.add(Snapshots.makeStringSnapshotWithError(actualString, firstDiff));
-  }
+  private static class TextDiffWriter {
+    private final FlowPanel panel;
+    private final String[] oldLines;
+    private final String[] newLines;
+    private HtmlWriter html;
+
+    TextDiffWriter(FlowPanel panel, String expected, String actual) {
+      this.panel = panel;
+      this.oldLines = Diff.splitLines(expected);
+      this.newLines = Diff.splitLines(actual);
+    }
+
+    void write() {
+      List<Edit> edits = Diff.lines(oldLines, newLines, Diff.DEFAULT_BUDGET);
+      if (edits.size() == 1 && edits.get(0).getOp() == Op.EQUAL) {
+        Label same = new Label("(The expected and actual values have the same text.)");
+        same.addStyleName("tg-diff-note");
+        panel.add(same);
+      }
+
+      for (int i = 0; i < edits.size(); i++) {
+        Edit edit = edits.get(i);
+        switch (edit.getOp()) {
+          case EQUAL:
+            writeUnchanged(edit, i == 0, i == edits.size() - 1);
+            break;
+          case DELETE:
+            Edit next = i + 1 < edits.size() ? edits.get(i + 1) : null;
+            if (next != null && next.getOp() == Op.INSERT) {
+              writeReplacement(edit, next);
+              i++;
+            } else {
+              writeChanged("-", "tg-diff-removed", oldLines, edit.getOldStart(), edit.getOldEnd());
+            }
+            break;
+          case INSERT:
+            writeChanged("+", "tg-diff-added", newLines, edit.getNewStart(), edit.getNewEnd());
+            break;
+        }
+      }
+      flush();
+    }
 
-  private int findFirstDiffIndex(String expected, String actual) {
-    int end = Math.min(expected.length(), actual.length());
-    for (int i = 0; i < end; i++) {
-      if (expected.charAt(i) != actual.charAt(i)) {
-        return i;
+    /**
+     * Writes the unchanged lines near a difference and collapses the rest.
+     */
+    private void writeUnchanged(Edit edit, boolean isFirst, boolean isLast) {
+      int start = edit.getOldStart();
+      int end = edit.getOldEnd();
+      int headEnd = isFirst ? start : Math.min(end, start + CONTEXT_LINES);
+      int tailStart = isLast ? end : Math.max(headEnd, end - CONTEXT_LINES);
+
+      writeLines(" ", "tg-diff-context", oldLines, start, headEnd);
+      if (tailStart > headEnd) {
+        addCollapsedLines(" ", "tg-diff-context", oldLines, headEnd, tailStart,
+            "unchanged");
+      }
+      writeLines(" ", "tg-diff-context", oldLines, tailStart, end);
+    }
+
+    /**
+     * Writes a block of deleted or inserted lines, collapsing any lines
+     * past the maximum.
+     */
+    private void writeChanged(String marker, String style, String[] lines, int start, int end) {
+      int shownEnd = Math.min(end, start + MAX_CHANGED_LINES);
+      writeLines(marker, style, lines, start, shownEnd);
+      if (shownEnd < end) {
+        addCollapsedLines(marker, style, lines, shownEnd, end, "more");
+      }
+    }
+
+    /**
+     * Writes a block of deleted lines followed by the lines that replaced them.
+     * Lines are compared a character at a time, pairing them up in order.
+     */
+    private void writeReplacement(Edit delete, Edit insert) {
+      int pairs = Math.min(Math.min(delete.getLength(), insert.getLength()), MAX_CHANGED_LINES);
+      List<List<Edit>> charDiffs = Lists.newList();
+      for (int i = 0; i < pairs; i++) {
+        charDiffs.add(Diff.chars(oldLines[delete.getOldStart() + i],
+            newLines[insert.getNewStart() + i], CHAR_DIFF_BUDGET));
+      }
+
+      for (int i = 0; i < pairs; i++) {
+        writeLineWithChanges("-", "tg-diff-removed", oldLines[delete.getOldStart() + i],
+            charDiffs.get(i), Op.DELETE);
+      }
+      writeChanged("-", "tg-diff-removed", oldLines, delete.getOldStart() + pairs,
+          delete.getOldEnd());
+
+      for (int i = 0; i < pairs; i++) {
+        writeLineWithChanges("+", "tg-diff-added", newLines[insert.getNewStart() + i],
+            charDiffs.get(i), Op.INSERT);
+      }
+      writeChanged("+", "tg-diff-added", newLines, insert.getNewStart() + pairs,
+          insert.getNewEnd());
+    }
+
+    /**
+     * Writes one side of a changed line, highlighting the characters
+     * that differ and shortening long runs of unchanged characters.
+     * @param changeOp the kind of edit to highlight (edits of the other kind are skipped)
+     */
+    private void writeLineWithChanges(String marker, String style, String line,
+        List<Edit> charEdits, Op changeOp) {
+      HtmlWriter out = writer();
+      startLine(out, marker, style);
+      for (int i = 0; i < charEdits.size(); i++) {
+        Edit edit = charEdits.get(i);
+        int start = changeOp == Op.DELETE ? edit.getOldStart() : edit.getNewStart();
+        int end = changeOp == Op.DELETE ? edit.getOldEnd() : edit.getNewEnd();
+        if (edit.getOp() == Op.EQUAL) {
+          int headEnd = i == 0 ? start : Math.min(end, start + CONTEXT_CHARS);
+          int tailStart = i == charEdits.size() - 1 ? end : Math.max(headEnd, end - CONTEXT_CHARS);
+          out.text(line.substring(start, headEnd));
+          if (tailStart > headEnd) {
+            writeElision(out, tailStart - headEnd, "unchanged");
+          }
+          out.text(line.substring(tailStart, end));
+        } else if (edit.getOp() == changeOp) {
+          int shownEnd = Math.min(end, start + MAX_CHANGED_CHARS);
+          out.startTag("span", "class", "tg-diff-selected");
+          out.text(line.substring(start, shownEnd));
+          out.endTag("span");
+          if (shownEnd < end) {
+            writeElision(out, end - shownEnd, "more");
+          }
+        }
       }
+      out.endTag("div");
+    }
+
+    private void writeLines(String marker, String style, String[] lines, int start, int end) {
+      writeLines(writer(), marker, style, lines, start, end);
+    }
+
+    private void writeElision(HtmlWriter out, int count, String kind) {
+      out.startTag("span", "class", "tg-diff-elided");
+      out.text("… " + count + " " + kind + " characters …");
+      out.endTag("span");
+    }
+
+    /**
+     * Adds a placeholder for some lines, which shows them when clicked.
+     */
+    private void addCollapsedLines(final String marker, final String style,
+        final String[] lines, final int start, final int end, String kind) {
+      flush();
+      final Label placeholder = new Label("… " + (end - start) + " " + kind + " lines …");
+      placeholder.addStyleName("tg-diff-expander");
+      placeholder.setTitle("Click to show these lines");
+      placeholder.addClickHandler(new ClickHandler() {
+        public void onClick(ClickEvent event) {
+          HtmlWriter out = HtmlWriter.buffered();
+          writeLines(out, marker, style, lines, start, end);
+          int index = panel.getWidgetIndex(placeholder);
+          panel.insert(Widgets.fromDomNode(out.getTopElement()), index);
+          panel.remove(placeholder);
+        }
+      });
+      panel.add(placeholder);
+    }
+
+    private HtmlWriter writer() {
+      if (html == null) {
+        html = HtmlWriter.buffered();
+      }
+      return html;
+    }
+
+    /** Adds any lines written so far to the panel. */
+    private void flush() {
+      if (html != null) {
+        panel.add(Widgets.fromDomNode(html.getTopElement()));
+        html = null;
+      }
+    }
+
+    private static void writeLines(HtmlWriter out, String marker, String style,
+        String[] lines, int start, int end) {
+      for (int i = start; i < end; i++) {
+        startLine(out, marker, style);
+        out.text(lines[i]);
+        out.endTag("div");
+      }
+    }
+
+    /** Starts a line's div; the caller writes its text and ends it. */
+    private static void startLine(HtmlWriter out, String marker, String style) {
+      out.startTag("div", "class", "tg-diff-line " + style);
+      out.startTag("span", "class", "tg-diff-marker");
+      out.text(marker);
+      out.endTag("span");
     }
-    return end;
   }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+import com.google.gwt.dom.client.NodeList;
+import com.google.gwt.testgal.client.impl.util.Diff;
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.impl.util.Diff.Edit;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the differences between two DOM trees.
+ *
+ * <p>Both trees are walked once. At each level, the child nodes are matched up
+ * by a key (the tag name and id for an element, or the node type otherwise)
+ * using {@link Diff}, and the nodes that match are compared recursively.
+ * The result is a tree of {@link Change}s in which each unchanged subtree
+ * is a single node, so it's small when the differences are small.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class ElementDiff {
+
+  private static final List<String> NO_ATTRIBUTES = Collections.emptyList();
+  private static final List<Change> NO_CHANGES = Collections.emptyList();
+
+  enum Kind {
+    /** The node and everything underneath it are the same. */
+    SAME,
+    /** The node matches, but its attributes, text or descendants differ. */
+    CHANGED,
+    /** The node is only in the expected tree. */
+    REMOVED,
+    /** The node is only in the actual tree. */
+    ADDED
+  }
+
+  /**
+   * One node in the edit script.
+   */
+  static class Change {
+    private final Kind kind;
+    private final Node oldNode;
+    private final Node newNode;
+    private final List<String> changedAttributes;
+    private final List<Change> children;
+
+    Change(Kind kind, Node oldNode, Node newNode, List<String> changedAttributes,
+        List<Change> children) {
+      this.kind = kind;
+      this.oldNode = oldNode;
+      this.newNode = newNode;
+      this.changedAttributes = changedAttributes;
+      this.children = children;
+    }
+
+    Kind getKind() {
+      return kind;
+    }
+
+    /** The node in the expected tree, or null if it was added. */
+    Node getOldNode() {
+      return oldNode;
+    }
+
+    /** The node in the actual tree, or null if it was removed. */
+    Node getNewNode() {
+      return newNode;
+    }
+
+    /** The names of the attributes whose values differ, in sorted order. */
+    List<String> getChangedAttributes() {
+      return changedAttributes;
+    }
+
+    /** The changes to the child nodes. (Empty unless the kind is CHANGED.) */
+    List<Change> getChildren() {
+      return children;
+    }
+
+    /**
+     * Returns the number of nodes that were added, removed, or changed
+     * (not counting a parent node whose only change is in its children).
+     */
+    int countChanges() {
+      switch (kind) {
+        case SAME:
+          return 0;
+        case CHANGED:
+          int count = changedAttributes.isEmpty() && oldNode.getNodeType() == Node.ELEMENT_NODE
+              ? 0 : 1;
+          for (Change child : children) {
+            count += child.countChanges();
+          }
+          return count;
+        default:
+          return 1;
+      }
+    }
+  }
+
+  private ElementDiff() {}
+
+  /**
+   * Compares two elements, returning the changes at the top level:
+   * either a single SAME or CHANGED node, or if the elements don't match,
+   * a REMOVED node followed by an ADDED node.
+   */
+  static List<Change> compare(Element expected, Element actual) {
+    List<Node> oldNodes = Lists.newList();
+    oldNodes.add(expected);
+    List<Node> newNodes = Lists.newList();
+    newNodes.add(actual);
+    return compareLists(oldNodes, newNodes);
+  }
+
+  // ======== end of public methods ========
+
+  private static List<Change> compareLists(List<Node> oldNodes, List<Node> newNodes) {
+    List<Edit> edits = Diff.lines(makeKeys(oldNodes), makeKeys(newNodes), Diff.DEFAULT_BUDGET);
+
+    List<Change> result = Lists.newList();
+    for (Edit edit : edits) {
+      switch (edit.getOp()) {
+        case EQUAL:
+          for (int i = 0; i < edit.getLength(); i++) {
+            result.add(compareNodes(oldNodes.get(edit.getOldStart() + i),
+                newNodes.get(edit.getNewStart() + i)));
+          }
+          break;
+        case DELETE:
+          for (int i = edit.getOldStart(); i < edit.getOldEnd(); i++) {
+            result.add(new Change(Kind.REMOVED, oldNodes.get(i), null, NO_ATTRIBUTES, NO_CHANGES));
+          }
+          break;
+        case INSERT:
+          for (int i = edit.getNewStart(); i < edit.getNewEnd(); i++) {
+            result.add(new Change(Kind.ADDED, null, newNodes.get(i), NO_ATTRIBUTES, NO_CHANGES));
+          }
+          break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compares two nodes that have the same key.
+   */
+  private static Change compareNodes(Node oldNode, Node newNode) {
+    if (oldNode.getNodeType() != Node.ELEMENT_NODE) {
+      Kind kind = equal(oldNode.getNodeValue(), newNode.getNodeValue()) ? Kind.SAME : Kind.CHANGED;
+      return new Change(kind, oldNode, newNode, NO_ATTRIBUTES, NO_CHANGES);
+    }
+
+    Element oldElement = (Element) oldNode;
+    Element newElement = (Element) newNode;
+    List<String> changedAttributes = compareAttributes(oldElement, newElement);
+    List<Change> children = compareLists(getChildren(oldElement), getChildren(newElement));
+
+    boolean same = changedAttributes.isEmpty();
+    for (Change child : children) {
+      same = same && child.getKind() == Kind.SAME;
+    }
+    if (same) {
+      return new Change(Kind.SAME, oldNode, newNode, NO_ATTRIBUTES, NO_CHANGES);
+    }
+    return new Change(Kind.CHANGED, oldNode, newNode, changedAttributes, children);
+  }
+
+  private static List<String> compareAttributes(Element oldElement, Element newElement) {
+    List<String> oldNames = ElementTreeView.getAttributeNames(oldElement);
+    List<String> newNames = ElementTreeView.getAttributeNames(newElement);
+
+    List<String> result = Lists.newList();
+    for (String name : oldNames) {
+      if (!newNames.contains(name)
+          || !equal(oldElement.getAttribute(name), newElement.getAttribute(name))) {
+        result.add(name);
+      }
+    }
+    for (String name : newNames) {
+      if (!oldNames.contains(name)) {
+        result.add(name);
+      }
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  private static List<Node> getChildren(Element element) {
+    List<Node> result = Lists.newList();
+    NodeList<Node> nodeList = element.getChildNodes();
+    for (int i = 0; i < nodeList.getLength(); i++) {
+      result.add(nodeList.getItem(i));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the keys used to decide which nodes to compare with each other.
+   */
+  private static String[] makeKeys(List<Node> nodes) {
+    String[] keys = new String[nodes.size()];
+    for (int i = 0; i < keys.length; i++) {
+      Node node = nodes.get(i);
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Element element = (Element) node;
+        keys[i] = element.getTagName().toLowerCase() + "#" + element.getId();
+      } else {
+        keys[i] = "#" + node.getNodeType();
+      }
+    }
+    return keys;
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -21,8 +21,12 @@ import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.NodeList;
+import com.google.gwt.event.logical.shared.OpenEvent;
+import com.google.gwt.event.logical.shared.OpenHandler;
+import com.google.gwt.testgal.client.impl.util.HtmlWriter;
 import com.google.gwt.testgal.client.impl.util.LazyPanel;
 import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.impl.util.Widgets;
 import com.google.gwt.user.client.ui.Tree;
 import com.google.gwt.user.client.ui.TreeItem;
 import com.google.gwt.user.client.ui.Widget;
@@ -34,20 +38,47 @@ import java.util.List;
 /**
  * Represents an HTML element and its children as a tree.
  *
+ * <p>It can also show the differences between two elements, as found by
+ * {@link ElementDiff}. Nodes that were added, removed, or changed are
+ * highlighted, and subtrees that are the same are collapsed and filled in
+ * only when opened.</p>
+ *
  * @author Brian Slesinsky
  */
 class ElementTreeView extends LazyPanel {
 
   private final Element elementToShow;
+  private final List<ElementDiff.Change> changesToShow;
 
   public ElementTreeView(Element elementToShow) {
     this.elementToShow = elementToShow;
+    this.changesToShow = null;
+  }
+
+  /**
+   * Creates a view of the differences between two elements.
+   * @param changesToShow the top-level changes from {@link ElementDiff#compare}
+   */
+  public ElementTreeView(List<ElementDiff.Change> changesToShow) {
+    this.elementToShow = null;
+    this.changesToShow = changesToShow;
   }
 
   @Override
   protected Widget createWidget() {
     Tree tree = new Tree();
-    tree.addItem(makeTreeItem(elementToShow));
+    if (changesToShow == null) {
+      tree.addItem(makeTreeItem(elementToShow));
+    } else {
+      for (ElementDiff.Change change : changesToShow) {
+        tree.addItem(makeDiffItem(change));
+      }
+      tree.addOpenHandler(new OpenHandler<TreeItem>() {
+        public void onOpen(OpenEvent<TreeItem> event) {
+          fillInCollapsedItem(event.getTarget());
+        }
+      });
+    }
     return tree;
   }
 
@@ -70,6 +101,115 @@ class ElementTreeView extends LazyPanel {
     return result;
   }
 
+  /**
+   * Makes the tree item for a node in the diff.
+   */
+  static TreeItem makeDiffItem(ElementDiff.Change change) {
+    switch (change.getKind()) {
+      case SAME:
+        return makeCollapsedItem(change.getNewNode(), null);
+      case REMOVED:
+        return makeCollapsedItem(change.getOldNode(), "tg-diff-removed");
+      case ADDED:
+        return makeCollapsedItem(change.getNewNode(), "tg-diff-added");
+    }
+
+    if (change.getNewNode().getNodeType() != Node.ELEMENT_NODE) {
+      HtmlWriter out = new HtmlWriter();
+      writeValue(out, change.getOldNode().getNodeValue(), "tg-diff-removed");
+      out.text(" ");
+      writeValue(out, change.getNewNode().getNodeValue(), "tg-diff-added");
+      return new TreeItem(Widgets.fromDomNode(out.getTopElement()));
+    }
+
+    TreeItem result = new TreeItem();
+    result.setWidget(makeChangedTagLabel(change));
+    for (ElementDiff.Change child : change.getChildren()) {
+      result.addItem(makeDiffItem(child));
+    }
+    result.setState(true);
+    return result;
+  }
+
+  /**
+   * Makes a tree item for a node without its children, which are added
+   * by {@link #fillInCollapsedItem} when it's opened.
+   * @param style a style name for the node's label, or null for none
+   */
+  private static TreeItem makeCollapsedItem(Node node, String style) {
+    Label label;
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      label = makeTagLabel((Element) node);
+    } else {
+      label = new Label(node.getNodeValue());
+    }
+    if (style != null) {
+      label.addStyleName(style);
+    }
+
+    TreeItem result = new TreeItem();
+    result.setWidget(label);
+    if (node.getNodeType() == Node.ELEMENT_NODE && node.hasChildNodes()) {
+      result.setUserObject(node);
+      result.addItem("...");
+    }
+    return result;
+  }
+
+  private static void fillInCollapsedItem(TreeItem item) {
+    if (!(item.getUserObject() instanceof Element)) {
+      return;
+    }
+    Element element = (Element) item.getUserObject();
+    item.setUserObject(null);
+    item.removeItems();
+    TreeItem filled = makeTreeItem(element);
+    while (filled.getChildCount() > 0) {
+      TreeItem child = filled.getChild(0);
+      filled.removeItem(child);
+      item.addItem(child);
+    }
+  }
+
+  /**
+   * Makes a label for an element whose attributes changed, showing the
+   * expected and actual values of each changed attribute.
+   */
+  private static Widget makeChangedTagLabel(ElementDiff.Change change) {
+    Element oldElement = (Element) change.getOldNode();
+    Element newElement = (Element) change.getNewNode();
+    List<String> changed = change.getChangedAttributes();
+    List<String> oldNames = getAttributeNames(oldElement);
+    List<String> newNames = getAttributeNames(newElement);
+
+    HtmlWriter out = new HtmlWriter();
+    out.startTag("span", "class", changed.isEmpty() ? "tg-tag" : "tg-tag tg-diff-changed");
+    out.text("<" + newElement.getTagName());
+    for (String name : newNames) {
+      if (!changed.contains(name)) {
+        out.text(" " + name + "=\"" + newElement.getAttribute(name) + "\"");
+      }
+    }
+    for (String name : changed) {
+      out.text(" " + name + "=");
+      if (oldNames.contains(name)) {
+        writeValue(out, oldElement.getAttribute(name), "tg-diff-removed");
+      }
+      if (newNames.contains(name)) {
+        writeValue(out, newElement.getAttribute(name), "tg-diff-added");
+      }
+    }
+    out.text(">");
+    out.endTag("span");
+    return Widgets.fromDomNode(out.getTopElement());
+  }
+
+  private static void writeValue(HtmlWriter out, String value, String style) {
+    out.startTag("span", "class", style);
+    out.text("\"" + value + "\"");
+    out.endTag("span");
+  }
+
   private static Label makeTagLabel(Element element) {
     StringBuilder tagText = new StringBuilder();
     tagText.append("<" + element.getTagName());
@@ -88,7 +228,7 @@ class ElementTreeView extends LazyPanel {
    * by <a href="http://www.quirksmode.org/dom/w3c_core.html#nodeinformation"
    * >browser quirks</a>.)
    */
-  private static List<String> getAttributeNames(Element element) {
+  static List<String> getAttributeNames(Element element) {
     try {
       List<String> result = Lists.newList();
       JsArrayString candidates = getAttributeCandidatesNative(element);
@@ -21,20 +21,22 @@ package com.google.gwt.testgal.client.impl;
  * @author Brian Slesinsky
  */
 enum EventLocation {
-  TESTGAL("TestGal", null),
-  CONSTRUCTOR("a test's constructor", "constructor"),
-  SETUP("a test's setUp method", "setUp"),
-  TEST_METHOD("a test method", null),
-  TEARDOWN("a test's tearDown method", "tearDown"),
+  TESTGAL("TestGal", null, "TestGal"),
+  CONSTRUCTOR("a test's constructor", "constructor", "constructor"),
+  SETUP("a test's setUp method", "setUp", "setUp"),
+  TEST_METHOD("a test method", null, "test method"),
+  TEARDOWN("a test's tearDown method", "tearDown", "tearDown"),
   EVENT_HANDLER("an event handler that was called during a test",
-      "event handlers");
+      "event handlers", "waiting for event handlers");
 
   private String displayName;
   private String legend;
+  private String phaseName;
 
-  EventLocation(String displayName, String legend) {
+  EventLocation(String displayName, String legend, String phaseName) {
     this.displayName = displayName;
     this.legend = legend;
+    this.phaseName = phaseName;
   }
 
   public String getDisplayName() {
@@ -48,4 +50,11 @@ enum EventLocation {
   public boolean hasLegend() {
     return legend != null;
   }
+
+  /**
+   * Returns the name to use when showing how much time a test spent here.
+   */
+  public String getPhaseName() {
+    return phaseName;
+  }
 }
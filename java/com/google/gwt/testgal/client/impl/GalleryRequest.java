@@ -15,6 +15,9 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.testgal.client.impl.util.Lists;
+
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -27,22 +30,179 @@ import java.util.Set;
  */
 public class GalleryRequest {
 
-  /** The query parameter specifying test classes to run */
+  /**
+   * The query parameter specifying test classes or methods to run
+   * (see {@link TestSelector} for the syntax)
+   */
   public static final String RUN_PARAM = "run";
 
+  /** The query parameter specifying test classes or methods not to run */
+  public static final String SKIP_PARAM = "skip";
+
+  /**
+   * The query parameter that limits which tests run to the ones that failed
+   * last time, when set to {@link #ONLY_FAILED}
+   */
+  public static final String ONLY_PARAM = "only";
+
+  /** The value of the "only" parameter that runs only the tests that failed last time */
+  public static final String ONLY_FAILED = "failed";
+
+  /** The query parameter specifying the order to run tests in (see {@link RunOrder#forName}) */
+  public static final String ORDER_PARAM = "order";
+
+  /** The query parameter specifying the seed for a random order */
+  public static final String SEED_PARAM = "seed";
+
+  /** The query parameter specifying which shard of the tests to run, counting from 1 */
+  public static final String SHARD_PARAM = "shard";
+
+  /** The query parameter specifying how many shards the tests are split into */
+  public static final String SHARD_COUNT_PARAM = "shards";
+
+  /** Whole classes to run, which are looked up by name */
   private Set<String> testClassNames = new HashSet<String>();
+  /** The other selectors for tests to run */
+  private List<TestSelector> runSelectors = Lists.newList();
+  private List<TestSelector> skipSelectors = Lists.newList();
+  private RunOrder runOrder;
+  private int shard = 1;
+  private int shardCount = 1;
+  private boolean failedOnly;
 
   public GalleryRequest(Map<String, List<String>> paramMap) {
+    this(paramMap, (long) Duration.currentTimeMillis());
+  }
+
+  /**
+   * @param defaultSeed the seed to use for a random order if there's no "seed" parameter
+   */
+  GalleryRequest(Map<String, List<String>> paramMap, long defaultSeed) {
     if (paramMap.containsKey(RUN_PARAM)) {
-      testClassNames.addAll(paramMap.get(RUN_PARAM));
+      for (String pattern : paramMap.get(RUN_PARAM)) {
+        TestSelector selector = TestSelector.parse(pattern);
+        if (selector.isWholeClass()) {
+          testClassNames.add(selector.getClassName());
+        } else {
+          runSelectors.add(selector);
+        }
+      }
+    }
+    if (paramMap.containsKey(SKIP_PARAM)) {
+      for (String pattern : paramMap.get(SKIP_PARAM)) {
+        skipSelectors.add(TestSelector.parse(pattern));
+      }
+    }
+    if (paramMap.containsKey(ONLY_PARAM)) {
+      failedOnly = paramMap.get(ONLY_PARAM).contains(ONLY_FAILED);
+    }
+    if (paramMap.containsKey(ORDER_PARAM)) {
+      long seed = defaultSeed;
+      if (paramMap.containsKey(SEED_PARAM)) {
+        try {
+          seed = Long.parseLong(paramMap.get(SEED_PARAM).get(0));
+        } catch (NumberFormatException e) {
+          // use the default
+        }
+      }
+      runOrder = RunOrder.forName(paramMap.get(ORDER_PARAM).get(0), seed);
+    }
+    if (paramMap.containsKey(SHARD_PARAM) && paramMap.containsKey(SHARD_COUNT_PARAM)) {
+      try {
+        int newShard = Integer.parseInt(paramMap.get(SHARD_PARAM).get(0));
+        int newShardCount = Integer.parseInt(paramMap.get(SHARD_COUNT_PARAM).get(0));
+        Sharder.checkShard(newShard, newShardCount);
+        shard = newShard;
+        shardCount = newShardCount;
+      } catch (IllegalArgumentException e) {
+        // run all the tests (NumberFormatException is also an IllegalArgumentException)
+      }
     }
   }
 
   /**
-   * Returns true if the given test class name is present in a
-   * "run" query parameter, or if there is no such parameter specified.
+   * Returns true if a "run" query parameter selects the given test class
+   * or some of its methods, or if there is no such parameter specified,
+   * unless a "skip" parameter excludes the whole class.
    */
   public boolean includes(String testClassName) {
-    return testClassNames.isEmpty() ? true : testClassNames.contains(testClassName);
+    for (TestSelector selector : skipSelectors) {
+      if (selector.matchesClass(testClassName)) {
+        return false;
+      }
+    }
+    if (isRunningEverything() || testClassNames.contains(testClassName)) {
+      return true;
+    }
+    for (TestSelector selector : runSelectors) {
+      if (selector.mayMatchClass(testClassName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given test method is selected by a "run" query parameter
+   * (or there is none) and isn't excluded by a "skip" parameter.
+   */
+  public boolean includes(String testClassName, String methodName) {
+    for (TestSelector selector : skipSelectors) {
+      if (selector.matches(testClassName, methodName)) {
+        return false;
+      }
+    }
+    if (isRunningEverything() || testClassNames.contains(testClassName)) {
+      return true;
+    }
+    for (TestSelector selector : runSelectors) {
+      if (selector.matches(testClassName, methodName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if "only=failed" asks to run just the tests that failed last time.
+   */
+  public boolean isFailedOnly() {
+    return failedOnly;
+  }
+
+  /**
+   * Returns the order given in an "order" query parameter,
+   * or null if there's no such parameter or it's not a known order.
+   */
+  public RunOrder getRunOrder() {
+    return runOrder;
+  }
+
+  /**
+   * Returns true if "shard" and "shards" query parameters ask for
+   * only some of the tests to run.
+   */
+  public boolean isSharded() {
+    return shardCount > 1;
+  }
+
+  /**
+   * Returns which shard to run, counting from 1. (It's 1 if not sharded.)
+   */
+  public int getShard() {
+    return shard;
+  }
+
+  /**
+   * Returns the number of shards. (It's 1 if not sharded.)
+   */
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  // ======== end of public methods ========
+
+  private boolean isRunningEverything() {
+    return testClassNames.isEmpty() && runSelectors.isEmpty();
   }
 }
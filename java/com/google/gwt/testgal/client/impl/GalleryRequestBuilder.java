@@ -45,17 +45,63 @@ public class GalleryRequestBuilder {
    */
   public GalleryRequestBuilder setRunAll() {
     urlBuilder.removeParameter(GalleryRequest.RUN_PARAM);
+    urlBuilder.removeParameter(GalleryRequest.ONLY_PARAM);
     return this;
   }
 
+  /**
+   * Sets up the request to run only the tests that failed the last time they ran.
+   */
+  public GalleryRequestBuilder setRunFailed() {
+    urlBuilder.removeParameter(GalleryRequest.RUN_PARAM);
+    urlBuilder.setParameter(GalleryRequest.ONLY_PARAM, GalleryRequest.ONLY_FAILED);
+    return setUnsharded();
+  }
+
   /**
    * Sets up the request to run a single test.
    */
   public GalleryRequestBuilder setRunOne(String testClassName) {
     urlBuilder.setParameter(GalleryRequest.RUN_PARAM, testClassName);
+    urlBuilder.removeParameter(GalleryRequest.ONLY_PARAM);
+    return setUnsharded();
+  }
+
+  /**
+   * Sets up the request to run a single test method.
+   */
+  public GalleryRequestBuilder setRunOne(String testClassName, String methodName) {
+    return setRunOne(testClassName + "#" + methodName);
+  }
+
+  /**
+   * Sets up the request to run one shard of the tests.
+   * @param shard which shard to run, counting from 1
+   * @param shardCount how many shards the tests are split into
+   */
+  public GalleryRequestBuilder setShard(int shard, int shardCount) {
+    Sharder.checkShard(shard, shardCount);
+    urlBuilder.setParameter(GalleryRequest.SHARD_PARAM, String.valueOf(shard));
+    urlBuilder.setParameter(GalleryRequest.SHARD_COUNT_PARAM, String.valueOf(shardCount));
     return this;
   }
 
+  /**
+   * Sets up the request to run all the tests in one window, instead of one shard.
+   */
+  public GalleryRequestBuilder setUnsharded() {
+    urlBuilder.removeParameter(GalleryRequest.SHARD_PARAM);
+    urlBuilder.removeParameter(GalleryRequest.SHARD_COUNT_PARAM);
+    return this;
+  }
+
+  /**
+   * Returns the URL for the request being built.
+   */
+  public String buildUrl() {
+    return urlBuilder.buildString();
+  }
+
   /**
    * Sets the text for the link being built.
    */
@@ -76,7 +122,7 @@ public class GalleryRequestBuilder {
    * Returns an Anchor for the request being built.
    */
   public Anchor build() {
-    Anchor anchor = new Anchor(anchorText, urlBuilder.buildString());
+    Anchor anchor = new Anchor(anchorText, buildUrl());
     for (String styleName : styleNames) {
       anchor.addStyleName(styleName);
     }
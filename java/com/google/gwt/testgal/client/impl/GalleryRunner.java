@@ -30,6 +30,9 @@ import com.google.gwt.core.client.Duration;
  */
 public class GalleryRunner implements YieldingCommand {
 
+  /** Where the test history is kept in local storage, followed by the module name. */
+  private static final String HISTORY_KEY_PREFIX = "testgal.history.";
+
   private final Panel panel;
   private final PageHistory history;
   private final PageMap pages;
@@ -39,7 +42,8 @@ public class GalleryRunner implements YieldingCommand {
     this.panel = displayPanel;
     this.history = history;
     this.pages = new PageMap();
-    this.suite = makeTestSuite(galleryToRun, pages, history);
+    this.suite = makeTestSuite(galleryToRun, pages, history,
+        TestHistory.load(HISTORY_KEY_PREFIX + GWT.getModuleName()));
   }
 
   public void run(Schedule schedule) {
@@ -70,7 +74,7 @@ public class GalleryRunner implements YieldingCommand {
     RightSideView rightSide = new RightSideView(pages, history);
 
     ProgressBar bar = new ProgressBar();
-    suite.setProgressListener(bar);
+    suite.setProgressListener(new ThrottledProgressListener(bar));
 
     LeftSideView leftSide = new LeftSideView(suite, history);
 
@@ -87,7 +91,17 @@ public class GalleryRunner implements YieldingCommand {
    */
   public static TestSuite makeTestSuite(AbstractTestGallery abstractTestGallery, PageMap pages,
       PageHistory history) {
+    return makeTestSuite(abstractTestGallery, pages, history, null);
+  }
+
+  /**
+   * Creates a new TestSuite that uses and updates a history of previous runs.
+   * @param testHistory the history, or null to run without one
+   */
+  static TestSuite makeTestSuite(AbstractTestGallery abstractTestGallery, PageMap pages,
+      PageHistory history, TestHistory testHistory) {
     TestSuite.Builder builder = TestSuite.builder(pages, history);
+    builder.setTestHistory(testHistory);
     abstractTestGallery.addToSuite(builder);
     return builder.build();
   }
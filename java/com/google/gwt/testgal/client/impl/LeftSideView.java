@@ -15,106 +15,321 @@
  */
 package com.google.gwt.testgal.client.impl;
 
-import com.google.gwt.event.logical.shared.SelectionEvent;
-import com.google.gwt.event.logical.shared.SelectionHandler;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.testgal.client.impl.util.FrameThrottle;
+import com.google.gwt.testgal.client.impl.util.Lists;
 import com.google.gwt.testgal.client.impl.util.Maps;
 import com.google.gwt.testgal.client.impl.util.PageHistory;
+import com.google.gwt.user.client.Command;
+import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Composite;
-import com.google.gwt.user.client.ui.Tree;
-import com.google.gwt.user.client.ui.TreeItem;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.Label;
+import com.google.gwt.user.client.ui.ScrollPanel;
+import com.google.gwt.user.client.ui.SimplePanel;
 
+import java.util.List;
 import java.util.Map;
 
 /**
  * The view of tests on the left side of the runner,
  * including the progress bar and test tree.
  *
+ * <p>The tree always shows every section and test method, but only the rows
+ * that are scrolled into view have widgets. The rows are stored in parallel
+ * arrays, and the widgets for visible rows are reused as the view scrolls.
+ * Every row has the same height so that the row at any scroll position can
+ * be calculated.</p>
+ *
+ * <p>Status changes are recorded in the arrays right away, but the rows
+ * that changed are redrawn at most once per animation frame.</p>
+ *
  * @author Brian Slesinsky
  */
 class LeftSideView extends Composite {
 
-  private final Map<String, TreeItem> pageToItem;
-  private final Tree tree;
+  /** The height of each row, in pixels. (Should match gallery.css.) */
+  static final int ROW_HEIGHT = 20;
+
+  /** How far each level of the tree is indented, in pixels. */
+  private static final int INDENT = 16;
+
+  /** How many rows to render when the view's height isn't known yet. */
+  private static final int DEFAULT_VISIBLE_ROWS = 50;
+
+  // The rows in the tree, in display order. The first row is the table of
+  // contents, followed by each section and its test methods.
+  private final String[] names;
+  private final String[] pageIds;
+  private final int[] depths;
+  private final TestStatus[] statuses;
+  private final Map<String, Integer> pageToRow;
+
+  private final PageHistory history;
+  private final ScrollPanel scroller;
+  private final FlowPanel rowPanel;
+
+  /** The widgets for the rows that are currently rendered. */
+  private final List<Row> rowViews = Lists.newList();
+  private int firstRenderedRow = 0;
+  private int renderedRowCount = 0;
+
+  private int selectedRow = -1;
+
+  // rows whose status changed since the last frame
+  private final boolean[] isDirty;
+  private final List<Integer> dirtyRows = Lists.newList();
+  private final FrameThrottle redrawThrottle;
+  private HandlerRegistration resizeRegistration;
 
   LeftSideView(TestSuite suite, PageHistory history) {
-    pageToItem = Maps.newStringMap();
-    tree = makeLeftSideTree(suite, pageToItem);
+    this.history = history;
+
+    int rowCount = 1 + suite.getSections().size() + suite.getTestMethodCount();
+    names = new String[rowCount];
+    pageIds = new String[rowCount];
+    depths = new int[rowCount];
+    statuses = new TestStatus[rowCount];
+    isDirty = new boolean[rowCount];
+    pageToRow = Maps.newStringMap();
+    redrawThrottle = new FrameThrottle(new Command() {
+      public void execute() {
+        redrawDirtyRows();
+      }
+    });
+    addRows(suite);
 
-    addTestTreeSelectionHandler(tree, history);
-    initWidget(tree);
+    FlowPanel content = new FlowPanel();
+    content.setStyleName("tg-tree");
+    content.setHeight((rowCount * ROW_HEIGHT) + "px");
+
+    rowPanel = new FlowPanel();
+    rowPanel.setStyleName("tg-tree-rows");
+    content.add(rowPanel);
+
+    scroller = new ScrollPanel(content);
+    scroller.setStyleName("tg-leftside");
+    scroller.addScrollHandler(new ScrollHandler() {
+      public void onScroll(ScrollEvent event) {
+        render();
+      }
+    });
+    initWidget(scroller);
 
     history.register(new ValueChangeHandler<String>() {
       public void onValueChange(ValueChangeEvent<String> event) {
         pageChanged(event.getValue());
       }
     });
+    render();
     pageChanged(history.getCurrentPageId());
   }
 
+  @Override
+  protected void onLoad() {
+    resizeRegistration = Window.addResizeHandler(new ResizeHandler() {
+      public void onResize(ResizeEvent event) {
+        render();
+      }
+    });
+    render();
+    scrollIntoView(selectedRow);
+  }
+
+  @Override
+  protected void onUnload() {
+    resizeRegistration.removeHandler();
+    resizeRegistration = null;
+  }
+
   /* visible for testing */
-  Tree getTree() {
-    return (Tree) getWidget();
+  int findRow(String pageId) {
+    Integer row = pageToRow.get(Pages.normalize(pageId));
+    return row == null ? -1 : row;
   }
 
-  private void pageChanged(String historyToken) {
-    TreeItem item = pageToItem.get(Pages.normalize(historyToken));
-    if (item != null) {
-      tree.setSelectedItem(item);
-    }
+  /* visible for testing */
+  int getRenderedRowCount() {
+    return renderedRowCount;
   }
 
-  private static Tree makeLeftSideTree(TestSuite suite, Map<String, TreeItem> pageToItem) {
-    Tree tree = new Tree();
+  /* visible for testing */
+  void clickRow(int row) {
+    Pages.changePage(pageIds[row], history);
+  }
 
-    TreeItem toc = new TreeItem(suite.getTitle());
-    toc.setUserObject(Pages.CONTENTS_ID);
-    pageToItem.put(Pages.CONTENTS_ID, toc);
+  // ======== end of package-private methods ========
 
+  private void addRows(TestSuite suite) {
+    int row = 0;
+    addRow(row++, suite.getTitle(), Pages.CONTENTS_ID, 0, null);
     for (Section section : suite.getSections()) {
+      addRow(row++, section.getName(), section.getResultPageId(), 1, section.getStatusCell());
+      for (TestMethod method : section.getMethods()) {
+        addRow(row++, method.getName(), section.getMethodResultPageId(method), 2,
+            section.getStatusCell(method));
+      }
+    }
+  }
+
+  private void addRow(final int row, String name, String pageId, int depth, StatusCell status) {
+    names[row] = name;
+    pageIds[row] = pageId;
+    depths[row] = depth;
+    pageToRow.put(pageId, row);
+    if (status != null) {
+      statuses[row] = status.getStatus();
+      status.addListener(new StatusChangeListener() {
+        public void statusChanged(TestStatus newStatus) {
+          statuses[row] = newStatus;
+          markDirty(row);
+        }
+      });
+    }
+  }
+
+  private void markDirty(int row) {
+    if (!isDirty[row]) {
+      isDirty[row] = true;
+      dirtyRows.add(row);
+      redrawThrottle.schedule();
+    }
+  }
+
+  private void redrawDirtyRows() {
+    for (int row : dirtyRows) {
+      isDirty[row] = false;
+      refreshRow(row);
+    }
+    dirtyRows.clear();
+  }
 
-      TreeItem sectionItem = new TreeItem(section.getStatusView());
-      String sectionPageId = section.getResultPageId();
-      sectionItem.setUserObject(sectionPageId);
-      pageToItem.put(sectionPageId, sectionItem);
+  private void pageChanged(String historyToken) {
+    int row = findRow(historyToken);
+    if (row >= 0) {
+      int oldRow = selectedRow;
+      selectedRow = row;
+      refreshRow(oldRow);
+      refreshRow(row);
+      scrollIntoView(row);
+    }
+  }
 
-      makeMethodTreeItems(section, sectionItem, pageToItem);
+  /**
+   * Creates or updates the widgets for the rows that are scrolled into view.
+   */
+  private void render() {
+    int rowCount = names.length;
+    int first = Math.min(scroller.getScrollPosition() / ROW_HEIGHT, rowCount - 1);
+    int count = Math.min(getVisibleRowCount(), rowCount - first);
 
-      sectionItem.setState(true);
-      toc.addItem(sectionItem);
+    while (rowViews.size() < count) {
+      Row view = new Row();
+      rowViews.add(view);
+      rowPanel.add(view);
     }
 
-    toc.setState(true);
+    for (int i = 0; i < rowViews.size(); i++) {
+      Row view = rowViews.get(i);
+      if (i < count) {
+        view.show(first + i);
+        view.setVisible(true);
+      } else {
+        view.setVisible(false);
+      }
+    }
 
-    tree.addItem(toc);
+    rowPanel.getElement().getStyle().setPropertyPx("top", first * ROW_HEIGHT);
+    firstRenderedRow = first;
+    renderedRowCount = count;
+  }
 
-    return tree;
+  private int getVisibleRowCount() {
+    int height = scroller.getOffsetHeight();
+    if (height <= 0) {
+      return DEFAULT_VISIBLE_ROWS;
+    }
+    // add one for a partial row at the top and one at the bottom
+    return height / ROW_HEIGHT + 2;
   }
 
-  private static void makeMethodTreeItems(Section section, TreeItem outItem,
-      Map<String, TreeItem> pageToItem) {
+  private void refreshRow(int row) {
+    if (row >= firstRenderedRow && row < firstRenderedRow + renderedRowCount) {
+      rowViews.get(row - firstRenderedRow).show(row);
+    }
+  }
 
-    for (TestMethod method : section.getMethods()) {
-      TreeItem methodItem = new TreeItem(section.getStatusView(method));
-      String pageId = section.getMethodResultPageId(method);
-      methodItem.setUserObject(pageId);
-      pageToItem.put(pageId, methodItem);
-      outItem.addItem(methodItem);
+  private void scrollIntoView(int row) {
+    int height = scroller.getOffsetHeight();
+    if (row < 0 || height <= 0) {
+      return;
+    }
+    int top = row * ROW_HEIGHT;
+    int position = scroller.getScrollPosition();
+    if (top < position) {
+      scroller.setScrollPosition(top);
+    } else if (top + ROW_HEIGHT > position + height) {
+      scroller.setScrollPosition(top + ROW_HEIGHT - height);
+    } else {
+      return;
     }
+    render();
   }
 
-  private static void addTestTreeSelectionHandler(Tree testTreeView, final PageHistory history) {
+  /**
+   * The widget for a row that's scrolled into view. It's reused for a
+   * different row when the view scrolls.
+   */
+  private class Row extends Composite {
+    private final SimplePanel panel;
+    private int row = -1;
 
-    testTreeView.addSelectionHandler(new SelectionHandler<TreeItem>() {
+    // created when first needed
+    private Label title;
+    private StatusView statusView;
 
-      public void onSelection(SelectionEvent<TreeItem> event) {
-        TreeItem item = event.getSelectedItem();
-        Object object = item.getUserObject();
-        if (object instanceof String) {
-          Pages.changePage((String)object, history);
+    Row() {
+      panel = new SimplePanel();
+      panel.setStyleName("tg-tree-row");
+      initWidget(panel);
+      addDomHandler(new ClickHandler() {
+        public void onClick(ClickEvent event) {
+          clickRow(row);
         }
+      }, ClickEvent.getType());
+    }
+
+    void show(int newRow) {
+      this.row = newRow;
+      if (statuses[newRow] == null) {
+        if (title == null) {
+          title = new Label();
+        }
+        title.setText(names[newRow]);
+        panel.setWidget(title);
+      } else {
+        if (statusView == null) {
+          statusView = new StatusView(names[newRow]);
+        } else {
+          statusView.setTestName(names[newRow]);
+        }
+        statusView.statusChanged(statuses[newRow]);
+        panel.setWidget(statusView);
       }
-    });
+      getElement().getStyle().setPropertyPx("paddingLeft", depths[newRow] * INDENT);
+      if (newRow == selectedRow) {
+        addStyleName("tg-tree-selected");
+      } else {
+        removeStyleName("tg-tree-selected");
+      }
+    }
   }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.core.client.RunAsyncCallback;
+import com.google.gwt.testgal.client.impl.util.YieldingCommand;
+
+/**
+ * Downloads the code for a section's tests, if it hasn't been loaded yet,
+ * and waits for the download to finish before the section runs.
+ *
+ * <p>If the download fails, the section's tests will fail when they're
+ * constructed, so there's nothing else to do here.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class LoadSectionCommand implements YieldingCommand {
+
+  /** How long to wait for a download before giving up on it. */
+  private static final int LOAD_TIMEOUT_MILLIS = 60000;
+
+  private final Section section;
+
+  LoadSectionCommand(Section section) {
+    this.section = section;
+  }
+
+  public void run(Schedule schedule) {
+    if (!section.needsLoading()) {
+      return;
+    }
+
+    final boolean[] done = new boolean[1];
+    final Step waitForLoad = schedule.push(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        // after this, the step may be reused
+        done[0] = true;
+      }
+    });
+    waitForLoad.setMinDelayBeforeThisStep(LOAD_TIMEOUT_MILLIS,
+        "waiting for the code for " + section.getName());
+
+    section.load(new RunAsyncCallback() {
+      public void onSuccess() {
+        wake();
+      }
+
+      public void onFailure(Throwable reason) {
+        wake();
+      }
+
+      private void wake() {
+        if (!done[0]) {
+          waitForLoad.setMinDelayBeforeThisStep(0, "code for " + section.getName() + " loaded");
+        }
+      }
+    });
+  }
+}
@@ -24,6 +24,9 @@ import com.google.gwt.user.client.ui.HTML;
 /**
  * Holds the output from running a test method.
  *
+ * <p>Text is written using a buffered HtmlWriter, which is flushed at the
+ * end of each event.</p>
+ *
  * @author Brian Slesinsky
  */
 class MethodResultPage extends Composite implements ResultListener {
@@ -33,9 +36,10 @@ class MethodResultPage extends Composite implements ResultListener {
   private boolean sentOutput = false;
   private EventLocation currentLocation = EventLocation.TESTGAL;
   private boolean inSection = false;
+  private PhaseTimes phaseTimes;
 
   public MethodResultPage() {
-    outPanel = new AppendableHtmlPanel();
+    outPanel = new AppendableHtmlPanel(HtmlWriter.buffered());
     outPanel.setStyleName("tg-testresult");
     initWidget(outPanel);
     html = outPanel.getWriter();
@@ -43,17 +47,21 @@ class MethodResultPage extends Composite implements ResultListener {
 
   public void testStarted(TestMethod methodAboutToRun) {
     outPanel.clear();
+    phaseTimes = null;
     html.textH3(methodAboutToRun.getName());
+    html.flush();
   }
 
   public void wroteHeading(String text) {
     startOutput();
     html.textH4(text);
+    html.flush();
   }
 
   public void wroteParagraph(String text) {
     startOutput();
     html.textP(text);
+    html.flush();
   }
 
   public void tookSnapshot(Object target, String caption) {
@@ -71,6 +79,7 @@ class MethodResultPage extends Composite implements ResultListener {
     html.startTag("div", "class", "tg-error");
     html.text(message);
     html.endTag("div");
+    html.flush();
   }
 
   public void compared(Object expected, Object actual, String caption) {
@@ -114,6 +123,11 @@ class MethodResultPage extends Composite implements ResultListener {
       inSection = false;
     }
     this.currentLocation = location;
+    html.flush();
+  }
+
+  public void phasesTimed(PhaseTimes times) {
+    this.phaseTimes = times;
   }
 
   public void testFinished(long elapsedTime) {
@@ -124,10 +138,32 @@ class MethodResultPage extends Composite implements ResultListener {
     html.startTag("div", "class", "tg-testresult-footer");
     html.text("Elapsed time: " + elapsedTime + " ms");
     html.endTag("div");
+    if (phaseTimes != null) {
+      html.startTag("div", "class", "tg-phase-times");
+      html.text("Time spent in " + formatPhaseTimes(phaseTimes));
+      html.endTag("div");
+    }
+    html.flush();
   }
 
   // ======== end of public methods ========
 
+  /**
+   * Returns the time spent in each location the test visited,
+   * such as "setUp: 1 ms, test method: 5 ms".
+   */
+  static String formatPhaseTimes(PhaseTimes times) {
+    StringBuilder result = new StringBuilder();
+    for (EventLocation location : times.getVisitedPhases()) {
+      if (result.length() > 0) {
+        result.append(", ");
+      }
+      result.append(location.getPhaseName()).append(": ")
+          .append(times.getMillis(location)).append(" ms");
+    }
+    return result.toString();
+  }
+
   private void startOutput() {
     sentOutput = true;
     if (!inSection && currentLocation.hasLegend()) {
@@ -142,13 +178,14 @@ class MethodResultPage extends Composite implements ResultListener {
   }
 
   private void appendStackTrace(Throwable throwable, String captionText) {
-    HtmlWriter out = new HtmlWriter();
+    HtmlWriter out = HtmlWriter.buffered();
     out.text(throwable.toString());
     out.br();
+    StringBuilder trace = new StringBuilder();
     for (StackTraceElement element : throwable.getStackTrace()) {
-      out.textPreformatted("  at " + element);
-      out.br();
+      trace.append("  at ").append(element).append('\n');
     }
+    out.textPreformatted(trace.toString());
 
     HTML snapshot = Snapshots.makePlainSnapshot(out.getTopElement());
 
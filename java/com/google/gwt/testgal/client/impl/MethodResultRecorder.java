@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * Receives the results from a test method and holds onto them in an
+ * {@link OutputLog} until someone looks at the method's result page.
+ * Until then, no widgets are created.
+ *
+ * <p>After the page is created, results are sent directly to the page.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class MethodResultRecorder implements ResultListener, PageMap.Factory {
+
+  private final OutputLog log = new OutputLog();
+  private MethodResultPage page;
+
+  public Widget makePage() {
+    if (page == null) {
+      page = new MethodResultPage();
+      log.replay(page);
+      log.clear();
+    }
+    return page;
+  }
+
+  public void testStarted(TestMethod methodAboutToRun) {
+    // The page will be cleared, so the previous run's output is no longer needed.
+    log.clear();
+    target().testStarted(methodAboutToRun);
+  }
+
+  public void wroteHeading(String text) {
+    target().wroteHeading(text);
+  }
+
+  public void wroteParagraph(String text) {
+    target().wroteParagraph(text);
+  }
+
+  public void tookSnapshot(Object target, String caption) {
+    target().tookSnapshot(target, caption);
+  }
+
+  public void wroteDemo(Object demoArgument, String caption) {
+    target().wroteDemo(demoArgument, caption);
+  }
+
+  public void wroteError(String message) {
+    target().wroteError(message);
+  }
+
+  public void compared(Object expected, Object actual, String caption) {
+    target().compared(expected, actual, caption);
+  }
+
+  public void assertionFailed(Throwable throwable) {
+    target().assertionFailed(throwable);
+  }
+
+  public void threwException(String message, Throwable throwable, String stackTraceCaption) {
+    target().threwException(message, throwable, stackTraceCaption);
+  }
+
+  public void locationChanged(EventLocation location) {
+    target().locationChanged(location);
+  }
+
+  public void phasesTimed(PhaseTimes times) {
+    target().phasesTimed(times);
+  }
+
+  public void testFinished(long elapsedTime) {
+    target().testFinished(elapsedTime);
+  }
+
+  // ======== end of public methods ========
+
+  private ResultListener target() {
+    return page == null ? log : page;
+  }
+}
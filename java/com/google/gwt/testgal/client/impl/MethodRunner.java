@@ -15,11 +15,11 @@
  */
 package com.google.gwt.testgal.client.impl;
 
-import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.testgal.api.shared.OutputListener;
 import com.google.gwt.testgal.api.shared.TestLocal;
 import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.impl.util.TraceLog;
 import com.google.gwt.testgal.client.impl.util.YieldingCommand;
 
 import junit.framework.AssertionFailedError;
@@ -40,6 +40,7 @@ class MethodRunner implements YieldingCommand {
   private final ResultListener resultListener;
 
   private final List<StatusChangeListener> statusListeners;
+  private final List<TimingListener> timingListeners;
   private TestStatus status;
   private final MethodRunner.UncaughtHandler uncaughtHandler;
 
@@ -51,6 +52,7 @@ class MethodRunner implements YieldingCommand {
     this.resultListener = resultListener;
 
     this.statusListeners = Lists.newList();
+    this.timingListeners = Lists.newList();
     this.status = TestStatus.NOT_STARTED;
     this.uncaughtHandler = new UncaughtHandler();
   }
@@ -59,6 +61,10 @@ class MethodRunner implements YieldingCommand {
     this.statusListeners.add(newListener);
   }
 
+  void addTimingListener(TimingListener newListener) {
+    this.timingListeners.add(newListener);
+  }
+
   TestStatus getStatus() {
     return status;
   }
@@ -109,6 +115,19 @@ class MethodRunner implements YieldingCommand {
     resultListener.threwException(message, caught, stackTraceCaption);
   }
 
+  /**
+   * Stops timing the test and reports its times, then reports that it finished.
+   */
+  private void finishTest(PhaseTimes times) {
+    times.finish();
+    resultListener.phasesTimed(times);
+    for (TimingListener listener : timingListeners) {
+      listener.testTimed(methodToRun, times);
+    }
+    times.addToTrace(TraceLog.get(), methodToRun.getName());
+    resultListener.testFinished(times.getTotalMillis());
+  }
+
   private void updateStatus(TestStatus newStatus) {
     status = newStatus;
     for (StatusChangeListener listener : statusListeners) {
@@ -143,7 +162,7 @@ class MethodRunner implements YieldingCommand {
       // Warning: the exception handling doesn't have tests yet
       // TODO: write test cases for all the different ways a test can fail
 
-      final Duration duration = new Duration();
+      final PhaseTimes times = uncaughtHandler.startTiming();
 
       final SingleTest currentTest;
       try {
@@ -151,13 +170,13 @@ class MethodRunner implements YieldingCommand {
         currentTest = methodToRun.makeTest();
         takeBlame();
       } catch (AssertionFailedError e) {
-        handleConstructorFailed(duration, e);
+        handleConstructorFailed(times, e);
         return;
       } catch (AssertionError e) {
-        handleConstructorFailed(duration, e);
+        handleConstructorFailed(times, e);
         return;
       } catch(Exception e) {
-        handleConstructorFailed(duration, e);
+        handleConstructorFailed(times, e);
         return;
       }
 
@@ -169,7 +188,7 @@ class MethodRunner implements YieldingCommand {
       }
 
       // Schedule cleanup for everything up to the setUp() method
-      schedule.push(new CleanupHandler(currentTest, duration));
+      schedule.push(new CleanupHandler(currentTest, times));
 
       final TearDownHandler tearDown = new TearDownHandler(currentTest);
 
@@ -199,16 +218,21 @@ class MethodRunner implements YieldingCommand {
 
       // Install async test support.
       // This allows the current test to control when the tearDown step runs.
+      // (Once tearDown has run, its Step may be reused, so late calls mustn't touch it.)
       currentTest.__setCallback(new SingleTest.Callback() {
         public void delayTestFinish(int timeoutMillis) {
-          tearDownStep.setMinDelayBeforeThisStep(timeoutMillis,
-              "to wait for event handlers of async test");
+          if (!tearDown.hasRun()) {
+            tearDownStep.setMinDelayBeforeThisStep(timeoutMillis,
+                "to wait for event handlers of async test");
+          }
           tearDown.handleDelayTestFinishCalled();
         }
 
         public void finishTest() {
-          tearDownStep.setMinDelayBeforeThisStep(0,
-              "to run tearDown after async test finished");
+          if (!tearDown.hasRun()) {
+            tearDownStep.setMinDelayBeforeThisStep(0,
+                "to run tearDown after async test finished");
+          }
           tearDown.handleFinishTestCalled();
         }
       });
@@ -234,7 +258,7 @@ class MethodRunner implements YieldingCommand {
 
     // =========== exception handlers ========
 
-    private void handleConstructorFailed(Duration duration, Throwable caught) {
+    private void handleConstructorFailed(PhaseTimes times, Throwable caught) {
       takeBlame();
 
       reportException("This test failed in its constructor.", caught,
@@ -244,7 +268,7 @@ class MethodRunner implements YieldingCommand {
       updateStatus(TestStatus.FAILED);
 
       // The cleanup handler isn't installed yet either.
-      resultListener.testFinished(duration.elapsedMillis());
+      finishTest(times);
     }
 
     private void handleSetupFailed(Throwable caught) {
@@ -270,25 +294,55 @@ class MethodRunner implements YieldingCommand {
     }
   }
 
+  /**
+   * Reports uncaught exceptions while a test is running. Handlers for tests that
+   * run concurrently form a chain, and each handler passes exceptions on to the
+   * handler that was installed before it.
+   */
   private class UncaughtHandler implements GWT.UncaughtExceptionHandler {
 
     private GWT.UncaughtExceptionHandler previousHandler;
     private TearDownHandler tearDown;
 
+    /**
+     * True if this handler was uninstalled while another test's handler was
+     * installed after it, so it's still in the chain but should only pass
+     * exceptions along.
+     */
+    private boolean bypassed = false;
+
     /**
      * The location to blame for an uncaught exception. This should never be null
      * and should be changed whenever entering or leaving TestGal.
      */
     private EventLocation blameLocation = EventLocation.TESTGAL;
 
+    /**
+     * Records how long the current test spends in each location, or null
+     * if no test is being timed.
+     */
+    private PhaseTimes times;
+
     void blame(EventLocation newBlameLocation) {
       if (blameLocation == newBlameLocation) {
         return;
       }
       blameLocation = newBlameLocation;
+      if (times != null) {
+        times.enter(newBlameLocation);
+      }
       resultListener.locationChanged(newBlameLocation);
     }
 
+    /**
+     * Starts recording the time spent in each location, starting with the current one.
+     * (Timing stops when the PhaseTimes is finished.)
+     */
+    PhaseTimes startTiming() {
+      times = new PhaseTimes(blameLocation);
+      return times;
+    }
+
     void install(TearDownHandler tearDown) {
       this.previousHandler = GWT.getUncaughtExceptionHandler();
       this.tearDown = tearDown;
@@ -297,13 +351,23 @@ class MethodRunner implements YieldingCommand {
 
     void uninstall() {
       if (previousHandler != null) {
-        GWT.setUncaughtExceptionHandler(previousHandler);
-        previousHandler = null;
-        tearDown = null;
+        if (GWT.getUncaughtExceptionHandler() == this) {
+          GWT.setUncaughtExceptionHandler(skipBypassed(previousHandler));
+          previousHandler = null;
+          tearDown = null;
+        } else {
+          // A concurrent test installed its handler after this one.
+          bypassed = true;
+        }
       }
     }
 
     public void onUncaughtException(Throwable e) {
+      if (bypassed) {
+        previousHandler.onUncaughtException(e);
+        return;
+      }
+
       String locationToBlame = blameLocation.getDisplayName();
       takeBlame();
 
@@ -326,6 +390,17 @@ class MethodRunner implements YieldingCommand {
     }
   }
 
+  /**
+   * Returns the first handler in a chain that hasn't been uninstalled.
+   */
+  private static GWT.UncaughtExceptionHandler skipBypassed(
+      GWT.UncaughtExceptionHandler handler) {
+    while (handler instanceof UncaughtHandler && ((UncaughtHandler) handler).bypassed) {
+      handler = ((UncaughtHandler) handler).previousHandler;
+    }
+    return handler;
+  }
+
   /**
    * Runs the tearDown handler and changes the test's status from RUNNING to either
    * PASSED or FAILED.
@@ -337,11 +412,16 @@ class MethodRunner implements YieldingCommand {
 
     private boolean failedYet = false;
     private boolean finishedNormally = false;
+    private boolean hasRun = false;
 
     public TearDownHandler(SingleTest currentTest) {
       this.currentTest = currentTest;
     }
 
+    boolean hasRun() {
+      return hasRun;
+    }
+
     void handleDelayTestFinishCalled() {
       async = true;
     }
@@ -366,6 +446,7 @@ class MethodRunner implements YieldingCommand {
 
     public void run(Schedule schedule) {
       takeBlame();
+      hasRun = true;
 
       if (async && !finishedNormally) {
         resultListener.wroteError("asynchronous test timed out");
@@ -411,11 +492,11 @@ class MethodRunner implements YieldingCommand {
   private class CleanupHandler implements YieldingCommand {
 
     private final SingleTest currentTest;
-    private final Duration testDuration;
+    private final PhaseTimes times;
 
-    CleanupHandler(SingleTest currentTest, Duration testDuration) {
+    CleanupHandler(SingleTest currentTest, PhaseTimes times) {
       this.currentTest = currentTest;
-      this.testDuration = testDuration;
+      this.times = times;
     }
 
     public void run(Schedule schedule) {
@@ -425,7 +506,7 @@ class MethodRunner implements YieldingCommand {
       if (currentTest instanceof TestCase) {
         outputListeners.unset((TestCase) currentTest, resultListener);
       }
-      resultListener.testFinished(testDuration.elapsedMillis());
+      finishTest(times);
 
       uncaughtHandler.uninstall();
 
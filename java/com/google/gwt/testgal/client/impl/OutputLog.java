@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.DOM;
+import com.google.gwt.user.client.ui.UIObject;
+
+/**
+ * A compact, in-memory log of the results from a test method, which can be
+ * replayed later to render them.
+ *
+ * <p>Each event is stored as an int saying what kind of event it is, followed by
+ * its arguments in a flat array. Recording an event doesn't create any DOM nodes.
+ * Snapshots of widgets and elements are saved as HTML strings, and are turned
+ * back into elements only when the log is replayed.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class OutputLog implements ResultListener {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private static final int TEST_STARTED = 0;
+  private static final int HEADING = 1;
+  private static final int PARAGRAPH = 2;
+  private static final int SNAPSHOT = 3;
+  private static final int DEMO = 4;
+  private static final int ERROR = 5;
+  private static final int COMPARED = 6;
+  private static final int ASSERTION_FAILED = 7;
+  private static final int THREW_EXCEPTION = 8;
+  private static final int LOCATION_CHANGED = 9;
+  private static final int TEST_FINISHED = 10;
+  private static final int PHASES_TIMED = 11;
+
+  private int[] kinds = new int[INITIAL_CAPACITY];
+  private int eventCount = 0;
+
+  private Object[] args = new Object[INITIAL_CAPACITY];
+  private int argCount = 0;
+
+  /**
+   * Returns the number of events in the log.
+   */
+  int size() {
+    return eventCount;
+  }
+
+  /**
+   * Removes all events from the log.
+   */
+  void clear() {
+    kinds = new int[INITIAL_CAPACITY];
+    eventCount = 0;
+    args = new Object[INITIAL_CAPACITY];
+    argCount = 0;
+  }
+
+  /**
+   * Sends each event in the log to the target, in the order they were recorded.
+   */
+  void replay(ResultListener target) {
+    int argIndex = 0;
+    for (int i = 0; i < eventCount; i++) {
+      switch (kinds[i]) {
+        case TEST_STARTED:
+          target.testStarted((TestMethod) args[argIndex++]);
+          break;
+        case HEADING:
+          target.wroteHeading((String) args[argIndex++]);
+          break;
+        case PARAGRAPH:
+          target.wroteParagraph((String) args[argIndex++]);
+          break;
+        case SNAPSHOT:
+          target.tookSnapshot(thaw(args[argIndex++]), (String) args[argIndex++]);
+          break;
+        case DEMO:
+          target.wroteDemo(args[argIndex++], (String) args[argIndex++]);
+          break;
+        case ERROR:
+          target.wroteError((String) args[argIndex++]);
+          break;
+        case COMPARED:
+          target.compared(thaw(args[argIndex++]), thaw(args[argIndex++]),
+              (String) args[argIndex++]);
+          break;
+        case ASSERTION_FAILED:
+          target.assertionFailed((Throwable) args[argIndex++]);
+          break;
+        case THREW_EXCEPTION:
+          target.threwException((String) args[argIndex++], (Throwable) args[argIndex++],
+              (String) args[argIndex++]);
+          break;
+        case LOCATION_CHANGED:
+          target.locationChanged((EventLocation) args[argIndex++]);
+          break;
+        case PHASES_TIMED:
+          target.phasesTimed((PhaseTimes) args[argIndex++]);
+          break;
+        case TEST_FINISHED:
+          target.testFinished((Long) args[argIndex++]);
+          break;
+        default:
+          throw new IllegalStateException("unknown event: " + kinds[i]);
+      }
+    }
+  }
+
+  public void testStarted(TestMethod methodAboutToRun) {
+    add(TEST_STARTED, methodAboutToRun);
+  }
+
+  public void wroteHeading(String text) {
+    add(HEADING, text);
+  }
+
+  public void wroteParagraph(String text) {
+    add(PARAGRAPH, text);
+  }
+
+  public void tookSnapshot(Object target, String caption) {
+    add(SNAPSHOT, freeze(target), caption);
+  }
+
+  public void wroteDemo(Object demoArgument, String caption) {
+    // A demo is live, so it's created from the original argument.
+    add(DEMO, demoArgument, caption);
+  }
+
+  public void wroteError(String message) {
+    add(ERROR, message);
+  }
+
+  public void compared(Object expected, Object actual, String caption) {
+    add(COMPARED, freeze(expected), freeze(actual), caption);
+  }
+
+  public void assertionFailed(Throwable throwable) {
+    add(ASSERTION_FAILED, throwable);
+  }
+
+  public void threwException(String message, Throwable throwable, String stackTraceCaption) {
+    add(THREW_EXCEPTION, message, throwable, stackTraceCaption);
+  }
+
+  public void locationChanged(EventLocation location) {
+    add(LOCATION_CHANGED, location);
+  }
+
+  public void phasesTimed(PhaseTimes times) {
+    // The times don't change once the test finishes, so they can be shared.
+    add(PHASES_TIMED, times);
+  }
+
+  public void testFinished(long elapsedTime) {
+    add(TEST_FINISHED, Long.valueOf(elapsedTime));
+  }
+
+  // ======== end of public methods ========
+
+  private void add(int kind, Object arg) {
+    startEvent(kind, 1);
+    args[argCount++] = arg;
+  }
+
+  private void add(int kind, Object arg1, Object arg2) {
+    startEvent(kind, 2);
+    args[argCount++] = arg1;
+    args[argCount++] = arg2;
+  }
+
+  private void add(int kind, Object arg1, Object arg2, Object arg3) {
+    startEvent(kind, 3);
+    args[argCount++] = arg1;
+    args[argCount++] = arg2;
+    args[argCount++] = arg3;
+  }
+
+  private void startEvent(int kind, int argsNeeded) {
+    if (eventCount == kinds.length) {
+      int[] newKinds = new int[kinds.length * 2];
+      System.arraycopy(kinds, 0, newKinds, 0, eventCount);
+      kinds = newKinds;
+    }
+    kinds[eventCount++] = kind;
+
+    if (argCount + argsNeeded > args.length) {
+      Object[] newArgs = new Object[args.length * 2];
+      System.arraycopy(args, 0, newArgs, 0, argCount);
+      args = newArgs;
+    }
+  }
+
+  /**
+   * Returns an object that will display the same way later as the given
+   * object does now. Widgets and elements may change after a test finishes,
+   * so their HTML is saved; other objects are converted to strings.
+   */
+  private static Object freeze(Object target) {
+    if (target == null) {
+      return null;
+    } else if (target instanceof UIObject) {
+      return new FrozenElement(((UIObject) target).toString());
+    } else if (target instanceof Element) {
+      Element element = (Element) target;
+      return new FrozenElement(DOM.toString(element.<com.google.gwt.user.client.Element>cast()));
+    } else {
+      return target.toString();
+    }
+  }
+
+  private static Object thaw(Object frozen) {
+    if (frozen instanceof FrozenElement) {
+      return ((FrozenElement) frozen).toElement();
+    } else {
+      return frozen;
+    }
+  }
+
+  /**
+   * The saved HTML for a widget or element.
+   */
+  private static class FrozenElement {
+    private final String html;
+
+    FrozenElement(String html) {
+      this.html = html;
+    }
+
+    Element toElement() {
+      Element div = Document.get().createDivElement();
+      div.setInnerHTML(html);
+      Element result = div.getFirstChildElement();
+      return result == null ? div : result;
+    }
+  }
+}
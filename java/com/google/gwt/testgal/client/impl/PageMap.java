@@ -23,33 +23,70 @@ import java.util.Map;
 /**
  * A collection of all right-side pages in the test runner.
  *
+ * <p>Most pages are created the first time someone asks for them, so that
+ * a large test suite doesn't have to build thousands of widgets that may
+ * never be viewed.</p>
+ *
  * @author Brian Slesinsky
  */
 public class PageMap {
 
   /**
-   * Maps page id's to result pages.
+   * Creates a page when it's first needed.
+   */
+  public interface Factory {
+    Widget makePage();
+  }
+
+  /**
+   * Maps page id's to result pages that have already been created.
    */
   private final Map<String, Widget> pages;
 
+  /**
+   * Maps page id's to factories for pages that haven't been created yet.
+   */
+  private final Map<String, Factory> factories;
+
   public PageMap() {
     this.pages = new HashMap<String,Widget>();
+    this.factories = new HashMap<String,Factory>();
   }
 
   public void put(ContentsPage newValue) {
-    pages.put(Pages.CONTENTS_ID, newValue);
+    put(Pages.CONTENTS_ID, newValue);
   }
 
-  public void put(Section section, SectionResultPage newValue) {
-    pages.put(Pages.makeResultPageId(section), newValue);
+  /**
+   * Adds the result page for a section, which will be created by
+   * the factory when needed.
+   */
+  public void put(Section section, Factory sectionPageFactory) {
+    put(Pages.makeResultPageId(section), sectionPageFactory);
   }
 
-  public void put(Section section, TestMethod method, MethodResultPage newValue) {
-    pages.put(Pages.makeResultPageId(section, method), newValue);
+  /**
+   * Adds the result page for a test method, which will be created
+   * by the recorder when needed.
+   */
+  public void put(Section section, TestMethod method, MethodResultRecorder recorder) {
+    put(Pages.makeResultPageId(section, method), recorder);
   }
 
+  /**
+   * Returns the page with the given id, creating it if necessary,
+   * or null if there is no such page.
+   */
   public Widget get(String pageId) {
-    return pages.get(pageId);
+    Widget page = pages.get(pageId);
+    if (page == null) {
+      Factory factory = factories.remove(pageId);
+      if (factory != null) {
+        page = factory.makePage();
+        pages.put(pageId, page);
+      }
+    }
+    return page;
   }
 
   public SectionResultPage getSectionResultPage(Section section) {
@@ -61,4 +98,16 @@ public class PageMap {
     String pageId = Pages.makeResultPageId(section, method);
     return (MethodResultPage) get(pageId);
   }
+
+  // ======== end of public methods ========
+
+  private void put(String pageId, Widget page) {
+    factories.remove(pageId);
+    pages.put(pageId, page);
+  }
+
+  private void put(String pageId, Factory factory) {
+    pages.remove(pageId);
+    factories.put(pageId, factory);
+  }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.impl.util.TraceLog;
+
+import java.util.List;
+
+/**
+ * Records how long a test spent in each {@link EventLocation}, such as its
+ * constructor, setUp, test method, waiting for event handlers, tearDown,
+ * and TestGal itself.
+ *
+ * <p>The times are kept as a list of spans, each saying where the test was and
+ * when it got there, so that they can also be shown on a timeline.
+ * Once {@link #finish} is called, the times don't change.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class PhaseTimes {
+
+  /**
+   * The order in which to show the time spent in each location,
+   * which is roughly the order a test visits them.
+   */
+  private static final EventLocation[] PHASE_ORDER = {
+    EventLocation.CONSTRUCTOR, EventLocation.SETUP, EventLocation.TEST_METHOD,
+    EventLocation.EVENT_HANDLER, EventLocation.TEARDOWN, EventLocation.TESTGAL
+  };
+
+  private final double startMillis;
+
+  private EventLocation[] locations = new EventLocation[8];
+  private double[] spanStarts = new double[8];
+  private int spanCount = 0;
+
+  private double endMillis = -1;
+
+  /**
+   * Starts timing a test, which begins in the given location.
+   */
+  PhaseTimes(EventLocation firstLocation) {
+    this(firstLocation, Duration.currentTimeMillis());
+  }
+
+  PhaseTimes(EventLocation firstLocation, double startMillis) {
+    this.startMillis = startMillis;
+    addSpan(firstLocation, startMillis);
+  }
+
+  /**
+   * Records that the test moved to a new location.
+   * (Has no effect if the test is already there, or after it finished.)
+   */
+  void enter(EventLocation location) {
+    enter(location, Duration.currentTimeMillis());
+  }
+
+  void enter(EventLocation location, double nowMillis) {
+    if (isFinished() || locations[spanCount - 1] == location) {
+      return;
+    }
+    addSpan(location, nowMillis);
+  }
+
+  /**
+   * Stops timing. (Has no effect if already finished.)
+   */
+  void finish() {
+    finish(Duration.currentTimeMillis());
+  }
+
+  void finish(double nowMillis) {
+    if (!isFinished()) {
+      endMillis = nowMillis;
+    }
+  }
+
+  boolean isFinished() {
+    return endMillis >= 0;
+  }
+
+  /**
+   * Returns the time when the test started, in milliseconds since 1970.
+   */
+  double getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns how long the test took, in milliseconds.
+   */
+  long getTotalMillis() {
+    return round(currentEnd() - startMillis);
+  }
+
+  /**
+   * Returns the total time spent in a location, in milliseconds.
+   */
+  long getMillis(EventLocation location) {
+    double total = 0;
+    for (int i = 0; i < spanCount; i++) {
+      if (locations[i] == location) {
+        total += getSpanEnd(i) - getSpanStart(i);
+      }
+    }
+    return round(total);
+  }
+
+  /**
+   * Returns true if the test spent any time in the location.
+   */
+  boolean visited(EventLocation location) {
+    for (int i = 0; i < spanCount; i++) {
+      if (locations[i] == location) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the locations the test visited, in the order to show them.
+   */
+  List<EventLocation> getVisitedPhases() {
+    List<EventLocation> result = Lists.newList();
+    for (EventLocation location : PHASE_ORDER) {
+      if (visited(location)) {
+        result.add(location);
+      }
+    }
+    return result;
+  }
+
+  int getSpanCount() {
+    return spanCount;
+  }
+
+  EventLocation getSpanLocation(int index) {
+    return locations[index];
+  }
+
+  /** Returns when a span started, in milliseconds after the test started. */
+  double getSpanStart(int index) {
+    return spanStarts[index] - startMillis;
+  }
+
+  /** Returns when a span ended, in milliseconds after the test started. */
+  double getSpanEnd(int index) {
+    double end = index + 1 < spanCount ? spanStarts[index + 1] : currentEnd();
+    return end - startMillis;
+  }
+
+  /**
+   * Adds a span to the trace for each location the test visited,
+   * all with the same id so that they're shown together.
+   */
+  void addToTrace(TraceLog trace, String testName) {
+    if (!trace.isEnabled()) {
+      return;
+    }
+    int id = trace.newAsyncId();
+    for (int i = 0; i < spanCount; i++) {
+      trace.addAsyncSpan("test", locations[i].getPhaseName(), id,
+          spanStarts[i], startMillis + getSpanEnd(i), testName);
+    }
+  }
+
+  // ======== end of public methods ========
+
+  private void addSpan(EventLocation location, double nowMillis) {
+    if (spanCount == locations.length) {
+      EventLocation[] newLocations = new EventLocation[spanCount * 2];
+      System.arraycopy(locations, 0, newLocations, 0, spanCount);
+      locations = newLocations;
+      double[] newStarts = new double[spanCount * 2];
+      System.arraycopy(spanStarts, 0, newStarts, 0, spanCount);
+      spanStarts = newStarts;
+    }
+    locations[spanCount] = location;
+    spanStarts[spanCount] = nowMillis;
+    spanCount++;
+  }
+
+  private double currentEnd() {
+    return isFinished() ? endMillis : Duration.currentTimeMillis();
+  }
+
+  private static long round(double millis) {
+    return (long) Math.floor(millis + 0.5);
+  }
+}
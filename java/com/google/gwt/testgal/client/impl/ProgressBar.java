@@ -22,26 +22,52 @@ import com.google.gwt.user.client.ui.Widget;
 
 /**
  * A JUnit-style progress bar that turns red when something went wrong.
+ * It also shows how many tests finished and about how much time is left.
  *
  * @author Brian Slesinsky
  */
 class ProgressBar extends Widget implements ProgressListener {
 
   private DivElement bar;
+  private DivElement text;
 
   ProgressBar() {
     bar = Document.get().createDivElement();
+    text = Document.get().createDivElement();
+    text.setClassName("tg-progress-text");
     DivElement outline = Document.get().createDivElement();
     outline.appendChild(bar);
+    outline.appendChild(text);
     setElement(outline);
     setStyleName("tg-progress-bar");
   }
 
-  public void progressChanged(int finishedCount, int totalCount, boolean looksGoodSoFar) {
-    int percent = 100 * finishedCount / totalCount;
+  public void progressChanged(int finishedCount, int totalCount, double fractionDone,
+      double remainingMillis, boolean looksGoodSoFar) {
+    int percent = (int) Math.floor(100 * fractionDone);
     String color = looksGoodSoFar ? "green" : "red";
     bar.getStyle().setWidth(percent, Unit.PCT);
     bar.getStyle().setHeight(100, Unit.PCT);
     bar.getStyle().setBackgroundColor(color);
+
+    String remaining = formatRemainingTime(remainingMillis);
+    text.setInnerText(finishedCount + " of " + totalCount + " tests"
+        + (remaining.length() == 0 ? "" : ", " + remaining));
+  }
+
+  /**
+   * Returns a rough description of the time left, or an empty string
+   * if it's unknown or the run is done.
+   */
+  static String formatRemainingTime(double remainingMillis) {
+    if (remainingMillis <= 0) {
+      return "";
+    } else if (remainingMillis < 1000) {
+      return "less than a second left";
+    } else if (remainingMillis < 60 * 1000) {
+      return "about " + Math.round(remainingMillis / 1000) + " s left";
+    } else {
+      return "about " + Math.round(remainingMillis / (60 * 1000)) + " min left";
+    }
   }
 }
@@ -22,5 +22,11 @@ package com.google.gwt.testgal.client.impl;
  */
 interface ProgressListener {
 
-  void progressChanged(int finishedCount, int totalCount, boolean looksGoodSoFar);
+  /**
+   * @param fractionDone how much of the run is done, between 0 and 1, weighted
+   * by how long each test is expected to take
+   * @param remainingMillis the estimated time left, or -1 if unknown
+   */
+  void progressChanged(int finishedCount, int totalCount, double fractionDone,
+      double remainingMillis, boolean looksGoodSoFar);
 }
@@ -15,33 +15,109 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.core.client.Duration;
+
 /**
  * Keeps track of how many tests have finished and reports status to a listener, such
  * as the {@link ProgressBar}.
  *
+ * <p>Each test counts toward the progress in proportion to how long it's
+ * expected to take, so that the progress bar moves evenly even when some tests
+ * are much slower than others. The time remaining is estimated from how long
+ * the finished tests took so far.</p>
+ *
  * @author Brian Slesinsky
  */
-class ProgressUpdater implements StatusChangeListener {
+class ProgressUpdater {
 
   /* null until initialized */
   private ProgressListener listener;
 
   private int totalTestsCount = 0;
   private int finishedTestsCount = 0;
+  private double totalExpectedMillis = 0;
+  private double finishedExpectedMillis = 0;
   private boolean looksGoodSoFar = true;
+  private double startMillis;
+
+  /**
+   * True from when a run is started until its last step. (Counting finished
+   * tests isn't enough to tell, since a test may change status more than once,
+   * and runners from previous runs may still report to this updater.)
+   */
+  private boolean running = false;
 
   public void setProgressListener(ProgressListener newListener) {
     this.listener = newListener;
   }
 
-  public void reset(int totalTestsCount) {
+  /**
+   * Starts counting progress for a new run.
+   * @param totalExpectedMillis the sum of the times expected for each test
+   */
+  public void reset(int totalTestsCount, double totalExpectedMillis) {
     this.totalTestsCount = totalTestsCount;
+    this.totalExpectedMillis = totalExpectedMillis;
     finishedTestsCount = 0;
+    finishedExpectedMillis = 0;
     looksGoodSoFar = true;
+    startMillis = Duration.currentTimeMillis();
+    running = true;
     sendProgress();
   }
 
-  public void statusChanged(TestStatus newStatus) {
+  /**
+   * Marks a run as started, before its first step runs (which calls
+   * {@link #reset}), so that no other run can start in between.
+   */
+  void markRunning() {
+    running = true;
+  }
+
+  /**
+   * Marks the end of a run. This is called by the run's last step,
+   * after all its tests have finished.
+   */
+  void finish() {
+    running = false;
+  }
+
+  /**
+   * Returns true after a run has started, until its last step.
+   */
+  boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Returns a listener for the status of one test.
+   * @param expectedMillis how long the test is expected to take
+   */
+  StatusChangeListener forTest(final double expectedMillis) {
+    return new StatusChangeListener() {
+      public void statusChanged(TestStatus newStatus) {
+        testStatusChanged(newStatus, expectedMillis);
+      }
+    };
+  }
+
+  /**
+   * Estimates the time remaining in a run by assuming the rest will go
+   * at the same rate as the part that's done.
+   * @return the estimate, or -1 if there's no way to tell yet
+   */
+  static double estimateRemainingMillis(double elapsedMillis, double fractionDone) {
+    if (fractionDone <= 0) {
+      return -1;
+    } else if (fractionDone >= 1) {
+      return 0;
+    }
+    return elapsedMillis * (1 - fractionDone) / fractionDone;
+  }
+
+  // ======== end of public methods ========
+
+  private void testStatusChanged(TestStatus newStatus, double expectedMillis) {
     switch(newStatus) {
       case PASSED:
         break;
@@ -54,12 +130,24 @@ class ProgressUpdater implements StatusChangeListener {
         return;
     }
     finishedTestsCount++;
+    finishedExpectedMillis += expectedMillis;
     sendProgress();
   }
 
   private void sendProgress() {
     if (listener != null) {
-      listener.progressChanged(finishedTestsCount, totalTestsCount, looksGoodSoFar);
+      double fractionDone;
+      if (finishedTestsCount >= totalTestsCount) {
+        fractionDone = 1;
+      } else if (totalExpectedMillis > 0) {
+        fractionDone = Math.min(1, finishedExpectedMillis / totalExpectedMillis);
+      } else {
+        fractionDone = (double) finishedTestsCount / totalTestsCount;
+      }
+      double remainingMillis = estimateRemainingMillis(
+          Duration.currentTimeMillis() - startMillis, fractionDone);
+      listener.progressChanged(finishedTestsCount, totalTestsCount, fractionDone,
+          remainingMillis, looksGoodSoFar);
     }
   }
 }
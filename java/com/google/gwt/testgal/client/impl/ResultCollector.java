@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.results.shared.TestResult;
+
+import java.util.List;
+
+/**
+ * Collects the results of one test method into a {@link TestResult} and
+ * hands it to a {@link ResultUploader} when the test finishes.
+ *
+ * <p>Each output event becomes one line of text. Snapshots, demos and
+ * comparisons are summarized by their captions, since a widget can't be
+ * uploaded.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class ResultCollector implements ResultListener, StatusChangeListener {
+
+  private final String className;
+  private final ResultUploader uploader;
+
+  private String methodName;
+  private TestStatus status = TestStatus.NOT_STARTED;
+  private PhaseTimes times;
+  private final List<String> output = Lists.newList();
+
+  ResultCollector(String className, ResultUploader uploader) {
+    this.className = className;
+    this.uploader = uploader;
+  }
+
+  public void statusChanged(TestStatus newStatus) {
+    this.status = newStatus;
+  }
+
+  public void testStarted(TestMethod methodAboutToRun) {
+    methodName = methodAboutToRun.getName();
+    times = null;
+    output.clear();
+  }
+
+  public void wroteHeading(String text) {
+    output.add("heading: " + text);
+  }
+
+  public void wroteParagraph(String text) {
+    output.add("paragraph: " + text);
+  }
+
+  public void tookSnapshot(Object target, String caption) {
+    output.add("snapshot: " + caption);
+  }
+
+  public void wroteDemo(Object demoArgument, String caption) {
+    output.add("demo: " + caption);
+  }
+
+  public void wroteError(String message) {
+    output.add("error: " + message);
+  }
+
+  public void compared(Object expected, Object actual, String caption) {
+    output.add("compared: " + caption);
+  }
+
+  public void assertionFailed(Throwable throwable) {
+    output.add("assertion failed: " + throwable.getMessage());
+  }
+
+  public void threwException(String message, Throwable throwable, String stackTraceCaption) {
+    output.add("exception: " + message + " " + throwable);
+  }
+
+  public void locationChanged(EventLocation location) {
+  }
+
+  public void phasesTimed(PhaseTimes newTimes) {
+    this.times = newTimes;
+  }
+
+  public void testFinished(long elapsedTime) {
+    List<EventLocation> phases = Lists.newList();
+    if (times != null) {
+      phases = times.getVisitedPhases();
+    }
+
+    String[] phaseNames = new String[phases.size()];
+    long[] phaseMillis = new long[phases.size()];
+    for (int i = 0; i < phaseNames.length; i++) {
+      phaseNames[i] = phases.get(i).getPhaseName();
+      phaseMillis[i] = times.getMillis(phases.get(i));
+    }
+
+    uploader.add(new TestResult(className, methodName, status.name(), elapsedTime,
+        phaseNames, phaseMillis, output.toArray(new String[output.size()])));
+  }
+}
@@ -31,6 +31,12 @@ interface ResultListener extends OutputListener {
   void threwException(String message, Throwable throwable, String stackTraceCaption);
 
   void locationChanged(EventLocation location);
-  
+
+  /**
+   * Reports how long the test spent in each location. This is called just
+   * before {@link #testFinished}, and the times won't change afterwards.
+   */
+  void phasesTimed(PhaseTimes times);
+
   void testFinished(long elapsedTime);
 }
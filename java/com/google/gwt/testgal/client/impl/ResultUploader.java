@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.results.shared.ResultServiceAsync;
+import com.google.gwt.testgal.results.shared.TestResult;
+import com.google.gwt.user.client.Random;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import java.util.List;
+
+/**
+ * Uploads test results to a {@link ResultServiceAsync} in batches, so that
+ * running a large gallery doesn't make one round trip per test.
+ *
+ * <p>A batch is sent when it has enough results, when the oldest result
+ * in it has waited long enough, or when {@link #flush} is called at the end
+ * of the run. If an upload fails, the error is logged and the batch is dropped;
+ * uploading results never affects the tests themselves.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class ResultUploader {
+
+  private final ResultServiceAsync service;
+  private final String runId;
+  private final int batchSize;
+  private final int maxDelayMillis;
+
+  private final List<TestResult> buffer = Lists.newList();
+  private final Timer timer;
+  private boolean timerPending = false;
+
+  /**
+   * @param batchSize the number of results that will be sent at once
+   * @param maxDelayMillis the longest a result waits before it's sent
+   */
+  ResultUploader(ResultServiceAsync service, String runId, int batchSize, int maxDelayMillis) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batch size must be at least 1");
+    } else if (maxDelayMillis < 1) {
+      throw new IllegalArgumentException("maximum delay must be positive");
+    }
+    this.service = service;
+    this.runId = runId;
+    this.batchSize = batchSize;
+    this.maxDelayMillis = maxDelayMillis;
+    this.timer = new Timer() {
+      @Override
+      public void run() {
+        timerPending = false;
+        flush();
+      }
+    };
+  }
+
+  /**
+   * Returns an id for a new gallery run, which sorts by the time it started.
+   */
+  static String makeRunId() {
+    return "run-" + (long) Duration.currentTimeMillis() + "-" + Random.nextInt(1000000);
+  }
+
+  String getRunId() {
+    return runId;
+  }
+
+  /**
+   * Returns the number of results waiting to be sent.
+   */
+  int getBufferedCount() {
+    return buffer.size();
+  }
+
+  void add(TestResult result) {
+    buffer.add(result);
+    if (buffer.size() >= batchSize) {
+      flush();
+    } else if (!timerPending) {
+      timerPending = true;
+      timer.schedule(maxDelayMillis);
+    }
+  }
+
+  /**
+   * Sends any results that are waiting.
+   */
+  void flush() {
+    if (timerPending) {
+      timer.cancel();
+      timerPending = false;
+    }
+    if (buffer.isEmpty()) {
+      return;
+    }
+
+    final TestResult[] batch = buffer.toArray(new TestResult[buffer.size()]);
+    buffer.clear();
+    service.saveResults(runId, batch, new AsyncCallback<Void>() {
+      public void onSuccess(Void result) {
+        GWT.log("uploaded " + batch.length + " test results for " + runId, null);
+      }
+
+      public void onFailure(Throwable caught) {
+        GWT.log("unable to upload " + batch.length + " test results for " + runId, caught);
+      }
+    });
+  }
+}
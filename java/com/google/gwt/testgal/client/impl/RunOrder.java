@@ -0,0 +1,184 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Decides the order in which sections, and the test methods within each
+ * section, are run. (The gallery still displays them in the order they
+ * were added.)
+ *
+ * <p>Besides running tests in the order they were added, the test runner
+ * can run the tests that failed last time first, so that they're reported
+ * as soon as possible, or run the slowest tests first, so that when tests run
+ * concurrently, the quick ones fill in the gaps at the end. Running tests in
+ * a random order finds tests that depend on each other; the same seed gives
+ * the same order.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public abstract class RunOrder {
+
+  /** Runs tests in the order they were added to the gallery. */
+  public static final RunOrder DECLARED = new RunOrder("declared") {
+    @Override
+    public <T> List<T> order(List<T> items, History<T> history) {
+      return new ArrayList<T>(items);
+    }
+  };
+
+  /**
+   * Runs the tests that failed the last time they ran first, and otherwise
+   * in the order they were added. A section is run first if any of its
+   * tests failed.
+   */
+  public static final RunOrder FAILED_FIRST = new RunOrder("failed") {
+    @Override
+    public <T> List<T> order(List<T> items, History<T> history) {
+      List<T> result = new ArrayList<T>(items.size());
+      List<T> others = new ArrayList<T>();
+      for (T item : items) {
+        if (history.failedLastTime(item)) {
+          result.add(item);
+        } else {
+          others.add(item);
+        }
+      }
+      result.addAll(others);
+      return result;
+    }
+  };
+
+  /**
+   * Runs the tests that are expected to take longest first. A section's
+   * expected time is the total for its tests.
+   */
+  public static final RunOrder LONGEST_FIRST = new RunOrder("longest") {
+    @Override
+    public <T> List<T> order(List<T> items, History<T> history) {
+      // look up each item's time once, rather than on every comparison
+      List<Timed<T>> timed = new ArrayList<Timed<T>>(items.size());
+      for (T item : items) {
+        timed.add(new Timed<T>(item, history.getExpectedMillis(item)));
+      }
+      Collections.sort(timed, LONGEST_TIME_FIRST); // stable
+
+      List<T> result = new ArrayList<T>(items.size());
+      for (Timed<T> item : timed) {
+        result.add(item.item);
+      }
+      return result;
+    }
+  };
+
+  /**
+   * What the test runner knows about each section or test method
+   * from previous runs. (Answering may take a while, so each order
+   * asks about each item at most once.)
+   */
+  public interface History<T> {
+    /** Returns how long the item is expected to take, in milliseconds. */
+    double getExpectedMillis(T item);
+
+    /** Returns true if the item (or any test in it) failed the last time it ran. */
+    boolean failedLastTime(T item);
+  }
+
+  private final String name;
+
+  /**
+   * @param name the value of the "order" query parameter that selects this order
+   */
+  protected RunOrder(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns a new list with the items in the order they should run.
+   * @param items the sections or test methods, in the order they were added
+   */
+  public abstract <T> List<T> order(List<T> items, History<T> history);
+
+  /**
+   * Returns an order that shuffles the tests, the same way each time
+   * for a given seed.
+   */
+  public static RunOrder random(final long seed) {
+    return new RunOrder("random(seed=" + seed + ")") {
+      @Override
+      public <T> List<T> order(List<T> items, History<T> history) {
+        Random random = new Random(seed);
+        List<T> result = new ArrayList<T>(items);
+        for (int i = result.size() - 1; i > 0; i--) {
+          int j = random.nextInt(i + 1);
+          T item = result.get(i);
+          result.set(i, result.get(j));
+          result.set(j, item);
+        }
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Returns the order with the given name ("declared", "failed", "longest",
+   * or "random"), or null if there's no such order.
+   * @param seed the seed to use for a random order
+   */
+  public static RunOrder forName(String name, long seed) {
+    if (DECLARED.name.equals(name)) {
+      return DECLARED;
+    } else if (FAILED_FIRST.name.equals(name)) {
+      return FAILED_FIRST;
+    } else if (LONGEST_FIRST.name.equals(name)) {
+      return LONGEST_FIRST;
+    } else if ("random".equals(name)) {
+      return random(seed);
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  // ======== end of public methods ========
+
+  private static final Comparator<Timed<?>> LONGEST_TIME_FIRST = new Comparator<Timed<?>>() {
+    public int compare(Timed<?> a, Timed<?> b) {
+      return Double.compare(b.millis, a.millis);
+    }
+  };
+
+  /**
+   * An item and how long it's expected to take.
+   */
+  private static class Timed<T> {
+    final T item;
+    final double millis;
+
+    Timed(T item, double millis) {
+      this.item = item;
+      this.millis = millis;
+    }
+  }
+}
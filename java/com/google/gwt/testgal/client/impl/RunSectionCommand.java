@@ -24,57 +24,92 @@ import java.util.Queue;
 /**
  * Runs all the tests in a section.
  *
+ * <p> Normally the section's test methods run one at a time. If the section's
+ * concurrency level is greater than one, up to that many test methods run at
+ * the same time, each on its own schedule, so that one asynchronous test can
+ * run while another is waiting. (An exception thrown from an event handler
+ * can't be traced back to a single test in that case, so it will be
+ * reported by every test that's waiting.) </p>
+ *
  * @author Brian Slesinsky
  */
 class RunSectionCommand implements YieldingCommand {
 
+  /**
+   * How often the section checks whether its concurrent test methods are
+   * finished, in case a wakeup was missed.
+   */
+  private static final int CHECK_FINISHED_MILLIS = 1000;
+
   // state for running tests
   private TestStatus status;
   private final Queue<MethodRunner> remainingRunners;
   private final StatusChangeListener statusListener;
+  private final int concurrency;
+
+  /** The number of lanes that are still running test methods. */
+  private int runningLanes = 0;
+
+  /** The step that finishes the section, while it's waiting for lanes to finish. */
+  private Step finishStep;
 
   RunSectionCommand(List<MethodRunner> methodRunners, StatusChangeListener statusListener) {
+    this(methodRunners, statusListener, 1);
+  }
+
+  /**
+   * @param concurrency the maximum number of test methods to run at once
+   */
+  RunSectionCommand(List<MethodRunner> methodRunners, StatusChangeListener statusListener,
+      int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be at least 1");
+    }
     this.status = TestStatus.NOT_STARTED;
     this.remainingRunners = Lists.newQueue(methodRunners);
     this.statusListener = statusListener;
+    this.concurrency = concurrency;
   }
 
   public void run(Schedule schedule) {
-
-    final MethodRunner nextMethod = remainingRunners.poll();
-    if (nextMethod == null) {
+    if (remainingRunners.isEmpty()) {
       return;
     }
 
-    // set this section's status to running
-    if (status != TestStatus.FAILED) {
-      updateStatus(TestStatus.RUNNING);
+    int laneCount = Math.min(concurrency, remainingRunners.size());
+    if (laneCount == 1) {
+      // run the test methods one at a time in this schedule
+      schedule.push(new FinishSectionCommand());
+      schedule.push(new Lane());
+      return;
     }
 
-    // schedule section-level cleanup after the test method finishes
-    schedule.push(new YieldingCommand() {
-      public void run(Schedule schedule) {
-        onTestMethodFinished(schedule, nextMethod);
-      }
-    });
-
-    // run the test method
-    schedule.push(nextMethod);
+    // Sleep until the last lane wakes us up.
+    finishStep = schedule.push(new FinishSectionCommand());
+    finishStep.setMinDelayBeforeThisStep(CHECK_FINISHED_MILLIS,
+        "to wait for concurrent test methods");
+    for (int i = 0; i < laneCount; i++) {
+      runningLanes++;
+      schedule.startConcurrently(new Lane());
+    }
   }
 
   // =========== end of public methods ========
 
-  private void onTestMethodFinished(Schedule schedule, MethodRunner methodThatFinished) {
+  private void onTestMethodFinished(MethodRunner methodThatFinished) {
     // if the method failed, the section failed too
     if (methodThatFinished.getStatus() == TestStatus.FAILED) {
       updateStatus(TestStatus.FAILED);
     }
+  }
 
-    if (remainingRunners.isEmpty()) {
-      onAllTestMethodsFinished(schedule);
-    } else {
-      // if there's another method to run, goto run().
-      schedule.push(this);
+  private void onLaneFinished() {
+    if (runningLanes == 0) {
+      return; // not running concurrently
+    }
+    runningLanes--;
+    if (runningLanes == 0 && finishStep != null) {
+      finishStep.setMinDelayBeforeThisStep(0, "to finish section after concurrent tests");
     }
   }
 
@@ -89,4 +124,54 @@ class RunSectionCommand implements YieldingCommand {
     status = newStatus;
     statusListener.statusChanged(newStatus);
   }
+
+  /**
+   * Runs test methods from the section's queue, one at a time, until
+   * the queue is empty.
+   */
+  private class Lane implements YieldingCommand {
+
+    public void run(Schedule schedule) {
+      final MethodRunner nextMethod = remainingRunners.poll();
+      if (nextMethod == null) {
+        onLaneFinished();
+        return;
+      }
+
+      // set this section's status to running
+      if (status != TestStatus.FAILED) {
+        updateStatus(TestStatus.RUNNING);
+      }
+
+      // schedule section-level cleanup after the test method finishes,
+      // then go on to the next method
+      schedule.push(new YieldingCommand() {
+        public void run(Schedule schedule) {
+          onTestMethodFinished(nextMethod);
+          schedule.push(Lane.this);
+        }
+      });
+
+      // run the test method
+      schedule.push(nextMethod);
+    }
+  }
+
+  /**
+   * Finishes the section after all lanes are done.
+   */
+  private class FinishSectionCommand implements YieldingCommand {
+
+    public void run(Schedule schedule) {
+      finishStep = null;
+      if (runningLanes > 0) {
+        // woke up too early; keep waiting
+        finishStep = schedule.push(this);
+        finishStep.setMinDelayBeforeThisStep(CHECK_FINISHED_MILLIS,
+            "to wait for concurrent test methods");
+        return;
+      }
+      onAllTestMethodsFinished(schedule);
+    }
+  }
 }
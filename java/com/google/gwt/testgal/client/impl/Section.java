@@ -15,6 +15,8 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.core.client.RunAsyncCallback;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,8 +33,10 @@ public class Section {
   private final String name;
   private final String description;
   private final List<TestMethod> methods;
-  private final StatusView statusView;
-  private final Map<String, StatusView> methodStatusViews;
+  private final int concurrency;
+  private final SplitTestClass code;
+  private final StatusCell status;
+  private final Map<String, StatusCell> methodStatuses;
 
   /**
    * Creates a section that runs the specified test methods.
@@ -41,11 +45,37 @@ public class Section {
    * @param methods  The methods to run. May not be null. If empty, a to-do will appear.
    */
   public Section(String name, String description, List<TestMethod> methods) {
+    this(name, description, methods, 0);
+  }
+
+  /**
+   * Creates a section that may run several of its test methods at once.
+   * @param concurrency  The maximum number of test methods to run at the same time,
+   * or zero to use the test suite's default.
+   * @see TestSuite.Builder#setConcurrency
+   */
+  public Section(String name, String description, List<TestMethod> methods,
+      int concurrency) {
+    this(name, description, methods, concurrency, null);
+  }
+
+  /**
+   * Creates a section whose test methods may need to be downloaded before they run.
+   * @param code  The test class that will download the code, or null if it's
+   * already loaded.
+   */
+  public Section(String name, String description, List<TestMethod> methods,
+      int concurrency, SplitTestClass code) {
+    if (concurrency < 0) {
+      throw new IllegalArgumentException("concurrency must be non-negative");
+    }
     this.name = name == null ? DEFAULT_NAME : name;
     this.description = description == null ? DEFAULT_SUMMARY : description;
     this.methods = methods;
-    this.statusView = new StatusView(name);
-    this.methodStatusViews = makeStatusViews(methods);
+    this.concurrency = concurrency;
+    this.code = code;
+    this.status = new StatusCell();
+    this.methodStatuses = makeStatusCells(methods);
   }
 
   public String getName() {
@@ -60,16 +90,54 @@ public class Section {
     return methods;
   }
 
+  /**
+   * Returns the maximum number of test methods to run at once,
+   * or zero if the test suite's default should be used.
+   */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Returns true if the code for this section's tests hasn't been downloaded yet.
+   */
+  public boolean needsLoading() {
+    return code != null && !code.__isLoaded();
+  }
+
+  /**
+   * Downloads the code for this section's tests if needed, then calls the callback.
+   */
+  public void load(RunAsyncCallback callback) {
+    if (code == null) {
+      callback.onSuccess();
+    } else {
+      code.__load(callback);
+    }
+  }
+
+  /**
+   * Returns a new section like this one that runs only some of its test methods.
+   * (The new section has its own status.)
+   */
+  Section withMethods(List<TestMethod> someMethods) {
+    return new Section(name, description, someMethods, concurrency, code);
+  }
+
+  public TestStatus getStatus() {
+    return status.getStatus();
+  }
+
   public TestStatus getStatus(TestMethod method) {
-    return getStatusView(method).getStatus();
+    return getStatusCell(method).getStatus();
   }
 
-  public StatusView getStatusView() {
-    return statusView;
+  public StatusCell getStatusCell() {
+    return status;
   }
 
-  public StatusView getStatusView(TestMethod method) {
-    return methodStatusViews.get(method.getName());
+  public StatusCell getStatusCell(TestMethod method) {
+    return methodStatuses.get(method.getName());
   }
 
   public String getResultPageId() {
@@ -80,10 +148,10 @@ public class Section {
     return Pages.makeResultPageId(this, method);
   }
 
-  private static Map<String, StatusView> makeStatusViews(List<TestMethod> methods) {
-    Map<String, StatusView> result = new HashMap<String, StatusView>();
+  private static Map<String, StatusCell> makeStatusCells(List<TestMethod> methods) {
+    Map<String, StatusCell> result = new HashMap<String, StatusCell>();
     for (TestMethod method : methods) {
-      result.put(method.getName(), new StatusView(method.getName()));
+      result.put(method.getName(), new StatusCell());
     }
     return result;
   }
@@ -15,15 +15,19 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.testgal.client.impl.util.HtmlWriter;
+import com.google.gwt.testgal.client.impl.util.Lists;
 import com.google.gwt.testgal.client.impl.util.PageHistory;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.InlineLabel;
-import com.google.gwt.user.client.ui.Label;
+import com.google.gwt.user.client.ui.Widget;
+
+import java.util.List;
 
 /**
  * The page that's displayed when you click on the name of a test class.
@@ -32,7 +36,22 @@ import com.google.gwt.user.client.ui.Label;
  */
 class SectionResultPage extends Composite {
 
+  private final Section section;
+
+  /** The suite that can rerun the section's tests in place, or null. */
+  private final TestSuite suite;
+
   SectionResultPage(Section section, PageHistory history) {
+    this(section, history, null);
+  }
+
+  /**
+   * @param suite the suite containing the section, which is used to rerun
+   * tests without reloading the page, or null to leave out those links
+   */
+  SectionResultPage(Section section, PageHistory history, TestSuite suite) {
+    this.section = section;
+    this.suite = suite;
 
     FlowPanel panel = new FlowPanel();
     panel.addStyleName("tg-section");
@@ -41,6 +60,21 @@ class SectionResultPage extends Composite {
     initWidget(panel);
   }
 
+  @Override
+  protected void onLoad() {
+    // Someone who's looking at a section will probably want to see its tests run,
+    // so start downloading them early.
+    if (section.needsLoading()) {
+      section.load(new RunAsyncCallback() {
+        public void onSuccess() {
+        }
+        public void onFailure(Throwable reason) {
+          // ignored; the failure will be reported when the tests run
+        }
+      });
+    }
+  }
+
   private void writePage(FlowPanel panel, Section section, PageHistory history) {
     HtmlWriter writer = new HtmlWriter(panel.getElement());
     writer.textH2(section.getName());
@@ -56,6 +90,9 @@ class SectionResultPage extends Composite {
         .setAnchorText("Rerun this test")
         .addStyleName("tg-rerun-link")
         .build());
+    if (suite != null) {
+      descriptionPanel.add(makeRerunHereLink(section.getMethods()));
+    }
     panel.add(descriptionPanel);
 
     if (section.getMethods().isEmpty()) {
@@ -70,17 +107,46 @@ class SectionResultPage extends Composite {
     }
   }
 
-  private static Label makeMethodLink(final Section section, final TestMethod method,
+  /**
+   * Makes a link that reruns some tests without reloading the page.
+   */
+  private Widget makeRerunHereLink(final List<TestMethod> methods) {
+    InlineLabel link = new InlineLabel("Rerun here");
+    link.addStyleName("tg-rerun-link");
+    link.addStyleName("tg-rerun-here");
+    link.addClickHandler(new ClickHandler() {
+      public void onClick(ClickEvent event) {
+        if (!suite.rerun(section, methods)) {
+          Window.alert("Please wait until the tests that are running have finished.");
+        }
+      }
+    });
+    return link;
+  }
+
+  private Widget makeMethodLink(final Section section, final TestMethod method,
       final PageHistory history) {
 
-    Label header = new Label(method.getName());
+    InlineLabel header = new InlineLabel(method.getName());
     header.addStyleName("tg-section-method");
     header.addClickHandler(new ClickHandler() {
       public void onClick(ClickEvent event) {
         Pages.changePage(Pages.makeResultPageId(section, method), history);
       }
     });
-    return header;
+
+    FlowPanel row = new FlowPanel();
+    row.addStyleName("tg-section-method-row");
+    row.add(header);
+    row.add(new GalleryRequestBuilder(Window.Location.createUrlBuilder())
+        .setRunOne(section.getName(), method.getName())
+        .setAnchorText("Rerun")
+        .addStyleName("tg-rerun-link")
+        .build());
+    if (suite != null) {
+      row.add(makeRerunHereLink(Lists.of(method)));
+    }
+    return row;
   }
 
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits the sections of a gallery into shards that can run at the same time
+ * (for example, in several browser tabs). Each shard is chosen the same way
+ * from the same inputs, so the shards cover every test exactly once.
+ *
+ * <p>Normally each section goes entirely into one shard. A section that by
+ * itself would take longer than a shard's fair share is split up, and its
+ * test methods are spread across shards instead.</p>
+ *
+ * <p>By default, each piece's shard is picked using a hash of its name.
+ * If a history of previous runs is given, the shards are balanced using each
+ * test's expected time instead: the longest pieces are handed out first, each
+ * to the shard that has the least so far. This is only safe when every shard
+ * is given exactly the same history, so the test runner doesn't use the one
+ * in the browser's local storage, which changes as shards finish and isn't
+ * shared between browser profiles.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class Sharder {
+
+  private final TestHistory history;
+  private final double defaultMillis;
+
+  /**
+   * A section, or some of its test methods, that goes into one shard.
+   */
+  private static class Piece {
+    final String name;
+    final Section section;
+    final List<TestMethod> methods;
+    final double expectedMillis;
+    int shard;
+
+    Piece(String name, Section section, List<TestMethod> methods, double expectedMillis) {
+      this.name = name;
+      this.section = section;
+      this.methods = methods;
+      this.expectedMillis = expectedMillis;
+    }
+  }
+
+  /**
+   * @param history the history used to balance the shards, or null
+   * to split them by hashing. (Every shard must use the same one.)
+   */
+  Sharder(TestHistory history, double defaultMillis) {
+    this.history = history == null || history.size() == 0 ? null : history;
+    this.defaultMillis = history == null ? defaultMillis : history.getAverageMillis(defaultMillis);
+  }
+
+  /**
+   * Returns the sections in one shard, in their original order.
+   * A section that's split between shards is replaced by a new section
+   * containing only this shard's test methods.
+   * @param shard which shard to return, counting from 1
+   * @param shardCount how many shards there are in all
+   */
+  List<Section> selectShard(List<Section> sections, int shard, int shardCount) {
+    checkShard(shard, shardCount);
+
+    List<Piece> pieces = makePieces(sections, shardCount);
+    if (history == null) {
+      for (Piece piece : pieces) {
+        piece.shard = hashShard(piece.name, shardCount);
+      }
+    } else {
+      assignLongestFirst(pieces, shardCount);
+    }
+
+    List<Section> result = Lists.newList();
+    for (Section section : sections) {
+      List<TestMethod> methods = Lists.newList();
+      boolean wholeSection = false;
+      for (Piece piece : pieces) {
+        if (piece.section == section && piece.shard == shard) {
+          wholeSection = piece.methods == section.getMethods();
+          methods.addAll(piece.methods);
+        }
+      }
+      if (wholeSection) {
+        result.add(section);
+      } else if (!methods.isEmpty()) {
+        // keep the methods in their original order
+        List<TestMethod> ordered = Lists.newList();
+        for (TestMethod method : section.getMethods()) {
+          if (methods.contains(method)) {
+            ordered.add(method);
+          }
+        }
+        result.add(section.withMethods(ordered));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the shard (counting from 1) that a piece with the given name goes
+   * into when there's no history. This depends only on the name, so it's the
+   * same every time.
+   */
+  static int hashShard(String name, int shardCount) {
+    int remainder = name.hashCode() % shardCount;
+    return (remainder < 0 ? remainder + shardCount : remainder) + 1;
+  }
+
+  /**
+   * Throws an exception unless 1 <= shard <= shardCount.
+   */
+  static void checkShard(int shard, int shardCount) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("the number of shards must be at least 1");
+    } else if (shard < 1 || shard > shardCount) {
+      throw new IllegalArgumentException("shard must be between 1 and " + shardCount
+          + " but it's " + shard);
+    }
+  }
+
+  // ======== end of public methods ========
+
+  private List<Piece> makePieces(List<Section> sections, int shardCount) {
+    double total = 0;
+    for (Section section : sections) {
+      total += getExpectedMillis(section, section.getMethods());
+    }
+    double fairShare = total / shardCount;
+
+    List<Piece> pieces = Lists.newList();
+    for (Section section : sections) {
+      List<TestMethod> methods = section.getMethods();
+      double sectionMillis = getExpectedMillis(section, methods);
+      if (sectionMillis <= fairShare || methods.size() <= 1) {
+        pieces.add(new Piece(section.getName(), section, methods, sectionMillis));
+      } else {
+        for (TestMethod method : methods) {
+          pieces.add(new Piece(TestHistory.makeKey(section, method), section,
+              Lists.of(method), getExpectedMillis(section, method)));
+        }
+      }
+    }
+    return pieces;
+  }
+
+  /**
+   * Hands out the pieces from longest to shortest, each to the shard with the
+   * least expected time so far. (Ties are broken by name and shard number, so
+   * the result doesn't depend on anything but the inputs.)
+   */
+  private static void assignLongestFirst(List<Piece> pieces, int shardCount) {
+    List<Piece> sorted = Lists.newList();
+    sorted.addAll(pieces);
+    Collections.sort(sorted, new Comparator<Piece>() {
+      public int compare(Piece a, Piece b) {
+        int result = Double.compare(b.expectedMillis, a.expectedMillis);
+        return result != 0 ? result : a.name.compareTo(b.name);
+      }
+    });
+
+    double[] totals = new double[shardCount];
+    for (Piece piece : sorted) {
+      int best = 0;
+      for (int i = 1; i < shardCount; i++) {
+        if (totals[i] < totals[best]) {
+          best = i;
+        }
+      }
+      totals[best] += piece.expectedMillis;
+      piece.shard = best + 1;
+    }
+  }
+
+  private double getExpectedMillis(Section section, List<TestMethod> methods) {
+    double total = 0;
+    for (TestMethod method : methods) {
+      total += getExpectedMillis(section, method);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the test's expected time. Without a history, every test counts
+   * the same.
+   */
+  private double getExpectedMillis(Section section, TestMethod method) {
+    if (history == null) {
+      return 1;
+    }
+    return history.getExpectedMillis(TestHistory.makeKey(section, method), defaultMillis);
+  }
+}
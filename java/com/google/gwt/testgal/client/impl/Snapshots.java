@@ -18,7 +18,6 @@ package com.google.gwt.testgal.client.impl;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
-import com.google.gwt.dom.client.SpanElement;
 import com.google.gwt.dom.client.TableElement;
 import com.google.gwt.testgal.client.impl.util.HoverListener;
 import com.google.gwt.testgal.client.impl.util.HtmlWriter;
@@ -92,23 +91,6 @@ class Snapshots {
     return panel;
   }
 
-  /**
-   * Creates a snapshot of a String with error highlighting starting at the specified index.
-   */
-  static Widget makeStringSnapshotWithError(String text, int errorIndex) {
-    Element div = Document.get().createDivElement();
-    HtmlWriter writer = new HtmlWriter(div);
-
-    writer.textPreformatted(text.substring(0, errorIndex));
-    SpanElement lastPart = writer.textPreformatted(text.substring(errorIndex));
-    lastPart.setAttribute("class", "tg-diff-selected");
-    if (errorIndex < text.length()) {
-      lastPart.setAttribute("title", "differing char: " + (int)text.charAt(errorIndex));
-    }
-
-    return makePlainSnapshot(div);
-  }
-
   private static Element attachToOuterElement(Element elementToDisplay) {
     Element outer = Document.get().createDivElement();
     outer.appendChild(elementToDisplay);
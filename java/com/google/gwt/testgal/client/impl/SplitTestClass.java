@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.core.client.RunAsyncCallback;
+
+/**
+ * A test class whose tests are downloaded separately from the rest of the gallery.
+ * The TestGal GWT module generates this kind of test class when the
+ * "testgal.splitSections" configuration property is true.
+ *
+ * <p>The test methods' names are available right away, but calling makeTest()
+ * before the code is loaded throws an IllegalStateException.</p>
+ *
+ * @see com.google.gwt.testgal.rebind.TestSourceGenerator
+ *
+ * @author Brian Slesinsky
+ */
+public interface SplitTestClass extends TestClass {
+
+  boolean __isLoaded();
+
+  /**
+   * Downloads the code for this test class, if needed.
+   * The callback is called after the download finishes (or immediately
+   * if the code is already loaded).
+   */
+  void __load(RunAsyncCallback callback);
+
+  /**
+   * Creates tests after the code is loaded. (Used by generated code.)
+   */
+  interface Factory {
+    SingleTest makeTest(int methodIndex);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+
+import java.util.List;
+
+/**
+ * Holds the current status of a test method or section, and passes
+ * changes on to any views that are displaying it.
+ *
+ * @author Brian Slesinsky
+ */
+class StatusCell implements StatusChangeListener {
+
+  private TestStatus status = TestStatus.NOT_STARTED;
+
+  /** The listeners to notify, or null if there aren't any yet. */
+  private List<StatusChangeListener> listeners;
+
+  public TestStatus getStatus() {
+    return status;
+  }
+
+  public void addListener(StatusChangeListener listener) {
+    if (listeners == null) {
+      listeners = Lists.newList();
+    }
+    listeners.add(listener);
+  }
+
+  public void statusChanged(TestStatus newStatus) {
+    this.status = newStatus;
+    if (listeners != null) {
+      for (StatusChangeListener listener : listeners) {
+        listener.statusChanged(newStatus);
+      }
+    }
+  }
+}
@@ -26,6 +26,7 @@ import com.google.gwt.user.client.ui.InlineLabel;
  */
 class StatusView extends Composite implements StatusChangeListener {
 
+  private final InlineLabel nameLabel;
   private final InlineLabel statusLabel;
   private TestStatus status;
 
@@ -37,16 +38,27 @@ class StatusView extends Composite implements StatusChangeListener {
 
     FlowPanel view = new FlowPanel();
     view.addStyleName("tg-status");
-    view.add(new InlineLabel(testName + ":"));
+    this.nameLabel = new InlineLabel(testName + ":");
+    view.add(nameLabel);
     view.add(statusLabel);
     initWidget(view);
   }
 
+  /**
+   * Changes the test that this view displays, so that it can be reused.
+   */
+  public void setTestName(String testName) {
+    nameLabel.setText(testName + ":");
+  }
+
   public TestStatus getStatus() {
     return status;
   }
 
   public void statusChanged(TestStatus newStatus) {
+    if (newStatus == status) {
+      return;
+    }
     this.status = newStatus;
     statusLabel.setText(newStatus.getLabelText());
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+/**
+ * Sends each result from a test method to two listeners.
+ *
+ * @author Brian Slesinsky
+ */
+class TeeResultListener implements ResultListener {
+
+  private final ResultListener first;
+  private final ResultListener second;
+
+  TeeResultListener(ResultListener first, ResultListener second) {
+    this.first = first;
+    this.second = second;
+  }
+
+  public void testStarted(TestMethod methodAboutToRun) {
+    first.testStarted(methodAboutToRun);
+    second.testStarted(methodAboutToRun);
+  }
+
+  public void wroteHeading(String text) {
+    first.wroteHeading(text);
+    second.wroteHeading(text);
+  }
+
+  public void wroteParagraph(String text) {
+    first.wroteParagraph(text);
+    second.wroteParagraph(text);
+  }
+
+  public void tookSnapshot(Object target, String caption) {
+    first.tookSnapshot(target, caption);
+    second.tookSnapshot(target, caption);
+  }
+
+  public void wroteDemo(Object demoArgument, String caption) {
+    first.wroteDemo(demoArgument, caption);
+    second.wroteDemo(demoArgument, caption);
+  }
+
+  public void wroteError(String message) {
+    first.wroteError(message);
+    second.wroteError(message);
+  }
+
+  public void compared(Object expected, Object actual, String caption) {
+    first.compared(expected, actual, caption);
+    second.compared(expected, actual, caption);
+  }
+
+  public void assertionFailed(Throwable throwable) {
+    first.assertionFailed(throwable);
+    second.assertionFailed(throwable);
+  }
+
+  public void threwException(String message, Throwable throwable, String stackTraceCaption) {
+    first.threwException(message, throwable, stackTraceCaption);
+    second.threwException(message, throwable, stackTraceCaption);
+  }
+
+  public void locationChanged(EventLocation location) {
+    first.locationChanged(location);
+    second.locationChanged(location);
+  }
+
+  public void phasesTimed(PhaseTimes times) {
+    first.phasesTimed(times);
+    second.phasesTimed(times);
+  }
+
+  public void testFinished(long elapsedTime) {
+    first.testFinished(elapsedTime);
+    second.testFinished(elapsedTime);
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Maps;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers how long each test method took and whether it passed, from
+ * one run of a gallery to the next. The test runner uses this to estimate
+ * how long a run will take.
+ *
+ * <p>The history is saved in the browser's local storage, as one line per
+ * test method. Each test's expected time is the average of the time it just
+ * took and its previous expected time, so one slow run doesn't count for
+ * too much.</p>
+ *
+ * <p>Saving writes the whole history, so the test runner saves at most once
+ * every few seconds while tests are running, and only if something changed.
+ * Other tabs (such as other shards) may have saved their own results in the
+ * meantime, so the saved history is read again first, and only the tests
+ * that this tab ran replace what's there.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class TestHistory {
+
+  /** The least time between saves while tests are running. */
+  static final double SAVE_INTERVAL_MILLIS = 5000;
+
+  private final Map<String, Entry> entries = Maps.newStringMap();
+
+  /** The local storage key to save the history under, or null if it's not saved. */
+  private final String storageKey;
+
+  /**
+   * The average expected time of the tests, or -1 if it needs to be computed.
+   * (A suite asks for it once per test method while it's being built.)
+   */
+  private double averageMillis = -1;
+
+  /** The tests recorded since the history was last saved. */
+  private final Set<String> unsavedKeys = new HashSet<String>();
+
+  /** When {@link #saveIfDue} last saved. */
+  private double lastSaveMillis = Double.NEGATIVE_INFINITY;
+
+  private static class Entry {
+    double expectedMillis;
+    TestStatus lastStatus;
+
+    Entry(double expectedMillis, TestStatus lastStatus) {
+      this.expectedMillis = expectedMillis;
+      this.lastStatus = lastStatus;
+    }
+  }
+
+  /**
+   * Creates an empty history that isn't saved anywhere.
+   */
+  TestHistory() {
+    this(null);
+  }
+
+  private TestHistory(String storageKey) {
+    this.storageKey = storageKey;
+  }
+
+  /**
+   * Loads the history saved under the given key in local storage. If there's
+   * nothing there (or the browser doesn't have local storage), the history
+   * starts out empty.
+   */
+  static TestHistory load(String storageKey) {
+    TestHistory result = new TestHistory(storageKey);
+    String saved = getItem(storageKey);
+    if (saved != null) {
+      result.parse(saved);
+    }
+    return result;
+  }
+
+  /**
+   * Saves the history to local storage, if it was loaded from there and
+   * any tests were recorded since it was last saved.
+   */
+  void save() {
+    if (unsavedKeys.isEmpty()) {
+      return;
+    }
+    if (storageKey != null) {
+      setItem(storageKey, merge(getItem(storageKey)));
+    }
+    unsavedKeys.clear();
+  }
+
+  /**
+   * Saves the history if it changed and it hasn't been saved recently.
+   */
+  void saveIfDue(double nowMillis) {
+    if (!unsavedKeys.isEmpty() && nowMillis - lastSaveMillis >= SAVE_INTERVAL_MILLIS) {
+      save();
+      lastSaveMillis = nowMillis;
+    }
+  }
+
+  /**
+   * Returns true if tests were recorded since the history was last saved.
+   */
+  boolean hasUnsavedChanges() {
+    return !unsavedKeys.isEmpty();
+  }
+
+  /**
+   * Adds the entries in a history that was saved by someone else (or null)
+   * to this one, keeping this history's entries for the tests it recorded
+   * since it was last saved. Returns the result, serialized.
+   */
+  String merge(String saved) {
+    if (saved != null) {
+      Map<String, Entry> recorded = Maps.newStringMap();
+      for (String key : unsavedKeys) {
+        recorded.put(key, entries.get(key));
+      }
+      parse(saved);
+      entries.putAll(recorded);
+    }
+    return serialize();
+  }
+
+  /**
+   * Returns the key that identifies a test method in the history.
+   */
+  static String makeKey(Section section, TestMethod method) {
+    return section.getName() + "." + method.getName();
+  }
+
+  boolean contains(String key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Returns the number of test methods in the history.
+   */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns how long the test is expected to take,
+   * or the default if it hasn't run before.
+   */
+  double getExpectedMillis(String key, double defaultMillis) {
+    Entry entry = entries.get(key);
+    return entry == null ? defaultMillis : entry.expectedMillis;
+  }
+
+  /**
+   * Returns the average expected time of all the tests in the history,
+   * or the default if the history is empty.
+   */
+  double getAverageMillis(double defaultMillis) {
+    if (entries.isEmpty()) {
+      return defaultMillis;
+    }
+    if (averageMillis < 0) {
+      double total = 0;
+      for (Entry entry : entries.values()) {
+        total += entry.expectedMillis;
+      }
+      averageMillis = total / entries.size();
+    }
+    return averageMillis;
+  }
+
+  /**
+   * Returns whether the test passed or failed the last time it ran,
+   * or NOT_STARTED if it hasn't run before.
+   */
+  TestStatus getLastStatus(String key) {
+    Entry entry = entries.get(key);
+    return entry == null ? TestStatus.NOT_STARTED : entry.lastStatus;
+  }
+
+  /**
+   * Records how long a test took and whether it passed.
+   */
+  void record(String key, double elapsedMillis, TestStatus status) {
+    averageMillis = -1;
+    unsavedKeys.add(key);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entries.put(key, new Entry(elapsedMillis, status));
+    } else {
+      entry.expectedMillis = (entry.expectedMillis + elapsedMillis) / 2;
+      entry.lastStatus = status;
+    }
+  }
+
+  /**
+   * Returns a listener that records the result of one test method in this history.
+   */
+  Recorder newRecorder(String key) {
+    return new Recorder(key);
+  }
+
+  /**
+   * Returns the history in the format it's saved in:
+   * one line per test, with the key, expected milliseconds and status
+   * separated by tabs.
+   */
+  String serialize() {
+    StringBuilder out = new StringBuilder();
+    for (Map.Entry<String, Entry> item : entries.entrySet()) {
+      Entry entry = item.getValue();
+      out.append(item.getKey()).append('\t')
+          .append(Math.round(entry.expectedMillis)).append('\t')
+          .append(entry.lastStatus.name()).append('\n');
+    }
+    return out.toString();
+  }
+
+  /**
+   * Adds the entries in a saved history. Lines that can't be parsed
+   * (perhaps saved by a different version of TestGal) are skipped.
+   */
+  void parse(String saved) {
+    averageMillis = -1;
+    for (String line : saved.split("\n")) {
+      String[] fields = line.split("\t");
+      if (fields.length != 3) {
+        continue;
+      }
+      try {
+        double millis = Double.parseDouble(fields[1]);
+        TestStatus status = TestStatus.valueOf(fields[2]);
+        entries.put(fields[0], new Entry(millis, status));
+      } catch (IllegalArgumentException e) {
+        // skip it (NumberFormatException is also an IllegalArgumentException)
+      }
+    }
+  }
+
+  // ======== end of public methods ========
+
+  private static native String getItem(String key) /*-{
+    try {
+      var value = $wnd.localStorage ? $wnd.localStorage.getItem(key) : null;
+      return value == null ? null : value;
+    } catch (e) {
+      return null; // local storage may be disabled
+    }
+  }-*/;
+
+  private static native void setItem(String key, String value) /*-{
+    try {
+      if ($wnd.localStorage) {
+        $wnd.localStorage.setItem(key, value);
+      }
+    } catch (e) {
+      // local storage may be disabled or full; the history just won't be saved
+    }
+  }-*/;
+
+  /**
+   * Records the time and final status of a test method when it finishes.
+   */
+  class Recorder implements StatusChangeListener, TimingListener {
+    private final String key;
+    private TestStatus status = TestStatus.NOT_STARTED;
+
+    private Recorder(String key) {
+      this.key = key;
+    }
+
+    public void statusChanged(TestStatus newStatus) {
+      status = newStatus;
+    }
+
+    public void testTimed(TestMethod method, PhaseTimes times) {
+      if (status == TestStatus.PASSED || status == TestStatus.FAILED) {
+        record(key, times.getTotalMillis(), status);
+      }
+    }
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.user.client.Timer;
+
 import junit.framework.Assert;
 
 /**
@@ -38,6 +40,22 @@ public class TestMethods {
     return new SimpleTestMethod(testName, new SimpleSingleTest(failureMessage, true));
   }
 
+  /**
+   * Makes an asynchronous test that passes after waiting for a timer.
+   */
+  public static TestMethod makeAsyncTestThatPasses(final String testName,
+      final int delayMillis) {
+    return new TestMethod() {
+      public String getName() {
+        return testName;
+      }
+
+      public SingleTest makeTest() {
+        return new AsyncSingleTest(delayMillis);
+      }
+    };
+  }
+
   private static class SimpleTestMethod implements TestMethod {
 
     private final String testName;
@@ -84,4 +102,32 @@ public class TestMethods {
     public void __setCallback(Callback newCallback) {
     }
   }
+
+  private static class AsyncSingleTest implements SingleTest {
+    private final int delayMillis;
+    private Callback callback;
+
+    AsyncSingleTest(int delayMillis) {
+      this.delayMillis = delayMillis;
+    }
+
+    public void __runSetUp() {
+    }
+
+    public void __runTestMethod() {
+      callback.delayTestFinish(delayMillis + 1000);
+      new Timer() {
+        public void run() {
+          callback.finishTest();
+        }
+      }.schedule(delayMillis);
+    }
+
+    public void __runTearDown() {
+    }
+
+    public void __setCallback(Callback newCallback) {
+      this.callback = newCallback;
+    }
+  }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+
+import java.util.List;
+
+/**
+ * Matches test classes and methods against a pattern from a "run" or "skip"
+ * query parameter.
+ *
+ * <p>A pattern is a class name, optionally followed by '#' and a method name
+ * (for example, "com.example.FooTest#testBar"). Either part may contain
+ * wildcards: '*' matches any characters (including dots) and '?' matches one
+ * character. A pattern without a method part matches every method in the
+ * classes it matches. (In a URL, '#' must be written as "%23".)</p>
+ *
+ * <p>Each pattern is parsed once, into a literal string when it has no
+ * wildcards or into the pieces between its '*' characters.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class TestSelector {
+
+  private final Glob classGlob;
+  /** null if the selector matches every method */
+  private final Glob methodGlob;
+
+  private TestSelector(Glob classGlob, Glob methodGlob) {
+    this.classGlob = classGlob;
+    this.methodGlob = methodGlob;
+  }
+
+  static TestSelector parse(String pattern) {
+    int hash = pattern.indexOf('#');
+    if (hash < 0) {
+      return new TestSelector(new Glob(pattern), null);
+    }
+    return new TestSelector(new Glob(pattern.substring(0, hash)),
+        new Glob(pattern.substring(hash + 1)));
+  }
+
+  /**
+   * Returns true if this selector names a class without any wildcards
+   * or a method part, so it can be looked up by name instead.
+   */
+  boolean isWholeClass() {
+    return methodGlob == null && classGlob.isLiteral();
+  }
+
+  /**
+   * Returns the class name, for a selector that {@link #isWholeClass}.
+   */
+  String getClassName() {
+    return classGlob.literal;
+  }
+
+  /**
+   * Returns true if this selector matches all the methods in the given class.
+   */
+  boolean matchesClass(String className) {
+    return methodGlob == null && classGlob.matches(className);
+  }
+
+  /**
+   * Returns true if this selector may match some of the methods in the given class.
+   */
+  boolean mayMatchClass(String className) {
+    return classGlob.matches(className);
+  }
+
+  boolean matches(String className, String methodName) {
+    return classGlob.matches(className)
+        && (methodGlob == null || methodGlob.matches(methodName));
+  }
+
+  /**
+   * A pattern that may contain '*' and '?' wildcards.
+   */
+  private static class Glob {
+    /** The pattern, if it has no wildcards; otherwise null. */
+    private final String literal;
+    /** The text between the '*' characters (which may contain '?'). */
+    private final String[] pieces;
+
+    Glob(String pattern) {
+      if (pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0) {
+        literal = pattern;
+        pieces = null;
+      } else {
+        literal = null;
+        pieces = splitOnStars(pattern);
+      }
+    }
+
+    /**
+     * Splits a pattern on '*', keeping empty pieces (so that "*Test" has
+     * an empty first piece).
+     */
+    private static String[] splitOnStars(String pattern) {
+      List<String> result = Lists.newList();
+      int start = 0;
+      for (int star = pattern.indexOf('*'); star >= 0; star = pattern.indexOf('*', start)) {
+        result.add(pattern.substring(start, star));
+        start = star + 1;
+      }
+      result.add(pattern.substring(start));
+      return result.toArray(new String[result.size()]);
+    }
+
+    boolean isLiteral() {
+      return literal != null;
+    }
+
+    /**
+     * Returns true if the whole text matches. The first and last pieces must
+     * be at the start and end of the text. Each piece in between is matched
+     * at its first possible position, which is enough since a '*' can
+     * absorb anything before the next piece.
+     */
+    boolean matches(String text) {
+      if (literal != null) {
+        return literal.equals(text);
+      }
+
+      String first = pieces[0];
+      String last = pieces[pieces.length - 1];
+      if (pieces.length == 1) {
+        return text.length() == first.length() && regionMatches(text, 0, first);
+      }
+      if (text.length() < first.length() + last.length()
+          || !regionMatches(text, 0, first)
+          || !regionMatches(text, text.length() - last.length(), last)) {
+        return false;
+      }
+
+      int pos = first.length();
+      int end = text.length() - last.length();
+      for (int i = 1; i < pieces.length - 1; i++) {
+        pos = find(text, pieces[i], pos, end);
+        if (pos < 0) {
+          return false;
+        }
+        pos += pieces[i].length();
+      }
+      return true;
+    }
+
+    /**
+     * Returns the first position at or after start where the piece matches
+     * and ends no later than end, or -1 if there isn't one.
+     */
+    private static int find(String text, String piece, int start, int end) {
+      for (int pos = start; pos + piece.length() <= end; pos++) {
+        if (regionMatches(text, pos, piece)) {
+          return pos;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns true if the piece matches the text at the given position,
+     * where '?' in the piece matches any character.
+     */
+    private static boolean regionMatches(String text, int pos, String piece) {
+      for (int i = 0; i < piece.length(); i++) {
+        char c = piece.charAt(i);
+        if (c != '?' && c != text.charAt(pos + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.testgal.api.shared.OutputListener;
 import com.google.gwt.testgal.api.shared.TestLocal;
 import com.google.gwt.testgal.api.shared.TestOutput;
@@ -22,12 +23,15 @@ import com.google.gwt.testgal.client.impl.util.YieldingCommand;
 import com.google.gwt.testgal.client.impl.util.YieldingCommands;
 import com.google.gwt.testgal.client.impl.util.HtmlWriter;
 import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.impl.util.Maps;
 import com.google.gwt.testgal.client.impl.util.PageHistory;
+import com.google.gwt.testgal.results.shared.ResultServiceAsync;
 import com.google.gwt.user.client.ui.HTML;
 import com.google.gwt.user.client.ui.Widget;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * A suite of tests to run and display in a gallery.
@@ -38,20 +42,41 @@ public class TestSuite {
 
   private static final String DEFAULT_TITLE = "Untitled";
   private static final String DEFAULT_DESCRIPTION = "TODO: describe the contents of this gallery";
+  private static final String DEFAULT_EMPTY_MESSAGE = "TODO: add some test classes to this gallery.";
+  private static final String NOTHING_FAILED_MESSAGE =
+      "None of the tests failed the last time they ran.";
+
+  /** How long to expect a test to take when there's no history to go by. */
+  private static final double DEFAULT_EXPECTED_MILLIS = 100;
 
   private final String title;
   private final Widget description;
   private final List<Section> sections;
+  private final String emptyMessage;
   private final ProgressUpdater progressUpdater;
   private final YieldingCommand runAllTests;
+  private final Rerunner rerunner;
+  private final int timeSliceMillis;
+
+  /**
+   * Makes the commands that run some of a section's test methods again.
+   */
+  interface Rerunner {
+    YieldingCommand makeRerunCommand(Section section, List<TestMethod> methods,
+        ProgressUpdater progressUpdater);
+  }
 
   protected TestSuite(String title, Widget description, List<Section> sections,
-      ProgressUpdater progressUpdater, YieldingCommand runAllTests) {
+      String emptyMessage, ProgressUpdater progressUpdater, YieldingCommand runAllTests,
+      Rerunner rerunner, int timeSliceMillis) {
     this.title = title;
     this.description = description;
     this.sections = sections;
+    this.emptyMessage = emptyMessage;
     this.progressUpdater = progressUpdater;
     this.runAllTests = runAllTests;
+    this.rerunner = rerunner;
+    this.timeSliceMillis = timeSliceMillis;
   }
 
   public void setProgressListener(ProgressListener listener) {
@@ -70,6 +95,14 @@ public class TestSuite {
     return sections;
   }
 
+  /**
+   * Returns the message to display instead of the contents when there
+   * are no sections.
+   */
+  public String getEmptyMessage() {
+    return emptyMessage;
+  }
+
   public int getTestMethodCount() {
     return countTestMethods(sections);
   }
@@ -78,6 +111,48 @@ public class TestSuite {
     return runAllTests;
   }
 
+  /**
+   * Returns true if some tests have started and haven't all finished.
+   */
+  public boolean isRunning() {
+    return progressUpdater.isRunning();
+  }
+
+  /**
+   * Runs some of a section's test methods again, without reloading the page.
+   * Their statuses and result pages are cleared, and the progress bar counts
+   * only these tests. The tests run on a new scheduler with the same time
+   * slice as the rest of the gallery, starting after the current event
+   * handler returns.
+   * @return false (and does nothing) if tests are already running
+   */
+  public boolean rerun(Section section, List<TestMethod> methods) {
+    if (isRunning()) {
+      return false;
+    }
+    YieldingCommand rerun = makeRerunCommand(section, methods);
+    progressUpdater.markRunning();
+    YieldingCommands.start(rerun, timeSliceMillis);
+    return true;
+  }
+
+  /**
+   * Returns a command that runs some of a section's test methods again.
+   * (The caller is responsible for making sure no other tests are running.)
+   */
+  YieldingCommand makeRerunCommand(Section section, List<TestMethod> methods) {
+    if (!sections.contains(section)) {
+      throw new IllegalArgumentException("section isn't in this suite: " + section.getName());
+    }
+    for (TestMethod method : methods) {
+      if (section.getStatusCell(method) == null) {
+        throw new IllegalArgumentException("method isn't in section " + section.getName()
+            + ": " + method.getName());
+      }
+    }
+    return rerunner.makeRerunCommand(section, methods, progressUpdater);
+  }
+
   public static Builder builder(PageMap pages, PageHistory history) {
     return new Builder(pages, history);
   }
@@ -100,6 +175,21 @@ public class TestSuite {
     private final List<String> descriptionParagraphs = Lists.newList();
     private final List<Section> sections = Lists.newList();
     private TestLocal<OutputListener> outputListeners = TestOutput.OUTPUT_LISTENERS;
+    private int concurrency = 1;
+    private final List<TimingListener> timingListeners = Lists.newList();
+    private ResultUploader uploader;
+    private TestHistory testHistory;
+    private RunOrder runOrder = RunOrder.DECLARED;
+    private int shard = 1;
+    private int shardCount = 1;
+    private TestHistory shardHistory;
+    private boolean failedOnly = false;
+    private int timeSliceMillis = 0;
+
+    /** The recorder for each test method's results, by page id. */
+    private final Map<String, MethodResultRecorder> recorders = Maps.newStringMap();
+    /** The suite, once it's built. */
+    private TestSuite suite;
 
     protected Builder(PageMap pages, PageHistory history) {
       if (pages == null) {
@@ -137,26 +227,158 @@ public class TestSuite {
       return this;
     }
 
+    /**
+     * Sets the maximum number of test methods that may run at the same time
+     * within each section, unless a section sets its own limit. Running tests
+     * concurrently saves time when asynchronous tests spend most of their time
+     * waiting, but the tests have to be independent of each other. The default
+     * is one, which runs tests one at a time.
+     */
+    public Builder setConcurrency(int newConcurrency) {
+      if (newConcurrency < 1) {
+        throw new IllegalArgumentException("concurrency must be at least 1");
+      }
+      this.concurrency = newConcurrency;
+      return this;
+    }
+
+    /**
+     * Adds a listener that will be told how long each test method spent
+     * in each phase, after it finishes.
+     */
+    Builder addTimingListener(TimingListener newListener) {
+      timingListeners.add(newListener);
+      return this;
+    }
+
+    /**
+     * Uploads the result of each test method to a result service, which saves
+     * them for later comparison. Results are sent in batches, when there are
+     * enough of them or the oldest has waited long enough, and when all
+     * tests have finished.
+     * @param batchSize the most results to send at once
+     * @param maxDelayMillis the longest to wait before sending a result
+     */
+    public Builder uploadResults(ResultServiceAsync service, int batchSize,
+        int maxDelayMillis) {
+      this.uploader = new ResultUploader(service, ResultUploader.makeRunId(), batchSize,
+          maxDelayMillis);
+      return this;
+    }
+
+    /**
+     * Sets the history of previous runs, which is used to estimate how long
+     * the tests will take and is updated as they finish. (By default, there's
+     * no history and each test counts the same toward progress.)
+     */
+    Builder setTestHistory(TestHistory newHistory) {
+      this.testHistory = newHistory;
+      return this;
+    }
+
+    /**
+     * Sets the order in which sections and test methods are run. (By default,
+     * they run in the order they were added.)
+     */
+    public Builder setRunOrder(RunOrder newRunOrder) {
+      if (newRunOrder == null) {
+        throw new NullPointerException("run order shouldn't be null");
+      }
+      this.runOrder = newRunOrder;
+      return this;
+    }
+
+    /**
+     * Runs only one shard of the tests, so that the shards can run at the same time
+     * in different browser windows. Each test's shard is picked using a hash of
+     * its name, unless {@link #setShardHistory} was called. (The history in
+     * local storage isn't used, since each shard may see a different one.)
+     * @param newShard which shard to run, counting from 1
+     * @param newShardCount how many shards the tests are split into
+     */
+    public Builder setShard(int newShard, int newShardCount) {
+      Sharder.checkShard(newShard, newShardCount);
+      this.shard = newShard;
+      this.shardCount = newShardCount;
+      return this;
+    }
+
+    /**
+     * Balances the shards using the test times in a saved history, instead of
+     * hashing test names. Every shard must be given exactly the same history
+     * (for example, one saved on a server and downloaded by each shard);
+     * otherwise some tests may be skipped or run twice.
+     * @param savedHistory a history in the format that TestHistory saves
+     */
+    public Builder setShardHistory(String savedHistory) {
+      if (savedHistory == null) {
+        throw new NullPointerException("history shouldn't be null");
+      }
+      this.shardHistory = new TestHistory();
+      shardHistory.parse(savedHistory);
+      return this;
+    }
+
+    /**
+     * Sets how long a rerun started from the page may run tests before yielding
+     * to the browser. This should match the time slice that the whole gallery
+     * is run with. (By default, it yields before every test.)
+     */
+    public Builder setTimeSliceMillis(int newTimeSliceMillis) {
+      if (newTimeSliceMillis < 0) {
+        throw new IllegalArgumentException("time slice must be non-negative");
+      }
+      this.timeSliceMillis = newTimeSliceMillis;
+      return this;
+    }
+
+    /**
+     * Runs only the test methods that failed the last time they ran, according
+     * to the test history. (If there's no history, all the tests run.)
+     */
+    public Builder setFailedOnly(boolean newFailedOnly) {
+      this.failedOnly = newFailedOnly;
+      return this;
+    }
+
     public Builder addSection(Section section) {
       sections.add(section);
-      pages.put(section, new SectionResultPage(section, history));
+      addSectionPage(section);
       return this;
     }
 
     public TestSuite build() {
 
+      String emptyMessage = DEFAULT_EMPTY_MESSAGE;
+      if (failedOnly && testHistory != null) {
+        selectFailed();
+        emptyMessage = NOTHING_FAILED_MESSAGE;
+      }
+      if (shardCount > 1) {
+        selectShard();
+      }
+
       final ProgressUpdater progressUpdater = new ProgressUpdater();
 
+      double totalExpected = 0;
+      for (Section section : sections) {
+        for (TestMethod method : section.getMethods()) {
+          totalExpected += getExpectedMillis(section, method);
+        }
+      }
+      final double totalExpectedMillis = totalExpected;
+
       YieldingCommand resetProgress = new YieldingCommand() {
         public void run(YieldingCommand.Schedule schedule) {
-          progressUpdater.reset(countTestMethods(sections));
+          progressUpdater.reset(countTestMethods(sections), totalExpectedMillis);
           schedule.sleepAfterThisStep(10, "for progress bar update");
         }
       };
 
       List<YieldingCommand> commands = new ArrayList<YieldingCommand>();
       commands.add(resetProgress);
-      addRunSectionCommands(sections, outputListeners, progressUpdater, pages, commands);
+      addRunSectionCommands(progressUpdater, commands);
+      addFinishCommands(progressUpdater, commands);
       YieldingCommand runAllTests = YieldingCommands.concat(commands);
 
       if (descriptionParagraphs.isEmpty()) {
@@ -170,37 +392,273 @@ public class TestSuite {
         writer.textP(paragraph);
       }
 
-      return new TestSuite(title, description, sections, progressUpdater, runAllTests);
+      suite = new TestSuite(title, description, sections, emptyMessage, progressUpdater,
+          runAllTests, new Rerunner() {
+            public YieldingCommand makeRerunCommand(Section section, List<TestMethod> methods,
+                ProgressUpdater updater) {
+              return Builder.this.makeRerunCommand(section, methods, updater);
+            }
+          }, timeSliceMillis);
+      return suite;
+    }
+
+    private void addSectionPage(final Section section) {
+      pages.put(section, new PageMap.Factory() {
+        public Widget makePage() {
+          return new SectionResultPage(section, history, suite);
+        }
+      });
+    }
+
+    /**
+     * Removes the sections and test methods that aren't in this builder's shard.
+     */
+    private void selectShard() {
+      replaceSections(new Sharder(shardHistory, DEFAULT_EXPECTED_MILLIS)
+          .selectShard(sections, shard, shardCount));
+      title = title + " (shard " + shard + " of " + shardCount + ")";
+    }
+
+    /**
+     * Removes the test methods that didn't fail the last time they ran,
+     * and the sections that have none left.
+     */
+    private void selectFailed() {
+      List<Section> selected = Lists.newList();
+      for (Section section : sections) {
+        List<TestMethod> failed = Lists.newList();
+        for (TestMethod method : section.getMethods()) {
+          if (failedLastTime(section, method)) {
+            failed.add(method);
+          }
+        }
+        if (failed.size() == section.getMethods().size()) {
+          selected.add(section);
+        } else if (!failed.isEmpty()) {
+          selected.add(section.withMethods(failed));
+        }
+      }
+      replaceSections(selected);
+      title = title + " (failed tests only)";
+    }
+
+    /**
+     * Replaces the sections with some of them, or with new sections
+     * that run some of their methods.
+     */
+    private void replaceSections(List<Section> selected) {
+      for (Section section : selected) {
+        if (!sections.contains(section)) {
+          addSectionPage(section); // replaces the page for the whole section
+        }
+      }
+      sections.clear();
+      sections.addAll(selected);
     }
 
-    private static void addRunSectionCommands(List<Section> sections,
-        TestLocal<OutputListener> outputListeners, ProgressUpdater updater,
-        PageMap pages, List<YieldingCommand> out) {
+    private void addRunSectionCommands(ProgressUpdater updater, List<YieldingCommand> out) {
+      RunOrder.History<Section> sectionHistory = new RunOrder.History<Section>() {
+        public double getExpectedMillis(Section section) {
+          double total = 0;
+          for (TestMethod method : section.getMethods()) {
+            total += Builder.this.getExpectedMillis(section, method);
+          }
+          return total;
+        }
 
-      for (Section section: sections) {
-        List<MethodRunner> methodRunners =
-            makeMethodRunners(section, outputListeners, updater, pages);
-        out.add(new RunSectionCommand(methodRunners, section.getStatusView()));
+        public boolean failedLastTime(Section section) {
+          for (TestMethod method : section.getMethods()) {
+            if (Builder.this.failedLastTime(section, method)) {
+              return true;
+            }
+          }
+          return false;
+        }
+      };
+
+      for (Section section: runOrder.order(sections, sectionHistory)) {
+        addRunSectionCommands(section, orderMethods(section), section.getStatusCell(),
+            updater, out);
       }
     }
 
-    private static List<MethodRunner> makeMethodRunners(Section section,
-        TestLocal<OutputListener> outputListeners, ProgressUpdater updater,
-        PageMap pages) {
+    /**
+     * Adds the commands that run some of a section's test methods.
+     * @param sectionStatus receives the status of the section as a whole
+     */
+    private void addRunSectionCommands(Section section, List<TestMethod> methods,
+        StatusChangeListener sectionStatus, ProgressUpdater updater, List<YieldingCommand> out) {
+      List<MethodRunner> methodRunners = Lists.newList();
+      for (TestMethod method : methods) {
+        methodRunners.add(makeMethodRunner(section, method, updater));
+      }
+      int sectionConcurrency = section.getConcurrency() > 0 ?
+          section.getConcurrency() : concurrency;
+      out.add(new LoadSectionCommand(section));
+      out.add(new RunSectionCommand(methodRunners, sectionStatus, sectionConcurrency));
+      if (testHistory != null) {
+        // save now and then, so that a rerun of the failed tests
+        // doesn't have to wait for the whole gallery to finish
+        out.add(new YieldingCommand() {
+          public void run(YieldingCommand.Schedule schedule) {
+            testHistory.saveIfDue(Duration.currentTimeMillis());
+          }
+        });
+      }
+    }
 
-      List<MethodRunner> runners = Lists.newList();
+    /**
+     * Adds the commands that run after all the tests have finished.
+     * The last one marks the end of the run.
+     */
+    private void addFinishCommands(final ProgressUpdater updater, List<YieldingCommand> out) {
+      if (testHistory != null) {
+        out.add(new YieldingCommand() {
+          public void run(YieldingCommand.Schedule schedule) {
+            testHistory.save();
+          }
+        });
+      }
+      if (uploader != null) {
+        out.add(new YieldingCommand() {
+          public void run(YieldingCommand.Schedule schedule) {
+            uploader.flush();
+          }
+        });
+      }
+      out.add(new YieldingCommand() {
+        public void run(YieldingCommand.Schedule schedule) {
+          updater.finish();
+        }
+      });
+    }
 
-      for (TestMethod method : section.getMethods()) {
-        MethodResultPage resultPage = new MethodResultPage();
-        pages.put(section, method, resultPage);
-        MethodRunner runner = new MethodRunner(method, outputListeners, resultPage);
-        runner.addStatusListener(section.getStatusView(method));
-        runner.addStatusListener(updater);
+    /**
+     * Makes the command for {@link TestSuite#rerun}. It resets the statuses
+     * of the methods and the progress bar, then runs the methods with new
+     * runners. (Their result pages are cleared when they start.)
+     */
+    private YieldingCommand makeRerunCommand(final Section section,
+        final List<TestMethod> methods, final ProgressUpdater updater) {
+      double totalExpected = 0;
+      for (TestMethod method : methods) {
+        totalExpected += getExpectedMillis(section, method);
+      }
+      final double totalExpectedMillis = totalExpected;
+
+      List<YieldingCommand> commands = Lists.newList();
+      commands.add(new YieldingCommand() {
+        public void run(YieldingCommand.Schedule schedule) {
+          for (TestMethod method : methods) {
+            section.getStatusCell(method).statusChanged(TestStatus.NOT_STARTED);
+          }
+          updater.reset(methods.size(), totalExpectedMillis);
+          schedule.sleepAfterThisStep(10, "for progress bar update");
+        }
+      });
+      addRunSectionCommands(section, methods, new RerunSectionStatus(section), updater,
+          commands);
+      addFinishCommands(updater, commands);
+      return YieldingCommands.concat(commands);
+    }
+
+    private List<TestMethod> orderMethods(final Section section) {
+
+      RunOrder.History<TestMethod> methodHistory = new RunOrder.History<TestMethod>() {
+        public double getExpectedMillis(TestMethod method) {
+          return Builder.this.getExpectedMillis(section, method);
+        }
 
-        runners.add(runner);
+        public boolean failedLastTime(TestMethod method) {
+          return Builder.this.failedLastTime(section, method);
+        }
+      };
+
+      return runOrder.order(section.getMethods(), methodHistory);
+    }
+
+    private MethodRunner makeMethodRunner(Section section, TestMethod method,
+        ProgressUpdater updater) {
+      MethodResultRecorder recorder = getRecorder(section, method);
+      MethodRunner runner;
+      if (uploader == null) {
+        runner = new MethodRunner(method, outputListeners, recorder);
+      } else {
+        ResultCollector collector = new ResultCollector(section.getName(), uploader);
+        runner = new MethodRunner(method, outputListeners,
+            new TeeResultListener(recorder, collector));
+        runner.addStatusListener(collector);
       }
+      runner.addStatusListener(section.getStatusCell(method));
+      runner.addStatusListener(updater.forTest(getExpectedMillis(section, method)));
+      for (TimingListener listener : timingListeners) {
+        runner.addTimingListener(listener);
+      }
+      if (testHistory != null) {
+        TestHistory.Recorder historyRecorder =
+            testHistory.newRecorder(TestHistory.makeKey(section, method));
+        runner.addStatusListener(historyRecorder);
+        runner.addTimingListener(historyRecorder);
+      }
+      return runner;
+    }
 
-      return runners;
+    /**
+     * Returns the recorder for a method's results, creating it the first time.
+     * (When a test is rerun, its results go to the same page.)
+     */
+    private MethodResultRecorder getRecorder(Section section, TestMethod method) {
+      String pageId = Pages.makeResultPageId(section, method);
+      MethodResultRecorder recorder = recorders.get(pageId);
+      if (recorder == null) {
+        recorder = new MethodResultRecorder();
+        recorders.put(pageId, recorder);
+        pages.put(section, method, recorder);
+      }
+      return recorder;
+    }
+
+    /**
+     * Returns how long a test is expected to take, according to the history.
+     * (Without a history, each test counts the same. Tests that haven't run
+     * before are expected to take the average time, which the history caches.)
+     */
+    private double getExpectedMillis(Section section, TestMethod method) {
+      if (testHistory == null) {
+        return 1;
+      }
+      double defaultMillis = testHistory.getAverageMillis(DEFAULT_EXPECTED_MILLIS);
+      return testHistory.getExpectedMillis(TestHistory.makeKey(section, method), defaultMillis);
+    }
+
+    private boolean failedLastTime(Section section, TestMethod method) {
+      return testHistory != null && testHistory.getLastStatus(
+          TestHistory.makeKey(section, method)) == TestStatus.FAILED;
+    }
+  }
+
+  /**
+   * Sets a section's status while some of its methods are rerun. When they
+   * finish, the section's status depends on all its methods, not just the
+   * ones that were rerun.
+   */
+  private static class RerunSectionStatus implements StatusChangeListener {
+    private final Section section;
+
+    RerunSectionStatus(Section section) {
+      this.section = section;
+    }
+
+    public void statusChanged(TestStatus newStatus) {
+      if (newStatus == TestStatus.PASSED || newStatus == TestStatus.FAILED) {
+        newStatus = TestStatus.PASSED;
+        for (TestMethod method : section.getMethods()) {
+          if (section.getStatus(method) == TestStatus.FAILED) {
+            newStatus = TestStatus.FAILED;
+          }
+        }
+      }
+      section.getStatusCell().statusChanged(newStatus);
     }
   }
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.FrameThrottle;
+import com.google.gwt.user.client.Command;
+
+/**
+ * Passes progress on to another listener, such as the {@link ProgressBar},
+ * at most once per animation frame. Only the latest progress is sent.
+ *
+ * @author Brian Slesinsky
+ */
+class ThrottledProgressListener implements ProgressListener {
+
+  private final ProgressListener delegate;
+  private final FrameThrottle throttle;
+
+  private int finishedCount;
+  private int totalCount;
+  private double fractionDone;
+  private double remainingMillis;
+  private boolean looksGoodSoFar;
+
+  ThrottledProgressListener(ProgressListener delegate) {
+    this.delegate = delegate;
+    this.throttle = new FrameThrottle(new Command() {
+      public void execute() {
+        flush();
+      }
+    });
+  }
+
+  public void progressChanged(int finishedCount, int totalCount, double fractionDone,
+      double remainingMillis, boolean looksGoodSoFar) {
+    this.finishedCount = finishedCount;
+    this.totalCount = totalCount;
+    this.fractionDone = fractionDone;
+    this.remainingMillis = remainingMillis;
+    this.looksGoodSoFar = looksGoodSoFar;
+    throttle.schedule();
+  }
+
+  private void flush() {
+    delegate.progressChanged(finishedCount, totalCount, fractionDone, remainingMillis,
+        looksGoodSoFar);
+  }
+}
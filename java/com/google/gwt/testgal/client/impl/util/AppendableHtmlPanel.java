@@ -29,7 +29,16 @@ public class AppendableHtmlPanel extends ComplexPanel {
   private HtmlWriter out;
 
   public AppendableHtmlPanel() {
-    out = new HtmlWriter();
+    this(new HtmlWriter());
+  }
+
+  /**
+   * Creates a panel that appends HTML using the specified writer,
+   * which may be buffered. A buffered writer's output is flushed before
+   * a widget is added.
+   */
+  public AppendableHtmlPanel(HtmlWriter out) {
+    this.out = out;
     setElement(out.getTopElement());
   }
 
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl.util;
+
+import java.util.List;
+
+/**
+ * Finds the differences between two sequences (such as the lines or characters
+ * in two strings) using Myers' O(ND) algorithm.
+ *
+ * <p>The result is a list of {@link Edit}s that turns the first sequence into
+ * the second. Each edit covers a run of elements, so the list's length depends
+ * on the number of differences rather than the size of the input.</p>
+ *
+ * <p>Finding a minimal diff can be expensive when the sequences are large and
+ * very different, so each diff has a budget. Any common prefix and suffix are
+ * always found, but if the middle part would cost more than the budget,
+ * it's reported as a single replacement.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class Diff {
+
+  /** The default amount of work to do before giving up on a minimal diff. */
+  public static final int DEFAULT_BUDGET = 1000000;
+
+  /**
+   * The maximum number of edit steps to search. This also bounds the memory
+   * used, which grows with the square of the number of steps.
+   */
+  private static final int MAX_STEPS = 1000;
+
+  public enum Op { EQUAL, DELETE, INSERT }
+
+  /**
+   * A run of elements that are the same in both sequences, deleted from
+   * the first sequence, or inserted into the second.
+   */
+  public static class Edit {
+    private final Op op;
+    private final int oldStart;
+    private final int oldEnd;
+    private final int newStart;
+    private final int newEnd;
+
+    Edit(Op op, int oldStart, int oldEnd, int newStart, int newEnd) {
+      this.op = op;
+      this.oldStart = oldStart;
+      this.oldEnd = oldEnd;
+      this.newStart = newStart;
+      this.newEnd = newEnd;
+    }
+
+    public Op getOp() {
+      return op;
+    }
+
+    /** The first index of this run in the old sequence. */
+    public int getOldStart() {
+      return oldStart;
+    }
+
+    /** The index after this run in the old sequence. (Same as the start for an insert.) */
+    public int getOldEnd() {
+      return oldEnd;
+    }
+
+    /** The first index of this run in the new sequence. */
+    public int getNewStart() {
+      return newStart;
+    }
+
+    /** The index after this run in the new sequence. (Same as the start for a delete.) */
+    public int getNewEnd() {
+      return newEnd;
+    }
+
+    /** The number of elements in this run. */
+    public int getLength() {
+      return op == Op.INSERT ? newEnd - newStart : oldEnd - oldStart;
+    }
+
+    @Override
+    public String toString() {
+      return op + " " + oldStart + "-" + oldEnd + " " + newStart + "-" + newEnd;
+    }
+  }
+
+  /**
+   * The two sequences to compare, accessed by index.
+   */
+  public interface Sequences {
+    int getOldSize();
+    int getNewSize();
+    boolean same(int oldIndex, int newIndex);
+  }
+
+  private Diff() {}
+
+  /**
+   * Compares two strings a character at a time.
+   */
+  public static List<Edit> chars(final String oldText, final String newText, int budget) {
+    return diff(new Sequences() {
+      public int getOldSize() {
+        return oldText.length();
+      }
+      public int getNewSize() {
+        return newText.length();
+      }
+      public boolean same(int oldIndex, int newIndex) {
+        return oldText.charAt(oldIndex) == newText.charAt(newIndex);
+      }
+    }, budget);
+  }
+
+  /**
+   * Compares two arrays of lines.
+   */
+  public static List<Edit> lines(final String[] oldLines, final String[] newLines, int budget) {
+    return diff(new Sequences() {
+      public int getOldSize() {
+        return oldLines.length;
+      }
+      public int getNewSize() {
+        return newLines.length;
+      }
+      public boolean same(int oldIndex, int newIndex) {
+        return oldLines[oldIndex].equals(newLines[newIndex]);
+      }
+    }, budget);
+  }
+
+  /**
+   * Splits a string into lines. The newline characters aren't included.
+   * A string that ends with a newline has an empty last line.
+   */
+  public static String[] splitLines(String text) {
+    List<String> lines = Lists.newList();
+    int start = 0;
+    while (true) {
+      int newline = text.indexOf('\n', start);
+      if (newline < 0) {
+        lines.add(text.substring(start));
+        return lines.toArray(new String[lines.size()]);
+      }
+      lines.add(text.substring(start, newline));
+      start = newline + 1;
+    }
+  }
+
+  /**
+   * Compares two sequences.
+   * @param budget roughly how many comparisons to make before giving up
+   * and treating the differing part as a single replacement.
+   */
+  public static List<Edit> diff(Sequences seqs, int budget) {
+    int oldSize = seqs.getOldSize();
+    int newSize = seqs.getNewSize();
+
+    int prefix = 0;
+    while (prefix < oldSize && prefix < newSize && seqs.same(prefix, prefix)) {
+      prefix++;
+    }
+
+    int suffix = 0;
+    while (suffix < oldSize - prefix && suffix < newSize - prefix
+        && seqs.same(oldSize - suffix - 1, newSize - suffix - 1)) {
+      suffix++;
+    }
+
+    EditList out = new EditList();
+    out.add(Op.EQUAL, 0, prefix, 0, prefix);
+
+    int oldEnd = oldSize - suffix;
+    int newEnd = newSize - suffix;
+    if (!myers(seqs, prefix, oldEnd, prefix, newEnd, budget, out)) {
+      out.add(Op.DELETE, prefix, oldEnd, prefix, prefix);
+      out.add(Op.INSERT, oldEnd, oldEnd, prefix, newEnd);
+    }
+
+    out.add(Op.EQUAL, oldEnd, oldSize, newEnd, newSize);
+    return out.edits;
+  }
+
+  // ======== end of public methods ========
+
+  /**
+   * Finds a minimal diff between the given ranges and appends it.
+   * @return false (without appending anything) if it would cost too much.
+   */
+  private static boolean myers(Sequences seqs, int oldStart, int oldEnd,
+      int newStart, int newEnd, int budget, EditList out) {
+    int n = oldEnd - oldStart;
+    int m = newEnd - newStart;
+    if (n == 0 || m == 0) {
+      out.add(Op.DELETE, oldStart, oldEnd, newStart, newStart);
+      out.add(Op.INSERT, oldEnd, oldEnd, newStart, newEnd);
+      return true;
+    }
+
+    int maxSteps = Math.min(Math.min(n + m, MAX_STEPS), budget / (n + m));
+
+    // v[offset + k] is the furthest x reached on diagonal k (where k = x - y).
+    int offset = maxSteps + 1;
+    int[] v = new int[2 * offset + 1];
+    List<int[]> trace = Lists.newList();
+
+    for (int d = 0; d <= maxSteps; d++) {
+      trace.add(copyWindow(v, offset, d));
+      for (int k = -d; k <= d; k += 2) {
+        int x;
+        if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+          x = v[offset + k + 1]; // move down (insert)
+        } else {
+          x = v[offset + k - 1] + 1; // move right (delete)
+        }
+        int y = x - k;
+        while (x < n && y < m && seqs.same(oldStart + x, newStart + y)) {
+          x++;
+          y++;
+        }
+        v[offset + k] = x;
+        if (x >= n && y >= m) {
+          backtrack(trace, n, m, oldStart, newStart, out);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Copies the part of v that round d can read: diagonals -(d+1) to d+1.
+   */
+  private static int[] copyWindow(int[] v, int offset, int d) {
+    int[] window = new int[2 * d + 3];
+    System.arraycopy(v, offset - d - 1, window, 0, window.length);
+    return window;
+  }
+
+  /**
+   * Walks backwards through the saved rounds to find the path that reached
+   * the end, and appends its edits in forward order.
+   */
+  private static void backtrack(List<int[]> trace, int n, int m, int oldStart, int newStart,
+      EditList out) {
+
+    // Collect single-element steps from the end to the start.
+    // Each step is stored as three ints: op, x, y (the position before the step).
+    int[] steps = new int[3 * (n + m)];
+    int stepCount = 0;
+
+    int x = n;
+    int y = m;
+    for (int d = trace.size() - 1; d >= 0; d--) {
+      int[] v = trace.get(d);
+      int windowOffset = d + 1;
+      int k = x - y;
+      int prevK;
+      if (k == -d || (k != d && v[windowOffset + k - 1] < v[windowOffset + k + 1])) {
+        prevK = k + 1;
+      } else {
+        prevK = k - 1;
+      }
+      int prevX = v[windowOffset + prevK];
+      int prevY = prevX - prevK;
+
+      while (x > prevX && y > prevY) {
+        x--;
+        y--;
+        stepCount = addStep(steps, stepCount, Op.EQUAL, x, y);
+      }
+      if (d > 0) {
+        if (x == prevX) {
+          stepCount = addStep(steps, stepCount, Op.INSERT, prevX, prevY);
+        } else {
+          stepCount = addStep(steps, stepCount, Op.DELETE, prevX, prevY);
+        }
+      }
+      x = prevX;
+      y = prevY;
+    }
+
+    Op[] ops = Op.values();
+    for (int i = stepCount - 1; i >= 0; i--) {
+      Op op = ops[steps[3 * i]];
+      int stepX = oldStart + steps[3 * i + 1];
+      int stepY = newStart + steps[3 * i + 2];
+      switch (op) {
+        case EQUAL:
+          out.add(op, stepX, stepX + 1, stepY, stepY + 1);
+          break;
+        case DELETE:
+          out.add(op, stepX, stepX + 1, stepY, stepY);
+          break;
+        case INSERT:
+          out.add(op, stepX, stepX, stepY, stepY + 1);
+          break;
+      }
+    }
+  }
+
+  private static int addStep(int[] steps, int stepCount, Op op, int x, int y) {
+    steps[3 * stepCount] = op.ordinal();
+    steps[3 * stepCount + 1] = x;
+    steps[3 * stepCount + 2] = y;
+    return stepCount + 1;
+  }
+
+  /**
+   * Accumulates edits, merging adjacent edits of the same kind and
+   * dropping empty ones.
+   */
+  private static class EditList {
+    final List<Edit> edits = Lists.newList();
+
+    void add(Op op, int oldStart, int oldEnd, int newStart, int newEnd) {
+      if (oldStart == oldEnd && newStart == newEnd) {
+        return;
+      }
+      if (!edits.isEmpty()) {
+        Edit last = edits.get(edits.size() - 1);
+        if (last.op == op && last.oldEnd == oldStart && last.newEnd == newStart) {
+          edits.set(edits.size() - 1,
+              new Edit(op, last.oldStart, oldEnd, last.newStart, newEnd));
+          return;
+        }
+      }
+      edits.add(new Edit(op, oldStart, oldEnd, newStart, newEnd));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl.util;
+
+import com.google.gwt.user.client.Command;
+
+/**
+ * Runs a command at most once per animation frame, no matter how many
+ * times it's scheduled. This is useful for updating the DOM after a batch
+ * of changes, rather than once per change.
+ *
+ * <p>Uses the browser's requestAnimationFrame() if it has one, and otherwise
+ * a timer with about the same delay.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class FrameThrottle {
+
+  /** The delay to use when the browser doesn't support requestAnimationFrame(). */
+  private static final int FRAME_MILLIS = 16;
+
+  private final Command command;
+  private boolean scheduled = false;
+
+  public FrameThrottle(Command command) {
+    this.command = command;
+  }
+
+  /**
+   * Arranges for the command to run before the next frame is drawn,
+   * unless it's already scheduled.
+   */
+  public void schedule() {
+    if (!scheduled) {
+      scheduled = true;
+      requestFrame(this, FRAME_MILLIS);
+    }
+  }
+
+  /**
+   * Returns true if the command is waiting to run.
+   */
+  public boolean isScheduled() {
+    return scheduled;
+  }
+
+  // ======== end of public methods ========
+
+  private void onFrame() {
+    scheduled = false;
+    command.execute();
+  }
+
+  private static native void requestFrame(FrameThrottle throttle, int fallbackMillis) /*-{
+    var callback = $entry(function() {
+      throttle.@com.google.gwt.testgal.client.impl.util.FrameThrottle::onFrame()();
+    });
+    var request = $wnd.requestAnimationFrame || $wnd.mozRequestAnimationFrame ||
+        $wnd.webkitRequestAnimationFrame || $wnd.msRequestAnimationFrame;
+    if (request) {
+      request.call($wnd, callback);
+    } else {
+      $wnd.setTimeout(callback, fallbackMillis);
+    }
+  }-*/;
+}
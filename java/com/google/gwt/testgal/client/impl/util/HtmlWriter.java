@@ -20,6 +20,8 @@ import com.google.gwt.dom.client.SpanElement;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Element;
 
+import java.util.List;
+
 /**
  * Appends HTML to a subtree of an HTML page.
  *
@@ -27,6 +29,17 @@ import com.google.gwt.user.client.Element;
  * it's attached and made visible, the HTML will be visible to the
  * user immediately after it's appended. </p>
  *
+ * <p> A buffered HtmlWriter (see {@link #buffered}) instead accumulates
+ * escaped markup in a string and creates the DOM nodes all at once, with a
+ * single innerHTML assignment, when {@link #flush} is called or when the
+ * caller needs an element. This is much faster for large amounts of output.
+ * Buffered output isn't visible until it's flushed. </p>
+ *
+ * <p> The buffered markup is parsed inside a &lt;div&gt;, where the browser
+ * drops or moves tags that only belong inside a table or a select (such as
+ * &lt;tr&gt;, &lt;td&gt; and &lt;option&gt;), so a buffered writer refuses to
+ * start them. Use an unbuffered writer for tables and selects. </p>
+ *
  * @author Brian Slesinsky
  */
 public class HtmlWriter {
@@ -47,6 +60,18 @@ public class HtmlWriter {
    */
   private Element appendElement;
 
+  /**
+   * Markup that hasn't been added to the DOM yet, or null if this
+   * writer isn't buffered.
+   */
+  private final StringBuilder buffer;
+
+  /**
+   * The names of the tags in the buffer that haven't been closed yet,
+   * innermost last.
+   */
+  private final List<String> openTagsInBuffer;
+
   /**
    * Creates an HtmlWriter that writes to a new &lt;div&gt; element,
    * which can be retrieved with {@link #getTopElement}.
@@ -59,28 +84,106 @@ public class HtmlWriter {
    * Creates an HtmlWriter that writes to an existing element.
    */
   public HtmlWriter(com.google.gwt.dom.client.Element top) {
+    this(top, false);
+  }
+
+  private HtmlWriter(com.google.gwt.dom.client.Element top, boolean buffered) {
     this.doc = top.getOwnerDocument();
     this.top = (Element) top.cast();
     this.appendElement = this.top;
+    this.buffer = buffered ? new StringBuilder() : null;
+    this.openTagsInBuffer = buffered ? Lists.<String>newList() : null;
+  }
+
+  /**
+   * Creates a buffered HtmlWriter that writes to a new &lt;div&gt; element.
+   */
+  public static HtmlWriter buffered() {
+    return buffered(Document.get().createDivElement());
+  }
+
+  /**
+   * Creates a buffered HtmlWriter that writes to an existing element.
+   */
+  public static HtmlWriter buffered(com.google.gwt.dom.client.Element top) {
+    return new HtmlWriter(top, true);
   }
 
   public void clear() {
+    if (buffer != null) {
+      buffer.setLength(0);
+      openTagsInBuffer.clear();
+    }
     top.setInnerHTML("");
     appendElement = top;
   }
 
   /**
-   * Returns the element where this HtmlWriter appends its output.
+   * Returns the element where this HtmlWriter appends its output,
+   * after flushing any buffered output.
    */
   public Element getTopElement() {
+    flush();
     return top;
   }
 
+  /**
+   * Adds any buffered output to the DOM. Tags that are still open remain
+   * open, so more output can be appended to them afterwards.
+   * (Has no effect if this writer isn't buffered.)
+   */
+  public void flush() {
+    if (buffer == null || buffer.length() == 0) {
+      return;
+    }
+
+    for (int i = openTagsInBuffer.size() - 1; i >= 0; i--) {
+      appendEndTag(openTagsInBuffer.get(i));
+    }
+
+    Element container = (Element) doc.createDivElement().cast();
+    container.setInnerHTML(buffer.toString());
+    buffer.setLength(0);
+
+    while (container.getFirstChild() != null) {
+      appendElement.appendChild(container.getFirstChild());
+    }
+
+    // Move the append location into the tags that are still open.
+    for (String tagName : openTagsInBuffer) {
+      appendElement = (Element) appendElement.getLastChild().cast();
+      if (tagName.equalsIgnoreCase("fieldset")) {
+        appendElement.getStyle().setProperty("display", "none");
+      }
+    }
+    openTagsInBuffer.clear();
+  }
+
   /**
    * Appends an element with the specified tag and makes it the new
    * append location.
    */
   public void startTag(String tagName) {
+    startTag(tagName, null, null);
+  }
+
+  public void startTag(String tagName, String attName, String value) {
+    if (buffer != null) {
+      if (isContextSensitiveTag(tagName)) {
+        throw new IllegalArgumentException("a buffered HtmlWriter can't write <" + tagName
+            + "> tags; use an unbuffered one");
+      }
+      buffer.append('<').append(tagName);
+      if (value != null) {
+        buffer.append(' ').append(attName).append("=\"");
+        appendEscaped(value);
+        buffer.append('"');
+      }
+      buffer.append('>');
+      openTagsInBuffer.add(tagName);
+      return;
+    }
+
     Element newElement = (Element) doc.createElement(tagName).cast();
     appendElement.appendChild(newElement);
     appendElement = newElement;
@@ -90,10 +193,7 @@ public class HtmlWriter {
     if (tagName.equalsIgnoreCase("fieldset")) {
       appendElement.getStyle().setProperty("display", "none");
     }
-  }
 
-  public void startTag(String tagName, String attName, String value) {
-    startTag(tagName);
     if (value != null) {
       appendElement.setAttribute(attName, value);
     }
@@ -104,6 +204,14 @@ public class HtmlWriter {
    * @param tagName the name of the current tag; used for a sanity check
    */
   public void endTag(String tagName) {
+    if (buffer != null && !openTagsInBuffer.isEmpty()) {
+      String openTag = openTagsInBuffer.remove(openTagsInBuffer.size() - 1);
+      assert openTag.equalsIgnoreCase(tagName);
+      appendEndTag(tagName);
+      return;
+    }
+    flush();
+
     assert appendElement != top && appendElement.getTagName().equalsIgnoreCase(tagName);
 
     // browser workaround
@@ -115,6 +223,10 @@ public class HtmlWriter {
   }
 
   public void text(String text) {
+    if (buffer != null) {
+      appendEscaped(text);
+      return;
+    }
     appendElement.appendChild(doc.createTextNode(text));
   }
 
@@ -153,9 +265,27 @@ public class HtmlWriter {
    * newlines to &lt;br&gt; tags.
    */
   public SpanElement textPreformatted(String textToAppend) {
-    SpanElement span = doc.createSpanElement();
+    textToAppend = textToAppend.replace(' ', '\u00A0');
 
-    textToAppend = textToAppend.replaceAll(" ", "\u00A0");
+    if (buffer != null) {
+      buffer.append("<span>");
+      int index = 0;
+      while (index < textToAppend.length()) {
+        int nextNewline = textToAppend.indexOf('\n', index);
+        if (nextNewline == -1) {
+          appendEscaped(textToAppend.substring(index));
+          break;
+        }
+        appendEscaped(textToAppend.substring(index, nextNewline));
+        buffer.append("<br>");
+        index = nextNewline + 1;
+      }
+      buffer.append("</span>");
+      flush();
+      return (SpanElement) appendElement.getLastChild().cast();
+    }
+
+    SpanElement span = doc.createSpanElement();
 
     int index = 0;
     while (index < textToAppend.length()) {
@@ -181,16 +311,56 @@ public class HtmlWriter {
    * it's used elsewhere, it will be removed.
    */
   public void element(com.google.gwt.dom.client.Element element) {
+    flush();
     appendElement.appendChild(element);
   }
 
   public void br() {
+    if (buffer != null) {
+      buffer.append("<br>");
+      return;
+    }
     appendElement.appendChild(doc.createBRElement());
   }
 
   // ========= end of public methods =======
 
   Element getAppendElement() {
+    flush();
     return appendElement;
   }
+
+  private void appendEndTag(String tagName) {
+    buffer.append("</").append(tagName).append('>');
+  }
+
+  /**
+   * Appends text to the buffer, escaping characters that are special in
+   * HTML text and attribute values.
+   */
+  private void appendEscaped(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '&': buffer.append("&amp;"); break;
+        case '<': buffer.append("&lt;"); break;
+        case '>': buffer.append("&gt;"); break;
+        case '"': buffer.append("&quot;"); break;
+        case '\'': buffer.append("&#39;"); break;
+        default: buffer.append(c);
+      }
+    }
+  }
+
+  /**
+   * Returns true for tags that the HTML parser drops or moves when they
+   * aren't inside a table or a select.
+   */
+  private static boolean isContextSensitiveTag(String tagName) {
+    String name = tagName.toLowerCase();
+    return name.equals("tr") || name.equals("td") || name.equals("th")
+        || name.equals("tbody") || name.equals("thead") || name.equals("tfoot")
+        || name.equals("caption") || name.equals("col") || name.equals("colgroup")
+        || name.equals("option") || name.equals("optgroup");
+  }
 }
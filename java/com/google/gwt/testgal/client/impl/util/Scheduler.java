@@ -16,31 +16,56 @@
 
 package com.google.gwt.testgal.client.impl.util;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.user.client.Timer;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ArrayList;
-
 /**
  * Runs the steps of a command in sequence, optionally sleeping between steps.
  * The command (or sometimes an event handler) controls how long it sleeps.
  *
+ * <p> A gallery pushes several steps for every test method, so the schedule
+ * is kept in a growable ring buffer and steps are recycled after they run,
+ * to avoid creating garbage for each step. </p>
+ *
+ * <p> By default, the scheduler yields whenever a step calls
+ * {@link #sleepAfterThisStep}. If a time slice is set, these calls are
+ * ignored: the scheduler keeps running steps until the time slice is used up
+ * and then yields for a millisecond, which is enough for the browser to
+ * update the page. Steps that need a real delay (such as waiting for an
+ * asynchronous test) should use
+ * {@link YieldingCommand.Step#setMinDelayBeforeThisStep} instead. </p>
+ *
+ * <p> Each step that runs and each timer the scheduler waits for is recorded
+ * in the {@link TraceLog}, on a track for this scheduler. </p>
+ *
  * @author Brian Slesinsky
  */
 public class Scheduler implements YieldingCommand.Schedule {
 
+  private static final int INITIAL_CAPACITY = 16;
+
   private static int nextId = 1;
 
+  /** The number of this scheduler; used as its track in the trace. */
+  private final int number = nextId++;
+
   /** The id of this scheduler; used for logging. */
-  private final String id = "sched-" + nextId++;
+  private final String id = "sched-" + number;
+
+  private final TraceLog trace;
 
   /**
    * The queue of steps that scheduler will run. A running step can modify the
    * queue to change what happens after it runs.
    */
-  private final LinkedList<Step> stepsToRun;
+  private final StepQueue stepsToRun;
+
+  /**
+   * Steps that have already run and can be reused. (This is a linked
+   * list threaded through {@link Step#nextFree}.)
+   */
+  private Step freeSteps;
 
   /**
    * If positive, this is the amount of time we should yield to other event handlers
@@ -49,40 +74,79 @@ public class Scheduler implements YieldingCommand.Schedule {
   private int yieldMillis = 0;
   private String yieldReason;
 
+  /**
+   * If positive, the scheduler runs steps for up to this many milliseconds
+   * before yielding, treating calls to {@link #sleepAfterThisStep} as hints.
+   */
+  private int timeSliceMillis = 0;
+
+  /** When the scheduler started running steps without yielding. */
+  private double sliceStartMillis;
+
+  /** How long the scheduler last yielded for. (Visible for testing.) */
+  private int lastYieldMillis;
+
   /**
    * Creates a scheduler with an empty schedule.
    */
   public Scheduler() {
-    stepsToRun = new LinkedList<Step>();
+    stepsToRun = new StepQueue(INITIAL_CAPACITY);
+    trace = TraceLog.get();
+    trace.nameTrack(number, "scheduler " + number);
+  }
+
+  /**
+   * Creates a scheduler with an empty schedule that runs steps in time slices.
+   * @param timeSliceMillis how long to run steps before yielding to the browser.
+   * If zero, the scheduler yields whenever a step asks it to sleep.
+   */
+  public Scheduler(int timeSliceMillis) {
+    this();
+    if (timeSliceMillis < 0) {
+      throw new IllegalArgumentException("time slice must be non-negative");
+    }
+    this.timeSliceMillis = timeSliceMillis;
   }
 
   // =========== modifying the schedule =========
 
   public YieldingCommand.Step push(YieldingCommand commandToRunNext) {
-    Step result = new Step(this, commandToRunNext);
-    stepsToRun.add(0, result);
+    Step result = makeStep(commandToRunNext);
+    stepsToRun.addFirst(result);
     return result;
   }
 
   public void push(Iterable<? extends YieldingCommand> commandsToRunNext) {
-    List<Step> stepsToAdd = new ArrayList<Step>();
+    // Add each command to the front, then put them back in iterator order.
+    int count = 0;
     for (YieldingCommand command : commandsToRunNext) {
-      stepsToAdd.add(new Step(this, command));
+      stepsToRun.addFirst(makeStep(command));
+      count++;
     }
-    stepsToRun.addAll(0, stepsToAdd);
+    stepsToRun.reverseFirst(count);
   }
 
   public YieldingCommand.Step addLast(YieldingCommand commandToRunLast) {
-    Step result = new Step(this, commandToRunLast);
-    stepsToRun.add(result);
+    Step result = makeStep(commandToRunLast);
+    stepsToRun.addLast(result);
     return result;
   }
 
   public void sleepAfterThisStep(int yieldMillis, String reason) {
+    if (timeSliceMillis > 0) {
+      // only a hint; we yield when the time slice is used up
+      return;
+    }
     this.yieldMillis = yieldMillis;
     this.yieldReason = reason;
   }
 
+  public void startConcurrently(YieldingCommand commandToStart) {
+    Scheduler other = new Scheduler(timeSliceMillis);
+    other.push(commandToStart);
+    other.startAfterYield(1, "to start a concurrent command");
+  }
+
   // ========== running the scheduler ===========
 
   /**
@@ -92,6 +156,7 @@ public class Scheduler implements YieldingCommand.Schedule {
    * @param yieldReason why we are yielding (for logging)
    */
   public void startAfterYield(int yieldMillis, String yieldReason) {
+    lastYieldMillis = yieldMillis;
     Step first = stepsToRun.peek();
     if (first != null) {
       log("yielding for " + yieldMillis + " ms " + yieldReason);
@@ -99,6 +164,14 @@ public class Scheduler implements YieldingCommand.Schedule {
     }
   }
 
+  /**
+   * Returns how long the scheduler asked to yield for the last time it yielded
+   * between steps. (Visible for testing.)
+   */
+  int getLastYieldMillis() {
+    return lastYieldMillis;
+  }
+
   /**
    * Runs the next step in the scheduler immediately, ignoring any yield or
    * delay, followed by any subsequent steps up to the next yield or delay.
@@ -113,8 +186,9 @@ public class Scheduler implements YieldingCommand.Schedule {
       log("running scheduler manually");
       yieldMillis = 0;
       yieldReason = null;
+      startTimeSlice();
       runNextStep();
-      while (!stepsToRun.isEmpty() && !stepsToRun.peek().hasTimer() && yieldMillis <= 0) {
+      while (!stepsToRun.isEmpty() && !stepsToRun.peek().hasTimer() && !shouldYield()) {
         runNextStep();
       }
     }
@@ -136,17 +210,37 @@ public class Scheduler implements YieldingCommand.Schedule {
         log("yielding " + nextStep.timerReason);
         return;
       }
-      if (yieldMillis > 0) {
+      if (shouldYield()) {
         break;
       }
       runNextStep();
     }
 
-    startAfterYield(yieldMillis, yieldReason);
+    if (yieldMillis > 0) {
+      startAfterYield(yieldMillis, yieldReason);
+    } else {
+      startAfterYield(1, "because the time slice was used up");
+    }
     yieldMillis = 0;
     yieldReason = null;
   }
 
+  private void startTimeSlice() {
+    if (timeSliceMillis > 0) {
+      sliceStartMillis = Duration.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Returns true if the scheduler should yield before running the next step.
+   */
+  private boolean shouldYield() {
+    if (timeSliceMillis <= 0) {
+      return yieldMillis > 0;
+    }
+    return Duration.currentTimeMillis() - sliceStartMillis >= timeSliceMillis;
+  }
+
   private void runNextStep() {
     stepsToRun.peek().runIfNext();
   }
@@ -157,13 +251,38 @@ public class Scheduler implements YieldingCommand.Schedule {
 
   private boolean removeIfNext(Step candidate) {
     if (isNext(candidate)) {
-      stepsToRun.remove();
+      stepsToRun.removeFirst();
       return true;
     } else {
       return false;
     }
   }
 
+  /**
+   * Returns a step that will run the given command, reusing a step that
+   * already ran if possible.
+   */
+  private Step makeStep(YieldingCommand commandToRun) {
+    Step result = freeSteps;
+    if (result == null) {
+      return new Step(this, commandToRun);
+    }
+    freeSteps = result.nextFree;
+    result.nextFree = null;
+    result.commandToRun = commandToRun;
+    return result;
+  }
+
+  /**
+   * Makes a step that has finished running available for reuse.
+   */
+  private void recycle(Step finished) {
+    finished.cancelTimer();
+    finished.commandToRun = null;
+    finished.nextFree = freeSteps;
+    freeSteps = finished;
+  }
+
   void log(String message) {
     GWT.log(id + " : " + message, null);
   }
@@ -173,16 +292,31 @@ public class Scheduler implements YieldingCommand.Schedule {
    * goes off, but only if it's next in the schedule.
    */
   private static class Step implements YieldingCommand.Step {
-    private final YieldingCommand commandToRun;
     private final Scheduler parent;
 
+    /** The command to run, or null if this step is waiting to be reused. */
+    private YieldingCommand commandToRun;
+
+    /** The next step in the scheduler's free list, if this step was recycled. */
+    private Step nextFree;
+
     /**
-     * A timer that will try to run this step when it fires.
-     * If null, this step isn't scheduled to run.
+     * A timer that will try to run this step when it fires. Created on first
+     * use and kept when the step is recycled.
      */
     private Timer timer;
+
+    /**
+     * True if {@link #timer} is scheduled to go off.
+     * If false, this step isn't scheduled to run.
+     */
+    private boolean timerPending;
     private String timerReason;
 
+    /** When the pending timer was started, and the delay it asked for. */
+    private double timerStartMillis;
+    private int timerDelayMillis;
+
     private Step(Scheduler parent, YieldingCommand commandToRun) {
       this.commandToRun = commandToRun;
       this.parent = parent;
@@ -219,33 +353,56 @@ public class Scheduler implements YieldingCommand.Schedule {
      * @param delayMillis must be positive
      */
     private void startTimer(int delayMillis, String delayReason) {
+      if (timerPending) {
+        return;
+      }
       if (timer == null) {
         timer = new Timer() {
           public void run() {
+            timerPending = false;
+            traceWait();
+            parent.startTimeSlice();
             boolean ran = runIfNext();
             if (ran) {
               parent.runUntilYield();
             }
           }
         };
-        timerReason = delayReason;
-        timer.schedule(delayMillis);
       }
+      timerPending = true;
+      timerReason = delayReason;
+      timerStartMillis = Duration.currentTimeMillis();
+      timerDelayMillis = delayMillis;
+      timer.schedule(delayMillis);
     }
 
     /**
      * Cancels the timer associated with this step, if any.
      */
     private void cancelTimer() {
-      if (timer != null) {
+      if (timerPending) {
         timer.cancel();
-        timer = null;
+        timerPending = false;
         timerReason = null;
       }
     }
 
+    /**
+     * Records the time between starting the timer and its going off.
+     * (This is often longer than the delay asked for, due to timer clamping
+     * or other event handlers running.)
+     */
+    private void traceWait() {
+      TraceLog trace = parent.trace;
+      if (trace.isEnabled()) {
+        String reason = timerReason == null ? "wait" : timerReason;
+        trace.addSpan("wait", reason, parent.number, timerStartMillis,
+            Duration.currentTimeMillis(), "asked for " + timerDelayMillis + " ms");
+      }
+    }
+
     private boolean hasTimer() {
-      return timer != null;
+      return timerPending;
     }
 
     /**
@@ -257,8 +414,93 @@ public class Scheduler implements YieldingCommand.Schedule {
         return false;
       }
       cancelTimer();
-      commandToRun.run(parent);
+      TraceLog trace = parent.trace;
+      double startMillis = trace.isEnabled() ? Duration.currentTimeMillis() : 0;
+      Class<?> commandClass = commandToRun.getClass();
+      try {
+        commandToRun.run(parent);
+      } finally {
+        if (trace.isEnabled()) {
+          trace.addSpan("step", commandClass, parent.number, startMillis,
+              Duration.currentTimeMillis(), null);
+        }
+        parent.recycle(this);
+      }
       return true;
     }
   }
+
+  /**
+   * A double-ended queue of steps, stored in a ring buffer that grows
+   * as needed. (GWT doesn't emulate java.util.ArrayDeque.)
+   */
+  private static class StepQueue {
+    private Step[] elements;
+
+    /** The index of the first step in the queue. */
+    private int head = 0;
+    private int size = 0;
+
+    StepQueue(int initialCapacity) {
+      elements = new Step[initialCapacity];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Returns the first step, or null if the queue is empty.
+     */
+    Step peek() {
+      return size == 0 ? null : elements[head];
+    }
+
+    void addFirst(Step step) {
+      ensureRoomForOneMore();
+      head = (head - 1 + elements.length) % elements.length;
+      elements[head] = step;
+      size++;
+    }
+
+    void addLast(Step step) {
+      ensureRoomForOneMore();
+      elements[(head + size) % elements.length] = step;
+      size++;
+    }
+
+    Step removeFirst() {
+      Step result = elements[head];
+      elements[head] = null;
+      head = (head + 1) % elements.length;
+      size--;
+      return result;
+    }
+
+    /**
+     * Reverses the order of the first count steps in the queue.
+     */
+    void reverseFirst(int count) {
+      int capacity = elements.length;
+      for (int i = 0, j = count - 1; i < j; i++, j--) {
+        int left = (head + i) % capacity;
+        int right = (head + j) % capacity;
+        Step tmp = elements[left];
+        elements[left] = elements[right];
+        elements[right] = tmp;
+      }
+    }
+
+    private void ensureRoomForOneMore() {
+      if (size < elements.length) {
+        return;
+      }
+      Step[] bigger = new Step[elements.length * 2];
+      for (int i = 0; i < size; i++) {
+        bigger[i] = elements[(head + i) % elements.length];
+      }
+      elements = bigger;
+      head = 0;
+    }
+  }
 }
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl.util;
+
+import com.google.gwt.core.client.Duration;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records where the time goes while a gallery runs, so that it can be
+ * downloaded and loaded into a trace viewer such as Chrome's about:tracing.
+ *
+ * <p>Events are kept in a fixed-size ring buffer; when it's full, the oldest
+ * events are dropped. Each event is stored in parallel arrays, so recording
+ * one doesn't create any objects. The JSON is only built by {@link #toJson},
+ * using the Trace Event Format. Spans are written as "complete" events (a
+ * start time and a duration) so that dropping old events can't leave a begin
+ * event without its end.</p>
+ *
+ * <p>Scheduler steps and waits are recorded on a track for each scheduler.
+ * The phases of each test are recorded as nested asynchronous events, since
+ * tests in the same section may overlap.</p>
+ *
+ * <p>A gallery creates many schedulers, so the names of tracks whose events
+ * have all been dropped are eventually forgotten too.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class TraceLog {
+
+  /** The number of events kept by the log returned by {@link #get}. */
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  private static final int COMPLETE = 0;
+  private static final int ASYNC = 1;
+
+  /** The number of track names to keep before looking for unused ones. */
+  private static final int MIN_TRACK_NAME_LIMIT = 64;
+
+  private static TraceLog instance;
+
+  private final double originMillis;
+  private boolean enabled = true;
+
+  private final int[] kinds;
+  private final String[] categories;
+  /** Each event's name, or the class it's named after. */
+  private final Object[] names;
+  private final String[] details;
+  private final int[] ids;
+  private final double[] starts;
+  private final double[] ends;
+
+  /** The index of the oldest event. */
+  private int head = 0;
+  private int size = 0;
+  private int nextAsyncId = 1;
+
+  private final Map<Integer, String> trackNames = new TreeMap<Integer, String>();
+
+  /** Tracks named since unused track names were last dropped. */
+  private final Set<Integer> newTracks = new HashSet<Integer>();
+  private int trackNameLimit = MIN_TRACK_NAME_LIMIT;
+
+  /**
+   * Returns the log that TestGal records to while running a gallery.
+   */
+  public static TraceLog get() {
+    if (instance == null) {
+      instance = new TraceLog(DEFAULT_CAPACITY, Duration.currentTimeMillis());
+    }
+    return instance;
+  }
+
+  /**
+   * Creates an empty log.
+   * @param capacity the number of events to keep
+   * @param originMillis the time to treat as zero in the trace
+   */
+  public TraceLog(int capacity, double originMillis) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    this.originMillis = originMillis;
+    kinds = new int[capacity];
+    categories = new String[capacity];
+    names = new Object[capacity];
+    details = new String[capacity];
+    ids = new int[capacity];
+    starts = new double[capacity];
+    ends = new double[capacity];
+  }
+
+  /**
+   * Turns recording on or off. (It's on by default.)
+   */
+  public void setEnabled(boolean newEnabled) {
+    this.enabled = newEnabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the number of events in the log.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes all events from the log. (Track names are kept.)
+   */
+  public void clear() {
+    for (int i = 0; i < categories.length; i++) {
+      categories[i] = null;
+      names[i] = null;
+      details[i] = null;
+    }
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Gives a name to a track, to be shown by the trace viewer.
+   */
+  public void nameTrack(int track, String name) {
+    trackNames.put(track, name);
+    newTracks.add(track);
+    if (trackNames.size() > trackNameLimit) {
+      dropUnusedTracks();
+      trackNameLimit = Math.max(MIN_TRACK_NAME_LIMIT, trackNames.size() * 2);
+    }
+  }
+
+  /**
+   * Returns the number of tracks that have names.
+   */
+  public int getTrackCount() {
+    return trackNames.size();
+  }
+
+  /**
+   * Records something that happened on a track from start to end.
+   * @param detail shown when the event is selected, or null
+   */
+  public void addSpan(String category, String name, int track, double startMillis,
+      double endMillis, String detail) {
+    add(COMPLETE, category, name, track, startMillis, endMillis, detail);
+  }
+
+  /**
+   * Records a span named after a class (without its package). The name is
+   * only looked up when the log is written, so this is cheap enough to call
+   * for every step a scheduler runs.
+   */
+  public void addSpan(String category, Class<?> nameClass, int track, double startMillis,
+      double endMillis, String detail) {
+    add(COMPLETE, category, nameClass, track, startMillis, endMillis, detail);
+  }
+
+  /**
+   * Returns a new id for {@link #addAsyncSpan}.
+   */
+  public int newAsyncId() {
+    return nextAsyncId++;
+  }
+
+  /**
+   * Records something that happened from start to end and may overlap with
+   * other events. Spans with the same id are shown together, nested by time.
+   */
+  public void addAsyncSpan(String category, String name, int id, double startMillis,
+      double endMillis, String detail) {
+    add(ASYNC, category, name, id, startMillis, endMillis, detail);
+  }
+
+  /**
+   * Returns the log in Chrome's Trace Event Format.
+   */
+  public String toJson() {
+    StringBuilder out = new StringBuilder();
+    out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    boolean first = true;
+    for (Map.Entry<Integer, String> entry : trackNames.entrySet()) {
+      first = startEvent(out, first);
+      out.append("\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":")
+          .append(entry.getKey()).append(",\"args\":{\"name\":");
+      appendString(out, entry.getValue());
+      out.append("}}");
+    }
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % kinds.length;
+      if (kinds[index] == COMPLETE) {
+        first = startEvent(out, first);
+        appendCommon(out, index, "X");
+        out.append(",\"tid\":").append(ids[index])
+            .append(",\"dur\":").append(micros(ends[index] - starts[index]));
+        appendDetail(out, index);
+        out.append("}");
+      } else {
+        first = startEvent(out, first);
+        appendCommon(out, index, "b");
+        out.append(",\"tid\":0,\"id\":").append(ids[index]);
+        appendDetail(out, index);
+        out.append("}");
+
+        out.append(",\n{");
+        appendCommon(out, index, "e");
+        out.append(",\"tid\":0,\"id\":").append(ids[index]);
+        out.append("}");
+      }
+    }
+    out.append("]}\n");
+    return out.toString();
+  }
+
+  // ======== end of public methods ========
+
+  private void add(int kind, String category, Object name, int id, double startMillis,
+      double endMillis, String detail) {
+    if (!enabled) {
+      return;
+    }
+    int index;
+    if (size < kinds.length) {
+      index = (head + size) % kinds.length;
+      size++;
+    } else {
+      // overwrite the oldest event
+      index = head;
+      head = (head + 1) % kinds.length;
+    }
+    kinds[index] = kind;
+    categories[index] = category;
+    names[index] = name;
+    ids[index] = id;
+    starts[index] = startMillis;
+    ends[index] = endMillis;
+    details[index] = detail;
+  }
+
+  /**
+   * Forgets the names of tracks that have no events left in the log,
+   * except for tracks named since the last time this ran (which may not
+   * have had a chance to record anything yet).
+   */
+  private void dropUnusedTracks() {
+    Set<Integer> used = new HashSet<Integer>();
+    for (int i = 0; i < size; i++) {
+      int index = (head + i) % kinds.length;
+      if (kinds[index] == COMPLETE) {
+        used.add(ids[index]);
+      }
+    }
+    for (Iterator<Integer> it = trackNames.keySet().iterator(); it.hasNext();) {
+      Integer track = it.next();
+      if (!used.contains(track) && !newTracks.contains(track)) {
+        it.remove();
+      }
+    }
+    newTracks.clear();
+  }
+
+  private static String getName(Object name) {
+    if (name instanceof Class<?>) {
+      String className = ((Class<?>) name).getName();
+      return className.substring(className.lastIndexOf('.') + 1);
+    }
+    return (String) name;
+  }
+
+  private static boolean startEvent(StringBuilder out, boolean first) {
+    out.append(first ? "\n{" : ",\n{");
+    return false;
+  }
+
+  /**
+   * Appends the fields that every event has. (For the end of an asynchronous
+   * span, the timestamp is the end time.)
+   */
+  private void appendCommon(StringBuilder out, int index, String phase) {
+    out.append("\"name\":");
+    appendString(out, getName(names[index]));
+    out.append(",\"cat\":");
+    appendString(out, categories[index]);
+    out.append(",\"ph\":\"").append(phase).append("\",\"pid\":1,\"ts\":");
+    double time = phase.equals("e") ? ends[index] : starts[index];
+    out.append(micros(time - originMillis));
+  }
+
+  private void appendDetail(StringBuilder out, int index) {
+    if (details[index] != null) {
+      out.append(",\"args\":{\"detail\":");
+      appendString(out, details[index]);
+      out.append("}");
+    }
+  }
+
+  /**
+   * Converts milliseconds to a whole number of microseconds, as a string.
+   * (Trace viewers expect microseconds.)
+   */
+  private static String micros(double millis) {
+    return Long.toString((long) Math.floor(millis * 1000.0 + 0.5));
+  }
+
+  private static void appendString(StringBuilder out, String text) {
+    out.append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            String hex = Integer.toHexString(c);
+            out.append("\\u00").append(hex.length() == 1 ? "0" : "").append(hex);
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+}
@@ -75,14 +75,29 @@ public interface YieldingCommand {
      * If the current step calls this method multiple times, the last delay
      * time will be used. </p>
      *
+     * <p> A scheduler that runs steps in time slices ignores this: it keeps
+     * running steps until its time slice is used up, and then yields as
+     * briefly as it can. A step that needs a real delay should call
+     * {@link Step#setMinDelayBeforeThisStep} on the next step instead. </p>
+     *
      * @param delayMillis how long to wait before running the next step.
      * @param reasonMessage reason for yielding (for log message)
      */
     void sleepAfterThisStep(int delayMillis, String reasonMessage);
+
+    /**
+     * Starts a command running on a separate schedule, after the current
+     * event handler returns. The new command's steps are interleaved with
+     * this schedule's steps, so one can run while the other is sleeping.
+     */
+    void startConcurrently(YieldingCommand commandToStart);
   }
 
   /**
    * Represents a step in a running command.
+   *
+   * <p>A Step is only valid until it runs. Afterwards, the scheduler may reuse
+   * the same object for a different step, so callers shouldn't hold onto it.</p>
    */
   public interface Step {
 
@@ -29,7 +29,19 @@ public class YieldingCommands {
    * Schedules a command to run after the current event handler returns.
    */
   public static void start(YieldingCommand commandToRun) {
-    Scheduler scheduler = new Scheduler();
+    start(commandToRun, new Scheduler());
+  }
+
+  /**
+   * Schedules a command to run after the current event handler returns,
+   * running as many steps as fit in each time slice before yielding.
+   * @see Scheduler#Scheduler(int)
+   */
+  public static void start(YieldingCommand commandToRun, int timeSliceMillis) {
+    start(commandToRun, new Scheduler(timeSliceMillis));
+  }
+
+  private static void start(YieldingCommand commandToRun, Scheduler scheduler) {
     scheduler.push(commandToRun);
     scheduler.startAfterYield(1, "to start a new command");
   }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+import com.google.gwt.testgal.api.shared.TestLocal;
+import com.google.gwt.testgal.client.impl.SingleTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Lets a plain JUnit test run asynchronously in the {@link JvmTestRunner},
+ * the same way that a GWTTestCase can in a gallery. Example usage:
+ *
+ * <pre>
+ * public void testSomething() {
+ *   AsyncSupport.delayTestFinish(this, 5000);
+ *   startSomethingInTheBackground(new Callback() {
+ *     public void done() {
+ *       AsyncSupport.finishTest(MyTest.this);
+ *     }
+ *   });
+ * }
+ * </pre>
+ *
+ * <p>When the test method returns, the thread running the test waits until
+ * finishTest() is called or the timeout expires, and then calls tearDown().</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class AsyncSupport {
+
+  /**
+   * Contains the callback for each test that's running in the JVM runner.
+   */
+  static final TestLocal<SingleTest.Callback> CALLBACKS =
+      TestLocal.create(AsyncSupport.class);
+
+  private AsyncSupport() {}
+
+  /**
+   * Tells the test runner to wait for {@link #finishTest} before tearing down
+   * the test. The test fails if it doesn't finish in time. Calling this again
+   * starts a new timeout.
+   *
+   * @throws IllegalStateException if the test isn't running in a JvmTestRunner.
+   */
+  public static void delayTestFinish(TestCase test, int timeoutMillis) {
+    getCallback(test).delayTestFinish(timeoutMillis);
+  }
+
+  /**
+   * Tells the test runner that an asynchronous test has finished.
+   *
+   * @throws IllegalStateException if the test isn't running in a JvmTestRunner.
+   */
+  public static void finishTest(TestCase test) {
+    getCallback(test).finishTest();
+  }
+
+  // ======== end of public methods ========
+
+  private static SingleTest.Callback getCallback(TestCase test) {
+    SingleTest.Callback callback = CALLBACKS.get(test, null);
+    if (callback == null) {
+      throw new IllegalStateException(
+          "asynchronous tests are only supported in JvmTestRunner: " + test.getName());
+    }
+    return callback;
+  }
+}
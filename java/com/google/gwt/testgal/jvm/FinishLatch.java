@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+import com.google.gwt.testgal.client.impl.SingleTest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps track of whether an asynchronous test has finished, so the thread
+ * running the test can wait for it before calling tearDown().
+ *
+ * <p>This uses a Lock rather than a monitor so that a virtual thread that's
+ * waiting is parked without holding on to its carrier thread.</p>
+ *
+ * @author Brian Slesinsky
+ */
+class FinishLatch implements SingleTest.Callback {
+
+  private final Lock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+
+  private boolean delayed = false;
+  private boolean finished = false;
+  private long deadlineNanos;
+
+  public void delayTestFinish(int timeoutMillis) {
+    lock.lock();
+    try {
+      delayed = true;
+      deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void finishTest() {
+    lock.lock();
+    try {
+      finished = true;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * If the test called delayTestFinish(), waits until it calls finishTest()
+   * or the timeout expires.
+   * @return false if the test timed out
+   */
+  boolean await() throws InterruptedException {
+    lock.lock();
+    try {
+      if (!delayed) {
+        return true;
+      }
+      while (!finished) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        changed.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
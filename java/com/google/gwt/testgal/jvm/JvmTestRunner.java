@@ -0,0 +1,416 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+import com.google.gwt.testgal.api.shared.OutputListener;
+import com.google.gwt.testgal.api.shared.TestLocal;
+import com.google.gwt.testgal.api.shared.TestOutput;
+import com.google.gwt.testgal.jvm.MethodResult.Status;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the test methods in some JUnit test cases on a pool of threads, without
+ * a browser. This is meant for running the parts of a test gallery that don't
+ * need the DOM (tests that only use {@link TestOutput}) quickly, such as in a
+ * continuous build.
+ *
+ * <p>Each test method goes through the same steps as in a gallery: the test case is
+ * constructed, then its setUp(), test method, and tearDown() are called. Output
+ * sent to {@link TestOutput} is saved separately for each test. Subclasses of
+ * GWTTestCase are skipped because they need a browser.</p>
+ *
+ * <p>By default, tests run on a fixed pool of threads. For tests that spend
+ * most of their time waiting (for example, asynchronous tests that use
+ * {@link AsyncSupport}), {@link #threadPerTest} runs each test on its own
+ * thread instead, with a limit on how many run at once. On Java 21 and later
+ * these are virtual threads, so the limit can be in the thousands.</p>
+ *
+ * <p>To split the tests between several JVMs, give each one the same list of
+ * classes and a different shard number with {@code -shard I/N}; each test class
+ * is picked for one of the N shards using a hash of its name.</p>
+ *
+ * <p>Usage: {@code java com.google.gwt.testgal.jvm.JvmTestRunner [-threads N]
+ * [-threadPerTest] [-shard I/N] TestClassName...}</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class JvmTestRunner {
+
+  private static final String GWT_TEST_CASE = "com.google.gwt.junit.client.GWTTestCase";
+
+  /**
+   * The number of threads in the pool, or in thread-per-test mode,
+   * the most tests that may run at once.
+   */
+  private final int threadCount;
+  private final boolean threadPerTest;
+  private final TestLocal<OutputListener> outputListeners;
+
+  /**
+   * Creates a runner that uses one thread per processor.
+   */
+  public JvmTestRunner() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public JvmTestRunner(int threadCount) {
+    this(threadCount, false);
+  }
+
+  private JvmTestRunner(int threadCount, boolean threadPerTest) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("need at least one thread: " + threadCount);
+    }
+    this.threadCount = threadCount;
+    this.threadPerTest = threadPerTest;
+    this.outputListeners = TestOutput.OUTPUT_LISTENERS;
+  }
+
+  /**
+   * Creates a runner that starts a new thread for each test method (a virtual
+   * thread, if the JVM supports them).
+   * @param maxConcurrentTests the most tests that may run at the same time
+   */
+  public static JvmTestRunner threadPerTest(int maxConcurrentTests) {
+    return new JvmTestRunner(maxConcurrentTests, true);
+  }
+
+  /**
+   * Runs every test method in the given classes and waits for them to finish.
+   * @return the results, in the same order as the classes and their test methods
+   * (regardless of the order in which they ran).
+   */
+  public List<MethodResult> run(List<Class<? extends TestCase>> testClasses)
+      throws InterruptedException {
+
+    List<Callable<MethodResult>> tasks = new ArrayList<Callable<MethodResult>>();
+    for (final Class<? extends TestCase> testClass : testClasses) {
+      for (final Method method : findTestMethods(testClass)) {
+        tasks.add(new Callable<MethodResult>() {
+          public MethodResult call() {
+            return runMethod(testClass, method);
+          }
+        });
+      }
+    }
+
+    ExecutorService executor = threadPerTest ? newThreadPerTaskExecutor()
+        : Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<MethodResult>> futures = submitAll(executor, tasks);
+      List<MethodResult> results = new ArrayList<MethodResult>();
+      for (Future<MethodResult> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          throw new RuntimeException("test runner failed", e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the test classes named on the command line and prints the results.
+   * Exits with a nonzero status if any test failed.
+   */
+  public static void main(String[] args) throws Exception {
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    boolean threadPerTest = false;
+    int shard = 1;
+    int shardCount = 1;
+    List<Class<? extends TestCase>> testClasses = new ArrayList<Class<? extends TestCase>>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-threads") && i + 1 < args.length) {
+        threadCount = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-threadPerTest")) {
+        threadPerTest = true;
+      } else if (args[i].equals("-shard") && i + 1 < args.length) {
+        String[] parts = args[++i].split("/");
+        shard = Integer.parseInt(parts[0]);
+        shardCount = parts.length == 2 ? Integer.parseInt(parts[1]) : 0;
+        if (shardCount < 1 || shard < 1 || shard > shardCount) {
+          System.err.println("-shard should be I/N, where 1 <= I <= N");
+          System.exit(2);
+        }
+      } else {
+        testClasses.add(Class.forName(args[i]).asSubclass(TestCase.class));
+      }
+    }
+    if (testClasses.isEmpty()) {
+      System.err.println(
+          "usage: JvmTestRunner [-threads N] [-threadPerTest] [-shard I/N] TestClassName...");
+      System.exit(2);
+    }
+    testClasses = selectShard(testClasses, shard, shardCount);
+
+    long startTime = System.currentTimeMillis();
+    JvmTestRunner runner = new JvmTestRunner(threadCount, threadPerTest);
+    List<MethodResult> results = runner.run(testClasses);
+    long elapsed = System.currentTimeMillis() - startTime;
+
+    int[] counts = new int[Status.values().length];
+    for (MethodResult result : results) {
+      counts[result.getStatus().ordinal()]++;
+      printResult(result);
+    }
+    System.out.println(counts[Status.PASSED.ordinal()] + " passed, "
+        + counts[Status.FAILED.ordinal()] + " failed, "
+        + counts[Status.SKIPPED.ordinal()] + " skipped in " + elapsed + " ms using "
+        + threadCount + (threadPerTest ? " concurrent tests" : " threads"));
+    System.exit(counts[Status.FAILED.ordinal()] == 0 ? 0 : 1);
+  }
+
+  // ======== end of public methods ========
+
+  /**
+   * Returns the test classes in one shard, in their original order.
+   * @param shard which shard to return, counting from 1
+   */
+  static List<Class<? extends TestCase>> selectShard(List<Class<? extends TestCase>> testClasses,
+      int shard, int shardCount) {
+    List<Class<? extends TestCase>> result = new ArrayList<Class<? extends TestCase>>();
+    for (Class<? extends TestCase> testClass : testClasses) {
+      int remainder = testClass.getName().hashCode() % shardCount;
+      if ((remainder < 0 ? remainder + shardCount : remainder) + 1 == shard) {
+        result.add(testClass);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the test methods in a class, sorted by name. Like the GWT generator,
+   * this finds public methods with no parameters whose names start with "test",
+   * including those inherited from superclasses other than TestCase.
+   * An overridden method is only listed once.
+   */
+  static List<Method> findTestMethods(Class<?> testClass) {
+    List<Method> result = new ArrayList<Method>();
+    Set<String> seen = new HashSet<String>();
+    for (Class<?> type = testClass; type != null && type != TestCase.class;
+        type = type.getSuperclass()) {
+      for (Method method : type.getDeclaredMethods()) {
+        if (method.getName().startsWith("test") &&
+            Modifier.isPublic(method.getModifiers()) &&
+            !Modifier.isStatic(method.getModifiers()) &&
+            method.getParameterTypes().length == 0 &&
+            seen.add(method.getName())) {
+          if (!Modifier.isPublic(type.getModifiers())) {
+            // an inherited method in a package-private base class
+            method.setAccessible(true);
+          }
+          result.add(method);
+        }
+      }
+    }
+    Method[] sorted = result.toArray(new Method[result.size()]);
+    Arrays.sort(sorted, new Comparator<Method>() {
+      public int compare(Method a, Method b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+    return Arrays.asList(sorted);
+  }
+
+  /**
+   * Submits each task, waiting whenever the maximum number of tasks are running.
+   * (A fixed thread pool would queue them anyway, but a thread-per-task executor
+   * would start them all at once.)
+   */
+  private List<Future<MethodResult>> submitAll(ExecutorService executor,
+      List<Callable<MethodResult>> tasks) throws InterruptedException {
+    final Semaphore running = new Semaphore(threadCount);
+    List<Future<MethodResult>> futures = new ArrayList<Future<MethodResult>>();
+    for (final Callable<MethodResult> task : tasks) {
+      running.acquire();
+      futures.add(executor.submit(new Callable<MethodResult>() {
+        public MethodResult call() throws Exception {
+          try {
+            return task.call();
+          } finally {
+            running.release();
+          }
+        }
+      }));
+    }
+    return futures;
+  }
+
+  /**
+   * Returns an executor that starts a new thread for each task. It uses virtual
+   * threads if the JVM has them (Java 21 and later), which we look up using
+   * reflection since TestGal is compiled for older versions of Java.
+   */
+  private static ExecutorService newThreadPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (NoSuchMethodException e) {
+      // older JVM
+    } catch (IllegalAccessException e) {
+      // shouldn't happen for a public method
+    } catch (InvocationTargetException e) {
+      // for example, preview features aren't enabled
+    }
+    return Executors.newCachedThreadPool();
+  }
+
+  private MethodResult runMethod(Class<? extends TestCase> testClass, Method method) {
+    MethodResultBuilder result = new MethodResultBuilder(testClass, method);
+    if (needsBrowser(testClass)) {
+      return result.skip("This test needs a browser because it's a GWTTestCase.");
+    }
+
+    ReflectiveTest currentTest;
+    try {
+      currentTest = new ReflectiveTest(testClass, method);
+    } catch (AssertionFailedError e) {
+      return result.fail("This test failed in its constructor.", e);
+    } catch (AssertionError e) {
+      return result.fail("This test failed in its constructor.", e);
+    } catch (Exception e) {
+      return result.fail("This test failed in its constructor.", e);
+    }
+
+    TestCase testCase = currentTest.getTestCase();
+    outputListeners.set(testCase, result.output);
+    try {
+      try {
+        currentTest.__runSetUp();
+      } catch (AssertionFailedError e) {
+        return result.fail("This test failed in its setUp() method.", e);
+      } catch (AssertionError e) {
+        return result.fail("This test failed in its setUp() method.", e);
+      } catch (Exception e) {
+        return result.fail("This test failed in its setUp() method.", e);
+      }
+
+      FinishLatch finishLatch = new FinishLatch();
+      currentTest.__setCallback(finishLatch);
+      try {
+        currentTest.__runTestMethod();
+        if (!finishLatch.await()) {
+          result.fail("The asynchronous test timed out.", null);
+        }
+      } catch (AssertionFailedError e) {
+        result.fail("The test failed due to an assertion.", e);
+      } catch (AssertionError e) {
+        result.fail("The test failed due to an assertion.", e);
+      } catch (Exception e) {
+        result.fail("The test method threw an exception.", e);
+      }
+
+      try {
+        currentTest.__runTearDown();
+      } catch (AssertionFailedError e) {
+        result.fail("This test failed in its tearDown() method.", e);
+      } catch (AssertionError e) {
+        result.fail("This test failed in its tearDown() method.", e);
+      } catch (Exception e) {
+        result.fail("This test failed in its tearDown() method.", e);
+      }
+
+      return result.finish();
+    } finally {
+      currentTest.__setCallback(null);
+      outputListeners.unset(testCase, result.output);
+    }
+  }
+
+  private static boolean needsBrowser(Class<?> testClass) {
+    for (Class<?> c = testClass; c != null; c = c.getSuperclass()) {
+      if (c.getName().equals(GWT_TEST_CASE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void printResult(MethodResult result) {
+    if (result.getStatus() == Status.PASSED) {
+      return;
+    }
+    System.out.println("=== " + result + " ===");
+    System.out.println(result.getMessage());
+    if (result.getOutput().length() > 0) {
+      System.out.print(result.getOutput());
+    }
+    if (result.getFailure() != null) {
+      result.getFailure().printStackTrace(System.out);
+    }
+    System.out.println();
+  }
+
+  /**
+   * Collects the result of one test method while it runs.
+   * (The first failure is the one reported.)
+   */
+  private static class MethodResultBuilder {
+    private final String className;
+    private final String methodName;
+    private final long startTime = System.currentTimeMillis();
+    private final TextOutputListener output = new TextOutputListener();
+    private Status status = Status.PASSED;
+    private String message;
+    private Throwable failure;
+
+    MethodResultBuilder(Class<?> testClass, Method method) {
+      this.className = testClass.getName();
+      this.methodName = method.getName();
+    }
+
+    MethodResult skip(String reason) {
+      status = Status.SKIPPED;
+      message = reason;
+      return finish();
+    }
+
+    MethodResult fail(String newMessage, Throwable newFailure) {
+      if (status != Status.FAILED) {
+        status = Status.FAILED;
+        message = newMessage;
+        failure = newFailure;
+      }
+      return finish();
+    }
+
+    MethodResult finish() {
+      return new MethodResult(className, methodName, status, message, failure,
+          output.toString(), System.currentTimeMillis() - startTime);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+/**
+ * The result of running one test method in the JVM.
+ *
+ * @author Brian Slesinsky
+ */
+public class MethodResult {
+
+  public enum Status { PASSED, FAILED, SKIPPED }
+
+  private final String className;
+  private final String methodName;
+  private final Status status;
+  private final String message;
+  private final Throwable failure;
+  private final String output;
+  private final long elapsedMillis;
+
+  MethodResult(String className, String methodName, Status status, String message,
+      Throwable failure, String output, long elapsedMillis) {
+    this.className = className;
+    this.methodName = methodName;
+    this.status = status;
+    this.message = message;
+    this.failure = failure;
+    this.output = output;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public String getMethodName() {
+    return methodName;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  /**
+   * Explains why the test failed or was skipped. (Null if it passed.)
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * The exception or assertion failure that caused the test to fail, if any.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * The text that the test sent to {@link com.google.gwt.testgal.api.shared.TestOutput}.
+   */
+  public String getOutput() {
+    return output;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return className + "." + methodName + ": " + status.name().toLowerCase();
+  }
+}
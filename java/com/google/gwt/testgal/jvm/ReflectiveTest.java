@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+import com.google.gwt.testgal.client.impl.SingleTest;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Runs one test method of a JUnit test case using reflection. This is the JVM's
+ * equivalent of the SingleTest subclass that the GWT generator creates for each
+ * test method.
+ *
+ * @see com.google.gwt.testgal.rebind.TestSourceGenerator
+ *
+ * @author Brian Slesinsky
+ */
+class ReflectiveTest implements SingleTest {
+
+  private static final Method SET_UP = findLifecycleMethod("setUp");
+  private static final Method TEAR_DOWN = findLifecycleMethod("tearDown");
+
+  private final TestCase testCase;
+  private final Method testMethod;
+  private Callback callback;
+
+  /**
+   * Constructs the test case, using either its no-argument constructor
+   * or the JUnit 3 constructor that takes the test's name.
+   * @throws Exception if the test case's constructor threw an exception
+   */
+  ReflectiveTest(Class<? extends TestCase> testClass, Method testMethod) throws Exception {
+    Constructor<? extends TestCase> constructor;
+    Object[] args;
+    try {
+      constructor = testClass.getConstructor();
+      args = new Object[0];
+    } catch (NoSuchMethodException e) {
+      constructor = testClass.getConstructor(String.class);
+      args = new Object[] { testMethod.getName() };
+    }
+
+    try {
+      this.testCase = constructor.newInstance(args);
+    } catch (InvocationTargetException e) {
+      throw rethrow(e.getCause());
+    }
+    this.testMethod = testMethod;
+  }
+
+  TestCase getTestCase() {
+    return testCase;
+  }
+
+  public void __runSetUp() throws Exception {
+    testCase.setName(testMethod.getName());
+    invoke(SET_UP);
+  }
+
+  public void __runTestMethod() throws Exception {
+    invoke(testMethod);
+  }
+
+  public void __runTearDown() throws Exception {
+    invoke(TEAR_DOWN);
+  }
+
+  /**
+   * Makes the callback available to the test through {@link AsyncSupport}.
+   * (The test runner must call this again with null before the test is
+   * thrown away.)
+   */
+  public void __setCallback(Callback newCallback) {
+    if (callback != null) {
+      AsyncSupport.CALLBACKS.unset(testCase, callback);
+    }
+    callback = newCallback;
+    if (callback != null) {
+      AsyncSupport.CALLBACKS.set(testCase, callback);
+    }
+  }
+
+  // ======== end of public methods ========
+
+  private void invoke(Method method) throws Exception {
+    try {
+      method.invoke(testCase);
+    } catch (InvocationTargetException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * Rethrows an exception thrown by test code, so that assertion failures
+   * and errors reach the test runner unwrapped.
+   */
+  private static Exception rethrow(Throwable cause) throws Exception {
+    if (cause instanceof Exception) {
+      throw (Exception) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new RuntimeException(cause);
+  }
+
+  private static Method findLifecycleMethod(String name) {
+    try {
+      Method result = TestCase.class.getDeclaredMethod(name);
+      result.setAccessible(true);
+      return result;
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("JUnit's TestCase has no " + name + "() method", e);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+import com.google.gwt.testgal.api.shared.OutputListener;
+
+/**
+ * Saves a test's output as plain text. Tests run concurrently, so each test's
+ * output is kept separately and printed after it finishes, instead of going
+ * straight to System.out like {@link OutputListener#DEFAULT}.
+ *
+ * @author Brian Slesinsky
+ */
+class TextOutputListener implements OutputListener {
+
+  private final StringBuilder text = new StringBuilder();
+
+  public void wroteHeading(String heading) {
+    println("");
+    println(heading);
+    println("===");
+    println("");
+  }
+
+  public void wroteParagraph(String line) {
+    println(line);
+  }
+
+  public void tookSnapshot(Object target, String caption) {
+    println("");
+    if (target == null) {
+      println("[null]");
+    } else {
+      println("[image of " + target.getClass().getName() + "]");
+    }
+    if (caption != null) {
+      println(caption);
+    }
+    println("");
+  }
+
+  public void wroteDemo(Object demo, String caption) {
+    println("[demo not available for: " + demo + "]");
+  }
+
+  public void wroteError(String message) {
+    println("*** error: " + message + " ***");
+  }
+
+  public void compared(Object expected, Object actual, String caption) {
+    // no extra output, other than the failure from assertEquals()
+  }
+
+  @Override
+  public String toString() {
+    return text.toString();
+  }
+
+  // ======== end of public methods ========
+
+  private void println(String line) {
+    text.append(line).append('\n');
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.gwt.testgal.rebind;
 
+import com.google.gwt.core.ext.BadPropertyValueException;
+import com.google.gwt.core.ext.ConfigurationProperty;
 import com.google.gwt.core.ext.Generator;
 import com.google.gwt.core.ext.GeneratorContext;
 import com.google.gwt.core.ext.TreeLogger;
@@ -27,19 +29,44 @@ import com.google.gwt.user.rebind.SourceWriter;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Given a subclass of junit.framework.TestCase, generates a class that implements
  * the {@link com.google.gwt.testgal.client.impl.TestClass} interface.
  *
+ * <p>The test methods are the public methods with no parameters whose names
+ * start with "test", including those inherited from superclasses (other than
+ * TestCase itself), so an abstract base class can define tests that several
+ * subclasses share. As in JUnit, the subclass's methods come first, and an
+ * overridden method appears once. The generated class creates the list of
+ * test methods once, in a static table.</p>
+ *
  * <p>Note: this generator is incompatible with the normal way of
  * running a GWTTestCase and should be used only in a test gallery module.</p>
  *
+ * <p>If the "testgal.splitSections" configuration property is true, the generated
+ * class instead implements {@link com.google.gwt.testgal.client.impl.SplitTestClass},
+ * and the code that runs each test method is put behind a split point so that it's
+ * only downloaded when needed. (The test class's constructor is still in the
+ * initial download, because GWT.create() has to return an instance.)</p>
+ *
+ * <p>The generated source depends only on the test class's name and test
+ * methods and on the split setting, so regenerating an unchanged class
+ * produces the same source, and GWT's cache of compiled units (keyed on a
+ * hash of the source) reuses the previous compile. The generator itself
+ * still runs on every rebind; skipping it would take GeneratorExt and
+ * RebindResult, which GWT 2.0 doesn't have.</p>
+ *
  * @author Brian Slesinsky
  */
 public class TestSourceGenerator extends Generator {
 
+  /** The configuration property that turns on code splitting. */
+  static final String SPLIT_PROPERTY = "testgal.splitSections";
+
   @Override
   public String generate(TreeLogger logger, GeneratorContext context, String requestedTypeName)
       throws UnableToCompleteException {
@@ -57,33 +84,26 @@ public class TestSourceGenerator extends Generator {
     String genTypeName = requestedType.getSimpleSourceName() + "_GEN";
     String genFullName = genPackageName + "." + genTypeName;
 
+    boolean split = isSplitEnabled(logger, context);
+
     SourceWriter out =
-        getSourceWriter(logger, context, genPackageName, genTypeName);
+        getSourceWriter(logger, context, genPackageName, genTypeName, split);
     if (out == null) {
       // already generated
       return genFullName;
     }
 
-    List<String> testMethods = findTestMethods(requestedType);
+    List<String> testMethods = findTestMethods(requestedType, expectedSuperClass);
 
     out.println("public String __getName() {");
     out.println("  return \"" + requestedTypeName + "\";");
     out.println("}");
     out.println();
-    out.println("public List<TestMethod> __getTestMethods() {");
-    out.indent();
-    out.println("List<TestMethod> result = new ArrayList<TestMethod>();");
-    for (String testMethod : testMethods) {
-      out.println("result.add(new TestMethod() {");
-      out.println("  public String getName() { return \"" + testMethod + "\"; }");
-      out.println("  public SingleTest makeTest() {");
-      out.println("    return new " + testMethod + "_GEN();");
-      out.println("  }");
-      out.println("});");
+    if (split) {
+      writeSplitTestMethods(out, requestedTypeName, testMethods);
+    } else {
+      writeTestMethods(out, testMethods);
     }
-    out.println("return result;");
-    out.outdent();
-    out.println("}");
 
     for (String testMethod : testMethods) {
       out.println("static class " + testMethod + "_GEN");
@@ -120,15 +140,155 @@ public class TestSourceGenerator extends Generator {
     return genFullName;
   }
 
-  private List<String> findTestMethods(JClassType classType) {
+  /**
+   * Writes a table of test methods that create each test directly.
+   */
+  private static void writeTestMethods(SourceWriter out, List<String> testMethods) {
+    out.println("private static final TestMethod[] __TEST_METHODS = {");
+    out.indent();
+    for (String testMethod : testMethods) {
+      out.println("new TestMethod() {");
+      out.println("  public String getName() { return \"" + testMethod + "\"; }");
+      out.println("  public SingleTest makeTest() {");
+      out.println("    return new " + testMethod + "_GEN();");
+      out.println("  }");
+      out.println("},");
+    }
+    out.outdent();
+    out.println("};");
+    out.println();
+    writeGetTestMethods(out);
+  }
+
+  /**
+   * Writes a __getTestMethods() method that returns the table of test methods.
+   * (The list can't be modified, since the table is shared.)
+   */
+  private static void writeGetTestMethods(SourceWriter out) {
+    out.println("public List<TestMethod> __getTestMethods() {");
+    out.println("  return Collections.unmodifiableList(Arrays.asList(__TEST_METHODS));");
+    out.println("}");
+    out.println();
+  }
+
+  /**
+   * Writes the SplitTestClass methods. The test methods can only be created
+   * through a factory that's instantiated after the split point loads, so that
+   * the compiler puts the tests themselves into that split point's fragment.
+   */
+  private static void writeSplitTestMethods(SourceWriter out, String requestedTypeName,
+      List<String> testMethods) {
+    out.println("private static SplitTestClass.Factory __factory;");
+    out.println("private static Throwable __loadFailure;");
+    out.println();
+    out.println("public boolean __isLoaded() {");
+    out.println("  return __factory != null;");
+    out.println("}");
+    out.println();
+    out.println("public void __load(final RunAsyncCallback callback) {");
+    out.indent();
+    out.println("if (__factory != null) {");
+    out.println("  callback.onSuccess();");
+    out.println("  return;");
+    out.println("}");
+    out.println("GWT.runAsync(new RunAsyncCallback() {");
+    out.println("  public void onSuccess() {");
+    out.println("    __factory = new __Factory();");
+    out.println("    __loadFailure = null;");
+    out.println("    callback.onSuccess();");
+    out.println("  }");
+    out.println("  public void onFailure(Throwable reason) {");
+    out.println("    __loadFailure = reason;");
+    out.println("    callback.onFailure(reason);");
+    out.println("  }");
+    out.println("});");
+    out.outdent();
+    out.println("}");
+    out.println();
+
+    out.println("private static final TestMethod[] __TEST_METHODS = {");
+    out.indent();
+    for (int i = 0; i < testMethods.size(); i++) {
+      out.println("new __SplitMethod(" + i + ", \"" + testMethods.get(i) + "\"),");
+    }
+    out.outdent();
+    out.println("};");
+    out.println();
+    writeGetTestMethods(out);
+
+    out.println("static class __SplitMethod implements TestMethod {");
+    out.indent();
+    out.println("private final int index;");
+    out.println("private final String name;");
+    out.println("__SplitMethod(int index, String name) {");
+    out.println("  this.index = index;");
+    out.println("  this.name = name;");
+    out.println("}");
+    out.println("public String getName() { return name; }");
+    out.println("public SingleTest makeTest() {");
+    out.println("  if (__factory == null) {");
+    out.println("    throw new IllegalStateException(\"The code for " + requestedTypeName
+        + " hasn't been loaded\"");
+    out.println("        + (__loadFailure == null ? \"\" : \": \" + __loadFailure));");
+    out.println("  }");
+    out.println("  return __factory.makeTest(index);");
+    out.println("}");
+    out.outdent();
+    out.println("}");
+    out.println();
+
+    out.println("static class __Factory implements SplitTestClass.Factory {");
+    out.indent();
+    out.println("public SingleTest makeTest(int index) {");
+    out.indent();
+    out.println("switch (index) {");
+    for (int i = 0; i < testMethods.size(); i++) {
+      out.println("  case " + i + ": return new " + testMethods.get(i) + "_GEN();");
+    }
+    out.println("  default: throw new IllegalArgumentException(\"no test method at: \" + index);");
+    out.println("}");
+    out.outdent();
+    out.println("}");
+    out.outdent();
+    out.println("}");
+    out.println();
+  }
+
+  /**
+   * Returns true if the gallery module turned on code splitting.
+   */
+  private static boolean isSplitEnabled(TreeLogger logger, GeneratorContext context) {
+    try {
+      ConfigurationProperty property =
+          context.getPropertyOracle().getConfigurationProperty(SPLIT_PROPERTY);
+      List<String> values = property.getValues();
+      return !values.isEmpty() && Boolean.valueOf(values.get(0));
+    } catch (BadPropertyValueException e) {
+      // not defined, probably because the module uses an old copy of testgal-extra.xml
+      logger.log(TreeLogger.Type.DEBUG, "property not defined: " + SPLIT_PROPERTY);
+      return false;
+    }
+  }
+
+  /**
+   * Returns the names of the test methods in a class and its superclasses,
+   * stopping at the given base class. Like JUnit, this lists the class's own
+   * methods first, then each superclass's, skipping methods that were overridden.
+   */
+  static List<String> findTestMethods(JClassType classType, JClassType baseClass) {
     List<String> result = new ArrayList<String>();
+    Set<String> seen = new HashSet<String>();
 
-    // TODO(skybrian): handle inheritance
-    for (JMethod method : classType.getMethods()) {
-      if (method.getName().startsWith("test") &&
-          method.isPublic() &&
-          method.getParameters().length == 0) {
-        result.add(method.getName());
+    for (JClassType type = classType; type != null && !type.equals(baseClass);
+        type = type.getSuperclass()) {
+      for (JMethod method : type.getMethods()) {
+        if (method.getName().startsWith("test") &&
+            method.isPublic() &&
+            !method.isStatic() &&
+            method.getParameters().length == 0 &&
+            seen.add(method.getName())) {
+          result.add(method.getName());
+        }
       }
     }
 
@@ -146,7 +306,7 @@ public class TestSourceGenerator extends Generator {
   }
 
   private static SourceWriter getSourceWriter(TreeLogger logger, GeneratorContext context,
-      String genPackageName, String genTypeName) {
+      String genPackageName, String genTypeName, boolean split) {
 
     PrintWriter printWriter = context.tryCreate(logger, genPackageName, genTypeName);
     if (printWriter == null) {
@@ -161,10 +321,18 @@ public class TestSourceGenerator extends Generator {
     factory.addImport("com.google.gwt.testgal.client.impl.TestClass");
     factory.addImport("com.google.gwt.testgal.client.impl.TestMethod");
     factory.addImport("com.google.gwt.testgal.client.impl.SingleTest");
+    factory.addImport("java.util.Arrays");
+    factory.addImport("java.util.Collections");
     factory.addImport("java.util.List");
-    factory.addImport("java.util.ArrayList");
     factory.addImport("junit.framework.TestCase");
-    factory.addImplementedInterface("TestClass");
+    if (split) {
+      factory.addImport("com.google.gwt.core.client.GWT");
+      factory.addImport("com.google.gwt.core.client.RunAsyncCallback");
+      factory.addImport("com.google.gwt.testgal.client.impl.SplitTestClass");
+      factory.addImplementedInterface("SplitTestClass");
+    } else {
+      factory.addImplementedInterface("TestClass");
+    }
 
     return factory.createSourceWriter(context, printWriter);
   }
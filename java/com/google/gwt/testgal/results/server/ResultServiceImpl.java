@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.results.server;
+
+import com.google.gwt.testgal.results.shared.ResultService;
+import com.google.gwt.testgal.results.shared.TestResult;
+import com.google.gwt.user.server.rpc.RemoteServiceServlet;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+
+/**
+ * Saves the results uploaded by test galleries using a {@link ResultStore}.
+ *
+ * <p>The results are saved in the directory given by the servlet's "resultsDir"
+ * init parameter, or else by the "testgal.resultsDir" system property.
+ * The default is a directory named "testgal-results" in the server's current
+ * directory.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class ResultServiceImpl extends RemoteServiceServlet implements ResultService {
+
+  private ResultStore store;
+
+  @Override
+  public void init() throws ServletException {
+    super.init();
+    String dir = getInitParameter("resultsDir");
+    if (dir == null) {
+      dir = System.getProperty("testgal.resultsDir", "testgal-results");
+    }
+    store = new ResultStore(new File(dir));
+  }
+
+  public void saveResults(String runId, TestResult[] results) {
+    try {
+      store.save(runId, results);
+    } catch (IOException e) {
+      log("unable to save test results for run " + runId, e);
+      throw new RuntimeException("unable to save test results", e);
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.results.server;
+
+import com.google.gwt.testgal.results.shared.TestResult;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Saves test results in a directory, with one file for each gallery run.
+ *
+ * <p>Each file has one line per test, with tab-separated fields: the class name,
+ * method name, status, elapsed time, the phase times (such as
+ * "setUp=2;test method=5"), and then one field for each output event.
+ * Tabs, newlines, and backslashes in the fields are escaped with backslashes.
+ * A batch is appended to its run's file, so a run may be uploaded in any number
+ * of batches.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class ResultStore {
+
+  private static final Pattern VALID_RUN_ID = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+  private static final String SUFFIX = ".tsv";
+  private static final int FIXED_FIELDS = 5;
+
+  private final File directory;
+
+  public ResultStore(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Appends results to the file for the given run, creating it if needed.
+   * @throws IllegalArgumentException if the run id isn't valid
+   */
+  public synchronized void save(String runId, TestResult[] results) throws IOException {
+    File file = getFile(runId);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("can't create directory: " + directory);
+    }
+
+    StringBuilder text = new StringBuilder();
+    for (TestResult result : results) {
+      appendLine(text, result);
+    }
+
+    Writer out = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+    try {
+      out.write(text.toString());
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns all the results saved for a run, in the order they were saved.
+   * @throws IllegalArgumentException if the run id isn't valid
+   */
+  public synchronized List<TestResult> load(String runId) throws IOException {
+    File file = getFile(runId);
+    List<TestResult> result = new ArrayList<TestResult>();
+    if (!file.exists()) {
+      return result;
+    }
+
+    BufferedReader in = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        result.add(parseLine(line));
+      }
+    } finally {
+      in.close();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of all the runs that were saved, in sorted order.
+   */
+  public synchronized List<String> listRuns() {
+    List<String> result = new ArrayList<String>();
+    String[] names = directory.list();
+    if (names == null) {
+      return result;
+    }
+    for (String name : names) {
+      if (name.endsWith(SUFFIX)) {
+        result.add(name.substring(0, name.length() - SUFFIX.length()));
+      }
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  static boolean isValidRunId(String runId) {
+    return runId != null && VALID_RUN_ID.matcher(runId).matches();
+  }
+
+  // ======== end of public methods ========
+
+  private File getFile(String runId) {
+    if (!isValidRunId(runId)) {
+      throw new IllegalArgumentException("invalid run id: " + runId);
+    }
+    return new File(directory, runId + SUFFIX);
+  }
+
+  private static void appendLine(StringBuilder out, TestResult result) {
+    appendField(out, result.getClassName());
+    out.append('\t');
+    appendField(out, result.getMethodName());
+    out.append('\t');
+    appendField(out, result.getStatus());
+    out.append('\t');
+    out.append(result.getElapsedMillis());
+    out.append('\t');
+
+    StringBuilder phases = new StringBuilder();
+    String[] names = result.getPhaseNames();
+    long[] millis = result.getPhaseMillis();
+    for (int i = 0; i < names.length; i++) {
+      if (i > 0) {
+        phases.append(';');
+      }
+      phases.append(names[i]).append('=').append(millis[i]);
+    }
+    appendField(out, phases.toString());
+
+    for (String event : result.getOutput()) {
+      out.append('\t');
+      appendField(out, event);
+    }
+    out.append('\n');
+  }
+
+  private static void appendField(StringBuilder out, String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        default:
+          out.append(c);
+      }
+    }
+  }
+
+  private static TestResult parseLine(String line) throws IOException {
+    String[] fields = line.split("\t", -1);
+    if (fields.length < FIXED_FIELDS) {
+      throw new IOException("not enough fields in saved result: " + line);
+    }
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = unescape(fields[i]);
+    }
+
+    String[] phases = fields[4].length() == 0 ? new String[0] : fields[4].split(";");
+    String[] phaseNames = new String[phases.length];
+    long[] phaseMillis = new long[phases.length];
+    try {
+      for (int i = 0; i < phases.length; i++) {
+        int equals = phases[i].lastIndexOf('=');
+        phaseNames[i] = phases[i].substring(0, equals);
+        phaseMillis[i] = Long.parseLong(phases[i].substring(equals + 1));
+      }
+      return new TestResult(fields[0], fields[1], fields[2], Long.parseLong(fields[3]),
+          phaseNames, phaseMillis,
+          Arrays.asList(fields).subList(FIXED_FIELDS, fields.length).toArray(new String[0]));
+    } catch (RuntimeException e) {
+      throw new IOException("can't parse saved result: " + line);
+    }
+  }
+
+  private static String unescape(String field) {
+    if (field.indexOf('\\') < 0) {
+      return field;
+    }
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c == '\\' && i + 1 < field.length()) {
+        i++;
+        char next = field.charAt(i);
+        switch (next) {
+          case 't':
+            out.append('\t');
+            break;
+          case 'n':
+            out.append('\n');
+            break;
+          case 'r':
+            out.append('\r');
+            break;
+          default:
+            out.append(next);
+        }
+      } else {
+        out.append(c);
+      }
+    }
+    return out.toString();
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.results.shared;
+
+import com.google.gwt.user.client.rpc.RemoteService;
+import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
+
+/**
+ * Receives the results of a gallery's tests. A gallery uploads its results
+ * in batches as the tests finish, and they're saved under the run's id.
+ *
+ * @author Brian Slesinsky
+ */
+@RemoteServiceRelativePath("results")
+public interface ResultService extends RemoteService {
+
+  /**
+   * Saves a batch of results.
+   * @param runId identifies the gallery run the results came from.
+   * (It may contain only letters, digits, '-' and '_'.)
+   */
+  void saveResults(String runId, TestResult[] results);
+}
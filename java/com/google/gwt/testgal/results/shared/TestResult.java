@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.results.shared;
+
+import java.io.Serializable;
+
+/**
+ * The result of running one test method, as uploaded to the server.
+ *
+ * <p>The output is kept as one line of text per event (for example,
+ * "heading: Some heading") so that runs can be compared as text.</p>
+ *
+ * @author Brian Slesinsky
+ */
+public class TestResult implements Serializable {
+
+  private String className;
+  private String methodName;
+  private String status;
+  private long elapsedMillis;
+  private String[] phaseNames;
+  private long[] phaseMillis;
+  private String[] output;
+
+  /** For serialization only. */
+  TestResult() {}
+
+  /**
+   * @param phaseNames the phases the test went through, such as "setUp"
+   * @param phaseMillis the time spent in each phase, in the same order
+   * @param output a description of each event the test sent to the result page
+   */
+  public TestResult(String className, String methodName, String status, long elapsedMillis,
+      String[] phaseNames, long[] phaseMillis, String[] output) {
+    if (phaseNames.length != phaseMillis.length) {
+      throw new IllegalArgumentException("phase names and times must be the same length");
+    }
+    this.className = className;
+    this.methodName = methodName;
+    this.status = status;
+    this.elapsedMillis = elapsedMillis;
+    this.phaseNames = phaseNames;
+    this.phaseMillis = phaseMillis;
+    this.output = output;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /** The test's final status, such as "PASSED" or "FAILED". */
+  public String getStatus() {
+    return status;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public String[] getPhaseNames() {
+    return phaseNames;
+  }
+
+  public long[] getPhaseMillis() {
+    return phaseMillis;
+  }
+
+  public String[] getOutput() {
+    return output;
+  }
+
+  @Override
+  public String toString() {
+    return className + "." + methodName + ": " + status;
+  }
+}
@@ -18,16 +18,32 @@ package com.google.gwt.testgal;
 import com.google.gwt.junit.tools.GWTTestSuite;
 import com.google.gwt.testgal.client.impl.GalleryRunnerTest;
 import com.google.gwt.testgal.client.impl.ContentsPageTest;
+import com.google.gwt.testgal.client.impl.ElementDiffTest;
 import com.google.gwt.testgal.client.impl.ElementTreeViewTest;
 import com.google.gwt.testgal.client.impl.LeftSideViewTest;
 import com.google.gwt.testgal.client.impl.MethodResultPageTest;
+import com.google.gwt.testgal.client.impl.MethodResultRecorderTest;
+import com.google.gwt.testgal.client.impl.OutputLogTest;
+import com.google.gwt.testgal.client.impl.PhaseTimesTest;
 import com.google.gwt.testgal.client.impl.ProgressBarTest;
+import com.google.gwt.testgal.client.impl.ResultUploaderTest;
+import com.google.gwt.testgal.client.impl.RunOrderTest;
 import com.google.gwt.testgal.client.impl.SectionResultPageTest;
+import com.google.gwt.testgal.client.impl.SharderTest;
 import com.google.gwt.testgal.client.impl.StatusViewTest;
+import com.google.gwt.testgal.client.impl.TestHistoryTest;
+import com.google.gwt.testgal.client.impl.TestSelectorTest;
 import com.google.gwt.testgal.client.impl.TestSuiteTest;
+import com.google.gwt.testgal.client.impl.ThrottledProgressListenerTest;
+import com.google.gwt.testgal.client.impl.util.DiffTest;
+import com.google.gwt.testgal.client.impl.util.SchedulerTest;
+import com.google.gwt.testgal.client.impl.util.TraceLogTest;
 import com.google.gwt.testgal.client.AsyncTest;
+import com.google.gwt.testgal.client.InheritedTest;
 import com.google.gwt.testgal.shared.EmptyMethodTest;
 import com.google.gwt.testgal.api.shared.TestLocalTest;
+import com.google.gwt.testgal.jvm.JvmTestRunnerTest;
+import com.google.gwt.testgal.results.server.ResultStoreTest;
 
 import junit.framework.Test;
 
@@ -56,20 +72,42 @@ public class AllTests {
     result.addTestSuite(ContentsPageTest.class);
     result.addTestSuite(LeftSideViewTest.class);
     result.addTestSuite(StatusViewTest.class);
+    result.addTestSuite(ThrottledProgressListenerTest.class);
+    result.addTestSuite(TestHistoryTest.class);
+    result.addTestSuite(RunOrderTest.class);
+    result.addTestSuite(SharderTest.class);
+    result.addTestSuite(TestSelectorTest.class);
 
     result.addTestSuite(SectionResultPageTest.class);
     result.addTestSuite(MethodResultPageTest.class);
+    result.addTestSuite(MethodResultRecorderTest.class);
+    result.addTestSuite(OutputLogTest.class);
+    result.addTestSuite(PhaseTimesTest.class);
+    result.addTestSuite(ResultUploaderTest.class);
     result.addTestSuite(ElementTreeViewTest.class);
+    result.addTestSuite(ElementDiffTest.class);
     result.addTestSuite(GalleryRunnerTest.class);
 
+    // testgal.client.impl.util
+    result.addTestSuite(SchedulerTest.class);
+    result.addTestSuite(TraceLogTest.class);
+    result.addTestSuite(DiffTest.class);
+
     // testgal.client
     result.addTestSuite(AsyncTest.class);
+    result.addTestSuite(InheritedTest.class);
 
     // testgal.shared
     result.addTestSuite(EmptyMethodTest.class);
 
     // testgal.testing
     result.addTestSuite(TestLocalTest.class);
+
+    // testgal.jvm (not in the gallery because it doesn't run in a browser)
+    result.addTestSuite(JvmTestRunnerTest.class);
+
+    // testgal.results.server (also runs in the JVM)
+    result.addTestSuite(ResultStoreTest.class);
     return result;
   }
 
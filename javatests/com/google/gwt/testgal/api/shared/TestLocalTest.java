@@ -46,4 +46,47 @@ public class TestLocalTest extends TestCase {
 
     assertEquals("default", local.get(someTest, "default"));
   }
+
+  public void testCantSetTwice() throws Exception {
+    TestLocalTest someTest = new TestLocalTest();
+    local.set(someTest, "hello");
+    try {
+      local.set(someTest, "again");
+      fail("expected an exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals("hello", local.get(someTest, "default"));
+  }
+
+  public void testCantUnsetWrongValue() throws Exception {
+    TestLocalTest someTest = new TestLocalTest();
+    local.set(someTest, "hello");
+    try {
+      local.unset(someTest, "goodbye");
+      fail("expected an exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals("hello", local.get(someTest, "default"));
+  }
+
+  public void testManyTests() throws Exception {
+    TestLocalTest[] tests = new TestLocalTest[100];
+    String[] values = new String[tests.length];
+    for (int i = 0; i < tests.length; i++) {
+      tests[i] = new TestLocalTest();
+      values[i] = "value" + i;
+      local.set(tests[i], values[i]);
+    }
+    for (int i = 0; i < tests.length; i++) {
+      assertEquals(values[i], local.get(tests[i], "default"));
+    }
+    for (int i = 0; i < tests.length; i += 2) {
+      local.unset(tests[i], values[i]);
+    }
+    for (int i = 0; i < tests.length; i++) {
+      assertEquals(i % 2 == 0 ? "default" : values[i], local.get(tests[i], "default"));
+    }
+  }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client;
+
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+/**
+ * Test methods that are shared by subclasses. TestGal should run them as
+ * part of each subclass's section.
+ *
+ * @see InheritedTest
+ *
+ * @author Brian Slesinsky
+ */
+public abstract class AbstractSharedTest extends TestGalTestCase {
+
+  /**
+   * Returns something for the shared tests to check.
+   */
+  protected abstract String makeGreeting();
+
+  public void testGreetingIsNotEmpty() throws Exception {
+    out.assertEquals("The greeting from the subclass", "hello", makeGreeting());
+  }
+
+  public void testOverridden() throws Exception {
+    fail("This should have been overridden by the subclass.");
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client;
+
+/**
+ * Demonstrates that TestGal runs test methods inherited from a superclass.
+ * This section should include testGreetingIsNotEmpty from the superclass,
+ * and testOverridden only once.
+ *
+ * @author Brian Slesinsky
+ */
+public class InheritedTest extends AbstractSharedTest {
+
+  @Override
+  protected String makeGreeting() {
+    return "hello";
+  }
+
+  @Override
+  public void testOverridden() throws Exception {
+    out.paragraph("The subclass's version of this test ran.");
+  }
+
+  public void testOwnMethod() throws Exception {
+    out.paragraph("This test is declared in the subclass.");
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.testgal.client.impl.ElementDiff.Change;
+import com.google.gwt.testgal.client.impl.ElementDiff.Kind;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Verifies that {@link ElementDiff} finds the differences between two DOM trees,
+ * and shows how they're displayed.
+ *
+ * @author Brian Slesinsky
+ */
+public class ElementDiffTest extends TestGalTestCase {
+
+  public void testSameElements() throws Exception {
+    List<Change> changes = compare("<div><b>hello</b></div>", "<div><b>hello</b></div>");
+    assertEquals(1, changes.size());
+    assertEquals(Kind.SAME, changes.get(0).getKind());
+    assertEquals(0, changes.get(0).countChanges());
+    assertTrue(changes.get(0).getChildren().isEmpty());
+  }
+
+  public void testDifferentTags() throws Exception {
+    List<Change> changes = compare("<div>hello</div>", "<span>hello</span>");
+    assertEquals(2, changes.size());
+    assertEquals(Kind.REMOVED, changes.get(0).getKind());
+    assertEquals(Kind.ADDED, changes.get(1).getKind());
+  }
+
+  public void testChangedText() throws Exception {
+    Change top = compareOne("<div><b>hello</b><i>there</i></div>",
+        "<div><b>goodbye</b><i>there</i></div>");
+    assertEquals(Kind.CHANGED, top.getKind());
+    assertEquals(1, top.countChanges());
+
+    List<Change> children = top.getChildren();
+    assertEquals(2, children.size());
+    assertEquals(Kind.CHANGED, children.get(0).getKind());
+    assertEquals(Kind.SAME, children.get(1).getKind());
+    assertEquals(Kind.CHANGED, children.get(0).getChildren().get(0).getKind());
+  }
+
+  public void testChangedAttribute() throws Exception {
+    Change top = compareOne("<div class=\"a\" title=\"same\">x</div>",
+        "<div class=\"b\" title=\"same\" dir=\"ltr\">x</div>");
+    assertEquals(Kind.CHANGED, top.getKind());
+    assertEquals(1, top.countChanges());
+    assertEquals("[class, dir]", top.getChangedAttributes().toString());
+
+    out.snapshot(makeView(top), "A div whose attributes changed.");
+  }
+
+  public void testInsertedAndRemovedChildren() throws Exception {
+    Change top = compareOne("<ul><li>one</li><li>two</li><li id=\"x\">three</li></ul>",
+        "<ul><li>one</li><li>two</li><li>new</li><p>four</p></ul>");
+    assertEquals(Kind.CHANGED, top.getKind());
+
+    List<Change> children = top.getChildren();
+    assertEquals(Kind.SAME, children.get(0).getKind());
+    assertEquals(Kind.SAME, children.get(1).getKind());
+    assertEquals(3, top.countChanges());
+
+    out.snapshot(makeView(top), "A list where one item was removed and two were added. "
+        + "Unchanged items are collapsed.");
+  }
+
+  // ========= end of tests ==============
+
+  private static Change compareOne(String expectedHtml, String actualHtml) {
+    List<Change> changes = compare(expectedHtml, actualHtml);
+    assertEquals(1, changes.size());
+    return changes.get(0);
+  }
+
+  private static List<Change> compare(String expectedHtml, String actualHtml) {
+    return ElementDiff.compare(fromHtml(expectedHtml), fromHtml(actualHtml));
+  }
+
+  private static ElementTreeView makeView(Change change) {
+    ElementTreeView view = new ElementTreeView(Collections.singletonList(change));
+    view.setVisible(true);
+    return view;
+  }
+
+  private static Element fromHtml(String htmlFragment) {
+    DivElement temp = Document.get().createDivElement();
+    temp.setInnerHTML(htmlFragment);
+    return temp.getFirstChildElement();
+  }
+}
@@ -43,6 +43,19 @@ public class GalleryRequestBuilderTest extends TestGalTestCase {
     assertEquals("http://example.com?run=foo.bar", anchor.getHref());
   }
 
+  public void testRunOneMethod() {
+    GalleryRequestBuilder galleryRequestBuilder = new GalleryRequestBuilder(urlBuilder);
+    assertEquals("http://example.com?run=foo.bar%23testOne",
+        galleryRequestBuilder.setRunOne("foo.bar", "testOne").buildUrl());
+  }
+
+  public void testRunFailed() {
+    urlBuilder.setParameter("run", "abc.def");
+    GalleryRequestBuilder galleryRequestBuilder = new GalleryRequestBuilder(urlBuilder);
+    assertEquals("http://example.com?only=failed", galleryRequestBuilder.setRunFailed().buildUrl());
+    assertEquals("http://example.com", galleryRequestBuilder.setRunAll().buildUrl());
+  }
+
   public void testRunAll() {
     urlBuilder.setParameter("run", "abc.def");
     GalleryRequestBuilder galleryRequestBuilder = new GalleryRequestBuilder(urlBuilder);
@@ -72,4 +85,21 @@ public class GalleryRequestBuilderTest extends TestGalTestCase {
     assertEquals("http://example.com", anchor.getHref());
     assertEquals("bar baz", anchor.getStyleName());
   }
+
+  public void testShard() {
+    GalleryRequestBuilder galleryRequestBuilder = new GalleryRequestBuilder(urlBuilder);
+    String url = galleryRequestBuilder.setShard(2, 8).buildUrl();
+    // (the order of the parameters isn't specified)
+    assertTrue(url, url.equals("http://example.com?shard=2&shards=8")
+        || url.equals("http://example.com?shards=8&shard=2"));
+    assertEquals("http://example.com", galleryRequestBuilder.setUnsharded().buildUrl());
+  }
+
+  public void testRunOneIsNotSharded() {
+    urlBuilder.setParameter("shard", "2");
+    urlBuilder.setParameter("shards", "8");
+    GalleryRequestBuilder galleryRequestBuilder = new GalleryRequestBuilder(urlBuilder);
+    assertEquals("http://example.com?run=foo.bar",
+        galleryRequestBuilder.setRunOne("foo.bar").buildUrl());
+  }
 }
@@ -55,4 +55,77 @@ public class GalleryRequestTest extends TestGalTestCase {
     assertTrue(galleryRequest.includes("baz.blat"));
     assertFalse(galleryRequest.includes("something.else"));
   }
+
+  public void testIncludes_method() {
+    paramMap.put("run", Arrays.asList(new String[] { "foo.bar#testOne" }));
+    GalleryRequest galleryRequest = new GalleryRequest(paramMap);
+    assertTrue(galleryRequest.includes("foo.bar"));
+    assertTrue(galleryRequest.includes("foo.bar", "testOne"));
+    assertFalse(galleryRequest.includes("foo.bar", "testTwo"));
+    assertFalse(galleryRequest.includes("something.else"));
+  }
+
+  public void testIncludes_glob() {
+    paramMap.put("run", Arrays.asList(new String[] { "foo.*" }));
+    GalleryRequest galleryRequest = new GalleryRequest(paramMap);
+    assertTrue(galleryRequest.includes("foo.bar"));
+    assertTrue(galleryRequest.includes("foo.bar", "testOne"));
+    assertFalse(galleryRequest.includes("something.else"));
+  }
+
+  public void testIncludes_skip() {
+    paramMap.put("skip", Arrays.asList(new String[] { "foo.bar#*Slow", "baz.*" }));
+    GalleryRequest galleryRequest = new GalleryRequest(paramMap);
+    assertTrue(galleryRequest.includes("foo.bar"));
+    assertTrue(galleryRequest.includes("foo.bar", "testFast"));
+    assertFalse(galleryRequest.includes("foo.bar", "testSlow"));
+    assertFalse(galleryRequest.includes("baz.blat"));
+    assertTrue(galleryRequest.includes("something.else", "testSlow"));
+  }
+
+  public void testFailedOnly() {
+    assertFalse(new GalleryRequest(paramMap).isFailedOnly());
+    paramMap.put("only", Arrays.asList(new String[] { "failed" }));
+    assertTrue(new GalleryRequest(paramMap).isFailedOnly());
+  }
+
+  public void testRunOrder_notPresent() {
+    assertNull(new GalleryRequest(paramMap).getRunOrder());
+  }
+
+  public void testRunOrder_failedFirst() {
+    paramMap.put("order", Arrays.asList(new String[] { "failed" }));
+    assertSame(RunOrder.FAILED_FIRST, new GalleryRequest(paramMap).getRunOrder());
+  }
+
+  public void testRunOrder_randomWithSeed() {
+    paramMap.put("order", Arrays.asList(new String[] { "random" }));
+    assertEquals("random(seed=5)", new GalleryRequest(paramMap, 5).getRunOrder().toString());
+    paramMap.put("seed", Arrays.asList(new String[] { "42" }));
+    assertEquals("random(seed=42)", new GalleryRequest(paramMap, 5).getRunOrder().toString());
+  }
+
+  public void testShard_notPresent() {
+    GalleryRequest galleryRequest = new GalleryRequest(paramMap);
+    assertFalse(galleryRequest.isSharded());
+    assertEquals(1, galleryRequest.getShard());
+    assertEquals(1, galleryRequest.getShardCount());
+  }
+
+  public void testShard_present() {
+    paramMap.put("shard", Arrays.asList(new String[] { "3" }));
+    paramMap.put("shards", Arrays.asList(new String[] { "8" }));
+    GalleryRequest galleryRequest = new GalleryRequest(paramMap);
+    assertTrue(galleryRequest.isSharded());
+    assertEquals(3, galleryRequest.getShard());
+    assertEquals(8, galleryRequest.getShardCount());
+  }
+
+  public void testShard_invalid() {
+    paramMap.put("shard", Arrays.asList(new String[] { "9" }));
+    paramMap.put("shards", Arrays.asList(new String[] { "8" }));
+    assertFalse(new GalleryRequest(paramMap).isSharded());
+    paramMap.put("shard", Arrays.asList(new String[] { "one" }));
+    assertFalse(new GalleryRequest(paramMap).isSharded());
+  }
 }
@@ -15,13 +15,14 @@
  */
 package com.google.gwt.testgal.client.impl;
 
+import com.google.gwt.testgal.client.impl.util.Lists;
 import com.google.gwt.testgal.client.testing.FakePageHistory;
 import com.google.gwt.testgal.client.testing.FakeTests;
 import com.google.gwt.testgal.client.testing.TestGalTestCase;
-import com.google.gwt.user.client.ui.Tree;
-import com.google.gwt.user.client.ui.TreeItem;
 import com.google.gwt.user.client.ui.Widget;
 
+import java.util.List;
+
 /**
  * Verifies that we can display a progress bar and a tree of tests
  * using {@link LeftSideView}.
@@ -54,7 +55,7 @@ public class LeftSideViewTest extends TestGalTestCase {
     TestSuite suite = fakeTests.makeSuiteWithOnePassingTest();
     LeftSideView view = makeLeftSide(suite);
 
-    selectSection(view, 0);
+    selectSection(view, suite, 0);
 
     out.assertSame("right side should show selected section",
         getSectionResultPage(suite, 0), rightSide.getCurrentPage());
@@ -64,28 +65,46 @@ public class LeftSideViewTest extends TestGalTestCase {
     TestSuite suite = fakeTests.makeSuiteWithOnePassingTest();
     LeftSideView view = makeLeftSide(suite);
 
-    selectMethod(view, 0, 0);
+    selectMethod(view, suite, 0, 0);
 
     out.assertSame("right side should show selected method",
         getMethodResultPage(suite, 0, 0), rightSide.getCurrentPage());
   }
 
+  public void testOnlySomeRowsAreRendered() throws Exception {
+    List<TestMethod> methods = Lists.newList();
+    for (int i = 0; i < 1000; i++) {
+      methods.add(TestMethods.makeTestThatPasses("test" + i));
+    }
+    Section section = new Section("com.google.example.BigTest", null, methods);
+    TestSuite suite = fakeTests.startSuite().addSection(section).build();
+    LeftSideView view = makeLeftSide(suite);
+
+    assertEquals(1002, view.findRow(section.getMethodResultPageId(methods.get(999))) + 1);
+    assertTrue("rendered too many rows: " + view.getRenderedRowCount(),
+        view.getRenderedRowCount() < 100);
+
+    selectMethod(view, suite, 0, 999);
+    out.assertSame("right side should show selected method",
+        getMethodResultPage(suite, 0, 999), rightSide.getCurrentPage());
+  }
+
   // =============== end of tests ==============
 
   private LeftSideView makeLeftSide(TestSuite suite) {
     return new LeftSideView(suite, history);
   }
 
-  private static void selectSection(LeftSideView view, int sectionIndex) {
-    Tree tree = view.getTree();
-    TreeItem item = tree.getItem(0).getChild(sectionIndex);
-    tree.setSelectedItem(item);
+  private static void selectSection(LeftSideView view, TestSuite suite, int sectionIndex) {
+    Section section = suite.getSections().get(sectionIndex);
+    view.clickRow(view.findRow(section.getResultPageId()));
   }
 
-  private static void selectMethod(LeftSideView view, int sectionIndex, int methodIndex) {
-    Tree tree = view.getTree();
-    TreeItem item = tree.getItem(0).getChild(sectionIndex).getChild(methodIndex);
-    tree.setSelectedItem(item);
+  private static void selectMethod(LeftSideView view, TestSuite suite, int sectionIndex,
+      int methodIndex) {
+    Section section = suite.getSections().get(sectionIndex);
+    TestMethod method = section.getMethods().get(methodIndex);
+    view.clickRow(view.findRow(section.getMethodResultPageId(method)));
   }
 
   private Widget getSectionResultPage(TestSuite suite, int sectionIndex) {
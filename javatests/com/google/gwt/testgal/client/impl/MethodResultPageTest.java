@@ -164,6 +164,23 @@ public class MethodResultPageTest extends TestGalTestCase {
     finishPage("The result of a test that failed due to a difference between two strings.");
   }
 
+  public void testFailedMultiLineStringComparison() throws Exception {
+    startTestMethod();
+    StringBuilder expected = new StringBuilder();
+    StringBuilder actual = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      expected.append("line " + i + "\n");
+      if (i == 20) {
+        actual.append("line twenty, which is longer than the other lines\n");
+      } else if (i != 40) {
+        actual.append("line " + i + "\n");
+      }
+    }
+    comparisonFailed(expected.toString(), actual.toString(), "Multi-line strings that differ");
+    finishPage("The result of a test that failed due to a difference between two long strings. "
+        + "Unchanged lines are collapsed.");
+  }
+
   public void testUnexpectedNullComparison() throws Exception {
     startTestMethod();
     comparisonFailed("This is A.", null, "Shouldn't be null");
@@ -203,6 +220,24 @@ public class MethodResultPageTest extends TestGalTestCase {
     page.locationChanged(EventLocation.TEST_METHOD);
   }
 
+  public void testPhaseTimes() throws Exception {
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 1000);
+    times.enter(EventLocation.CONSTRUCTOR, 1001);
+    times.enter(EventLocation.SETUP, 1003);
+    times.enter(EventLocation.TEST_METHOD, 1010);
+    times.enter(EventLocation.EVENT_HANDLER, 1050);
+    times.enter(EventLocation.TEARDOWN, 1250);
+    times.enter(EventLocation.TESTGAL, 1252);
+    times.finish(1255);
+
+    startTestMethod();
+    page.wroteParagraph("some output");
+    page.locationChanged(EventLocation.TESTGAL);
+    page.phasesTimed(times);
+    page.testFinished(times.getTotalMillis());
+    out.snapshot(page, "An async test, showing how long it spent in each phase.");
+  }
+
   private void finishPage(String caption) {
     page.locationChanged(EventLocation.TESTGAL);
     page.testFinished(12345);
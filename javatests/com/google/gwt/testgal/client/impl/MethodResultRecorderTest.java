@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+import com.google.gwt.user.client.ui.Label;
+
+/**
+ * Verifies that a {@link MethodResultRecorder} creates the same page
+ * as sending the results to a {@link MethodResultPage} directly.
+ *
+ * @author Brian Slesinsky
+ */
+public class MethodResultRecorderTest extends TestGalTestCase {
+
+  public void testPageIsCreatedOnce() throws Exception {
+    MethodResultRecorder recorder = new MethodResultRecorder();
+    assertSame(recorder.makePage(), recorder.makePage());
+  }
+
+  public void testRecordedOutputIsReplayed() throws Exception {
+    MethodResultRecorder recorder = new MethodResultRecorder();
+    sendOutput(recorder, new Label("before"));
+
+    MethodResultPage expected = new MethodResultPage();
+    sendOutput(expected, new Label("before"));
+
+    out.snapshot(recorder.makePage(), "A page created after the test finished.");
+    assertEquals(expected.getElement().getInnerHTML(),
+        recorder.makePage().getElement().getInnerHTML());
+  }
+
+  public void testSnapshotIsTakenWhenRecorded() throws Exception {
+    MethodResultRecorder recorder = new MethodResultRecorder();
+    Label label = new Label("before");
+    sendOutput(recorder, label);
+    label.setText("after");
+
+    MethodResultPage expected = new MethodResultPage();
+    sendOutput(expected, new Label("before"));
+
+    assertEquals(expected.getElement().getInnerHTML(),
+        recorder.makePage().getElement().getInnerHTML());
+  }
+
+  public void testOutputAfterPageIsCreated() throws Exception {
+    MethodResultRecorder recorder = new MethodResultRecorder();
+    recorder.testStarted(TestMethods.makeTestThatPasses("testSomething"));
+    recorder.wroteParagraph("first");
+    MethodResultPage page = (MethodResultPage) recorder.makePage();
+    recorder.wroteParagraph("second");
+    recorder.testFinished(0);
+
+    MethodResultPage expected = new MethodResultPage();
+    expected.testStarted(TestMethods.makeTestThatPasses("testSomething"));
+    expected.wroteParagraph("first");
+    expected.wroteParagraph("second");
+    expected.testFinished(0);
+
+    assertEquals(expected.getElement().getInnerHTML(), page.getElement().getInnerHTML());
+  }
+
+  // ======== end of tests ========
+
+  private static void sendOutput(ResultListener listener, Label label) {
+    listener.testStarted(TestMethods.makeTestThatPasses("testSomething"));
+    listener.locationChanged(EventLocation.TEST_METHOD);
+    listener.wroteHeading("A heading");
+    listener.wroteParagraph("A paragraph.");
+    listener.tookSnapshot(label, "A label.");
+    listener.compared("expected", "actual", "A comparison.");
+    listener.locationChanged(EventLocation.TEARDOWN);
+    listener.testFinished(0);
+  }
+}
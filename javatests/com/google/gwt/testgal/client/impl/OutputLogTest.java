@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+import com.google.gwt.user.client.ui.Label;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that an {@link OutputLog} replays the events that were recorded.
+ *
+ * @author Brian Slesinsky
+ */
+public class OutputLogTest extends TestGalTestCase {
+
+  private OutputLog log;
+  private LoggingListener listener;
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    log = new OutputLog();
+    listener = new LoggingListener();
+  }
+
+  public void testReplaysEventsInOrder() throws Exception {
+    log.locationChanged(EventLocation.TEST_METHOD);
+    log.wroteHeading("heading");
+    log.wroteParagraph("paragraph");
+    log.wroteError("error");
+    log.compared("a", "b", "caption");
+    log.testFinished(42);
+    assertEquals(6, log.size());
+
+    log.replay(listener);
+    assertEquals(Arrays.asList("location: " + EventLocation.TEST_METHOD, "heading: heading",
+        "paragraph: paragraph", "error: error", "compared: a, b, caption", "finished: 42"),
+        listener.events);
+  }
+
+  public void testReplaysPhaseTimes() throws Exception {
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 0);
+    times.finish(5);
+    log.phasesTimed(times);
+    log.testFinished(5);
+
+    log.replay(listener);
+    assertEquals(Arrays.asList("phases: 5", "finished: 5"), listener.events);
+  }
+
+  public void testManyEvents() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      log.wroteParagraph("p" + i);
+      log.compared("e" + i, "a" + i, "c" + i);
+    }
+    log.replay(listener);
+    assertEquals(200, listener.events.size());
+    assertEquals("paragraph: p99", listener.events.get(198));
+    assertEquals("compared: e99, a99, c99", listener.events.get(199));
+  }
+
+  public void testClear() throws Exception {
+    log.wroteParagraph("gone");
+    log.clear();
+    log.wroteParagraph("kept");
+    log.replay(listener);
+    assertEquals(Arrays.asList("paragraph: kept"), listener.events);
+  }
+
+  public void testSnapshotOfWidgetIsReplayedAsElement() throws Exception {
+    Label label = new Label("before");
+    log.tookSnapshot(label, "caption");
+    label.setText("after");
+
+    log.replay(listener);
+    Element element = (Element) listener.lastSnapshot;
+    assertEquals("DIV", element.getTagName().toUpperCase());
+    assertEquals("before", element.getInnerText());
+  }
+
+  // ======== end of tests ========
+
+  private static class LoggingListener implements ResultListener {
+    final List<String> events = Lists.newList();
+    Object lastSnapshot;
+
+    public void testStarted(TestMethod methodAboutToRun) {
+      events.add("started: " + methodAboutToRun.getName());
+    }
+
+    public void wroteHeading(String text) {
+      events.add("heading: " + text);
+    }
+
+    public void wroteParagraph(String line) {
+      events.add("paragraph: " + line);
+    }
+
+    public void tookSnapshot(Object target, String caption) {
+      lastSnapshot = target;
+      events.add("snapshot: " + caption);
+    }
+
+    public void wroteDemo(Object demo, String caption) {
+      events.add("demo: " + caption);
+    }
+
+    public void wroteError(String message) {
+      events.add("error: " + message);
+    }
+
+    public void compared(Object expected, Object actual, String caption) {
+      events.add("compared: " + expected + ", " + actual + ", " + caption);
+    }
+
+    public void assertionFailed(Throwable throwable) {
+      events.add("assertion failed: " + throwable.getMessage());
+    }
+
+    public void threwException(String message, Throwable throwable, String stackTraceCaption) {
+      events.add("exception: " + message);
+    }
+
+    public void locationChanged(EventLocation location) {
+      events.add("location: " + location);
+    }
+
+    public void phasesTimed(PhaseTimes times) {
+      events.add("phases: " + times.getTotalMillis());
+    }
+
+    public void testFinished(long elapsedTime) {
+      events.add("finished: " + elapsedTime);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+/**
+ * Verifies that {@link PhaseTimes} adds up the time spent in each location.
+ *
+ * @author Brian Slesinsky
+ */
+public class PhaseTimesTest extends TestGalTestCase {
+
+  public void testSynchronousTest() throws Exception {
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 1000);
+    times.enter(EventLocation.CONSTRUCTOR, 1002);
+    times.enter(EventLocation.TESTGAL, 1003);
+    times.enter(EventLocation.SETUP, 1004);
+    times.enter(EventLocation.TESTGAL, 1010);
+    times.enter(EventLocation.TEST_METHOD, 1011);
+    times.enter(EventLocation.TESTGAL, 1031);
+    times.enter(EventLocation.TEARDOWN, 1032);
+    times.enter(EventLocation.TESTGAL, 1035);
+    times.finish(1036);
+
+    assertEquals(36, times.getTotalMillis());
+    assertEquals(1, times.getMillis(EventLocation.CONSTRUCTOR));
+    assertEquals(6, times.getMillis(EventLocation.SETUP));
+    assertEquals(20, times.getMillis(EventLocation.TEST_METHOD));
+    assertEquals(3, times.getMillis(EventLocation.TEARDOWN));
+    assertEquals(6, times.getMillis(EventLocation.TESTGAL));
+    assertEquals(0, times.getMillis(EventLocation.EVENT_HANDLER));
+    assertFalse(times.visited(EventLocation.EVENT_HANDLER));
+
+    out.assertEquals("The phase times as shown on the result page",
+        "constructor: 1 ms, setUp: 6 ms, test method: 20 ms, tearDown: 3 ms, "
+        + "TestGal: 6 ms", MethodResultPage.formatPhaseTimes(times));
+  }
+
+  public void testSpans() throws Exception {
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 500);
+    times.enter(EventLocation.TEST_METHOD, 501);
+    times.enter(EventLocation.TEST_METHOD, 502); // no change
+    times.enter(EventLocation.EVENT_HANDLER, 510);
+    times.finish(600);
+
+    assertEquals(500.0, times.getStartMillis(), 0.0);
+    assertEquals(3, times.getSpanCount());
+    assertEquals(EventLocation.TEST_METHOD, times.getSpanLocation(1));
+    assertEquals(1.0, times.getSpanStart(1), 0.0);
+    assertEquals(10.0, times.getSpanEnd(1), 0.0);
+    assertEquals(EventLocation.EVENT_HANDLER, times.getSpanLocation(2));
+    assertEquals(100.0, times.getSpanEnd(2), 0.0);
+  }
+
+  public void testNoChangesAfterFinish() throws Exception {
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 0);
+    times.enter(EventLocation.TEST_METHOD, 1);
+    times.finish(5);
+    times.enter(EventLocation.EVENT_HANDLER, 10);
+    times.finish(20);
+
+    assertTrue(times.isFinished());
+    assertEquals(5, times.getTotalMillis());
+    assertEquals(2, times.getSpanCount());
+  }
+
+  public void testManySpans() throws Exception {
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 0);
+    for (int i = 1; i <= 100; i++) {
+      times.enter(i % 2 == 0 ? EventLocation.TESTGAL : EventLocation.EVENT_HANDLER, i);
+    }
+    times.finish(101);
+
+    assertEquals(101, times.getSpanCount());
+    assertEquals(50, times.getMillis(EventLocation.EVENT_HANDLER));
+    assertEquals(51, times.getMillis(EventLocation.TESTGAL));
+  }
+}
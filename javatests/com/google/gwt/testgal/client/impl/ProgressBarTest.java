@@ -16,6 +16,7 @@
 package com.google.gwt.testgal.client.impl;
 
 import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.testgal.client.testing.TestGalTestCase;
 
 import java.util.Arrays;
@@ -34,28 +35,43 @@ public class ProgressBarTest extends TestGalTestCase {
     assertEquals("tg-progress-bar", bar.getStyleName());
     checkBarStyle(bar, "");
 
-    bar.progressChanged(0, 2, true);
+    bar.progressChanged(0, 2, 0, -1, true);
     out.snapshot(bar, "The progress bar when no tests have finished");
     assertEquals("tg-progress-bar", bar.getStyleName());
     checkBarStyle(bar, "width: 0%; height: 100%; background-color: green;");
 
-    bar.progressChanged(1, 2, true);
+    bar.progressChanged(1, 2, 0.5, -1, true);
     out.snapshot(bar, "The progress bar when halfway finished");
     checkBarStyle(bar, "width: 50%; height: 100%; background-color: green;");
 
-    bar.progressChanged(1, 2, false);
+    bar.progressChanged(1, 2, 0.5, -1, false);
     out.snapshot(bar, "The progress bar when halfway finished, and a test has failed");
     checkBarStyle(bar, "width: 50%; height: 100%; background-color: red;");
 
-    bar.progressChanged(2, 2, true);
+    bar.progressChanged(2, 2, 1, -1, true);
     out.snapshot(bar, "The progress bar when all tests passed");
     checkBarStyle(bar, "width: 100%; height: 100%; background-color: green;");
 
-    bar.progressChanged(2, 2, false);
+    bar.progressChanged(2, 2, 1, -1, false);
     out.snapshot(bar, "The progress bar when all tests are finished but some failed");
     checkBarStyle(bar, "width: 100%; height: 100%; background-color: red;");
   }
 
+  public void testTimeRemaining() throws Exception {
+    ProgressBar bar = new ProgressBar();
+    bar.progressChanged(1, 4, 0.75, 5000, true);
+    out.snapshot(bar, "The progress bar when the slowest test is done, with about 5 s left");
+    checkBarStyle(bar, "width: 75%; height: 100%; background-color: green;");
+    Element text = bar.getElement().getFirstChildElement().getNextSiblingElement();
+    assertEquals("1 of 4 tests, about 5 s left", text.getInnerText());
+
+    assertEquals("", ProgressBar.formatRemainingTime(-1));
+    assertEquals("", ProgressBar.formatRemainingTime(0));
+    assertEquals("less than a second left", ProgressBar.formatRemainingTime(300));
+    assertEquals("about 42 s left", ProgressBar.formatRemainingTime(41600));
+    assertEquals("about 3 min left", ProgressBar.formatRemainingTime(170 * 1000));
+  }
+
   private void checkBarStyle(ProgressBar bar, String expectedStyle) {
     DivElement barDiv = (DivElement) bar.getElement().getFirstChildElement();
     // Directly getting "style" attribute has a number of browsers
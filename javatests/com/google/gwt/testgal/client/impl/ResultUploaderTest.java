@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+import com.google.gwt.testgal.results.shared.ResultServiceAsync;
+import com.google.gwt.testgal.results.shared.TestResult;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import junit.framework.AssertionFailedError;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that test results are collected and uploaded in batches.
+ *
+ * @author Brian Slesinsky
+ */
+public class ResultUploaderTest extends TestGalTestCase {
+
+  private FakeService service;
+  private ResultUploader uploader;
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    service = new FakeService();
+    uploader = new ResultUploader(service, "run-1", 3, 100000);
+  }
+
+  public void testSendsFullBatches() throws Exception {
+    for (int i = 0; i < 7; i++) {
+      uploader.add(makeResult("test" + i));
+    }
+    assertEquals(2, service.batches.size());
+    assertEquals(3, service.batches.get(0).length);
+    assertEquals("test3", service.batches.get(1)[0].getMethodName());
+    assertEquals(1, uploader.getBufferedCount());
+
+    uploader.flush();
+    assertEquals(3, service.batches.size());
+    assertEquals("test6", service.batches.get(2)[0].getMethodName());
+    assertEquals(0, uploader.getBufferedCount());
+    assertEquals(Arrays.asList("run-1", "run-1", "run-1"), service.runIds);
+  }
+
+  public void testFlushWithNothingToSend() throws Exception {
+    uploader.flush();
+    assertEquals(0, service.batches.size());
+  }
+
+  public void testSendsAfterDelay() throws Exception {
+    uploader = new ResultUploader(service, "run-2", 100, 10);
+    uploader.add(makeResult("testSlow"));
+    assertEquals(0, service.batches.size());
+
+    delayTestFinish(5000);
+    new Timer() {
+      @Override
+      public void run() {
+        assertEquals(1, service.batches.size());
+        assertEquals("testSlow", service.batches.get(0)[0].getMethodName());
+        finishTest();
+      }
+    }.schedule(100);
+  }
+
+  public void testCollectsResult() throws Exception {
+    uploader = new ResultUploader(service, "run-3", 1, 100000);
+    ResultCollector collector = new ResultCollector("com.example.FooTest", uploader);
+
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 0);
+    times.enter(EventLocation.SETUP, 1);
+    times.enter(EventLocation.TEST_METHOD, 3);
+    times.enter(EventLocation.TESTGAL, 10);
+    times.finish(12);
+
+    collector.testStarted(TestMethods.makeTestThatPasses("testFoo"));
+    collector.statusChanged(TestStatus.RUNNING);
+    collector.wroteHeading("Some heading");
+    collector.tookSnapshot("widget", "a snapshot");
+    AssertionFailedError failure = new AssertionFailedError("expected something");
+    collector.assertionFailed(failure);
+    collector.statusChanged(TestStatus.FAILED);
+    collector.phasesTimed(times);
+    collector.testFinished(12);
+
+    assertEquals(1, service.batches.size());
+    TestResult result = service.batches.get(0)[0];
+    assertEquals("com.example.FooTest.testFoo: FAILED", result.toString());
+    assertEquals(12, result.getElapsedMillis());
+    assertEquals(Arrays.asList("setUp", "test method", "TestGal"),
+        Arrays.asList(result.getPhaseNames()));
+    assertEquals(2, result.getPhaseMillis()[0]);
+    assertEquals(7, result.getPhaseMillis()[1]);
+    out.assertEquals("The test's output, as uploaded",
+        Arrays.asList("heading: Some heading", "snapshot: a snapshot",
+            "assertion failed: expected something"),
+        Arrays.asList(result.getOutput()));
+  }
+
+  // ======== end of tests ========
+
+  private static TestResult makeResult(String methodName) {
+    return new TestResult("ExampleTest", methodName, "PASSED", 1, new String[0], new long[0],
+        new String[0]);
+  }
+
+  /**
+   * Records each batch instead of sending it.
+   */
+  private static class FakeService implements ResultServiceAsync {
+    final List<String> runIds = Lists.newList();
+    final List<TestResult[]> batches = Lists.newList();
+
+    public void saveResults(String runId, TestResult[] results, AsyncCallback<Void> callback) {
+      runIds.add(runId);
+      batches.add(results);
+      callback.onSuccess(null);
+    }
+  }
+}
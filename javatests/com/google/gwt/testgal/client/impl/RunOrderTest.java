@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that each {@link RunOrder} puts tests in the expected order.
+ *
+ * @author Brian Slesinsky
+ */
+public class RunOrderTest extends TestGalTestCase {
+
+  private static final List<String> TESTS = Arrays.asList("testA", "testB", "testC", "testD");
+
+  /** Pretends that testB and testD failed, and that testC is slowest. */
+  private static final RunOrder.History<String> HISTORY = new RunOrder.History<String>() {
+    public double getExpectedMillis(String test) {
+      return test.equals("testC") ? 500 : test.equals("testD") ? 100 : 10;
+    }
+
+    public boolean failedLastTime(String test) {
+      return test.equals("testB") || test.equals("testD");
+    }
+  };
+
+  public void testDeclared() throws Exception {
+    checkOrder("[testA, testB, testC, testD]", RunOrder.DECLARED);
+  }
+
+  public void testFailedFirst() throws Exception {
+    checkOrder("[testB, testD, testA, testC]", RunOrder.FAILED_FIRST);
+  }
+
+  public void testLongestFirst() throws Exception {
+    checkOrder("[testC, testD, testA, testB]", RunOrder.LONGEST_FIRST);
+  }
+
+  public void testRandomIsRepeatable() throws Exception {
+    List<String> first = RunOrder.random(42).order(TESTS, HISTORY);
+    assertEquals(first, RunOrder.random(42).order(TESTS, HISTORY));
+    assertEquals(TESTS.size(), first.size());
+    assertTrue(first.containsAll(TESTS));
+  }
+
+  public void testAsksAboutEachItemOnce() throws Exception {
+    final List<String> asked = Lists.newList();
+    RunOrder.History<String> counting = new RunOrder.History<String>() {
+      public double getExpectedMillis(String test) {
+        asked.add(test);
+        return HISTORY.getExpectedMillis(test);
+      }
+
+      public boolean failedLastTime(String test) {
+        asked.add(test);
+        return HISTORY.failedLastTime(test);
+      }
+    };
+
+    assertEquals("[testC, testD, testA, testB]",
+        RunOrder.LONGEST_FIRST.order(TESTS, counting).toString());
+    assertEquals(TESTS, asked);
+
+    asked.clear();
+    assertEquals("[testB, testD, testA, testC]",
+        RunOrder.FAILED_FIRST.order(TESTS, counting).toString());
+    assertEquals(TESTS, asked);
+  }
+
+  public void testForName() throws Exception {
+    assertSame(RunOrder.DECLARED, RunOrder.forName("declared", 0));
+    assertSame(RunOrder.FAILED_FIRST, RunOrder.forName("failed", 0));
+    assertSame(RunOrder.LONGEST_FIRST, RunOrder.forName("longest", 0));
+    assertEquals("random(seed=7)", RunOrder.forName("random", 7).toString());
+    assertNull(RunOrder.forName("sideways", 0));
+  }
+
+  // ======== end of tests ========
+
+  private void checkOrder(String expected, RunOrder order) {
+    assertEquals(expected, order.order(TESTS, HISTORY).toString());
+    assertEquals("the original list shouldn't change",
+        "[testA, testB, testC, testD]", TESTS.toString());
+  }
+}
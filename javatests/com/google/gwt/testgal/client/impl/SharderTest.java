@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that a {@link Sharder} splits the sections of a gallery into
+ * balanced shards that cover each test exactly once.
+ *
+ * @author Brian Slesinsky
+ */
+public class SharderTest extends TestGalTestCase {
+
+  private Section small;
+  private Section medium;
+  private Section big;
+  private List<Section> sections;
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    small = makeSection("SmallTest", "testA");
+    medium = makeSection("MediumTest", "testA", "testB");
+    big = makeSection("BigTest", "testA", "testB", "testC", "testD", "testE", "testF");
+    sections = Arrays.asList(small, medium, big);
+  }
+
+  public void testOneShardIsEverything() throws Exception {
+    List<Section> shard = new Sharder(null, 100).selectShard(sections, 1, 1);
+    assertEquals(sections, shard);
+  }
+
+  public void testHashingCoversEachTestOnce() throws Exception {
+    checkCoversEachTestOnce(new Sharder(null, 100), 3);
+    assertEquals("a piece's shard depends only on its name",
+        Sharder.hashShard("BigTest.testA", 3), Sharder.hashShard("BigTest.testA", 3));
+  }
+
+  public void testSplitsBigSections() throws Exception {
+    // BigTest has 6 of the 9 tests, more than half, so it's split between two shards.
+    List<Section> first = new Sharder(null, 100).selectShard(sections, 1, 2);
+    List<Section> second = new Sharder(null, 100).selectShard(sections, 2, 2);
+    assertTrue(findSection(first, "BigTest").getMethods().size() < 6);
+    assertTrue(findSection(second, "BigTest").getMethods().size() < 6);
+  }
+
+  public void testBalancesUsingHistory() throws Exception {
+    TestHistory history = new TestHistory();
+    history.record("SmallTest.testA", 1000, TestStatus.PASSED);
+    history.record("MediumTest.testA", 400, TestStatus.PASSED);
+    history.record("MediumTest.testB", 500, TestStatus.PASSED);
+    for (TestMethod method : big.getMethods()) {
+      history.record(TestHistory.makeKey(big, method), 10, TestStatus.PASSED);
+    }
+    Sharder sharder = new Sharder(history, 100);
+
+    // The slowest section gets a shard to itself.
+    assertEquals("[SmallTest]", getNames(sharder.selectShard(sections, 1, 2)));
+    assertEquals("[MediumTest, BigTest]", getNames(sharder.selectShard(sections, 2, 2)));
+    checkCoversEachTestOnce(sharder, 2);
+  }
+
+  public void testCheckShard() throws Exception {
+    Sharder.checkShard(1, 1);
+    Sharder.checkShard(3, 3);
+    checkBadShard(0, 3);
+    checkBadShard(4, 3);
+    checkBadShard(1, 0);
+  }
+
+  // ======== end of tests ========
+
+  private void checkCoversEachTestOnce(Sharder sharder, int shardCount) {
+    List<String> seen = Lists.newList();
+    for (int shard = 1; shard <= shardCount; shard++) {
+      for (Section section : sharder.selectShard(sections, shard, shardCount)) {
+        for (TestMethod method : section.getMethods()) {
+          seen.add(TestHistory.makeKey(section, method));
+        }
+      }
+    }
+    assertEquals(9, seen.size());
+    for (Section section : sections) {
+      for (TestMethod method : section.getMethods()) {
+        assertTrue(seen.contains(TestHistory.makeKey(section, method)));
+      }
+    }
+  }
+
+  private static void checkBadShard(int shard, int shardCount) {
+    try {
+      Sharder.checkShard(shard, shardCount);
+      fail("expected an exception for shard " + shard + " of " + shardCount);
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static Section makeSection(String name, String... methodNames) {
+    List<TestMethod> methods = Lists.newList();
+    for (String methodName : methodNames) {
+      methods.add(TestMethods.makeTestThatPasses(methodName));
+    }
+    return new Section(name, null, methods);
+  }
+
+  private static Section findSection(List<Section> shard, String name) {
+    for (Section section : shard) {
+      if (section.getName().equals(name)) {
+        return section;
+      }
+    }
+    fail("no section named " + name);
+    return null;
+  }
+
+  private static String getNames(List<Section> shard) {
+    List<String> names = Lists.newList();
+    for (Section section : shard) {
+      names.add(section.getName());
+    }
+    return names.toString();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+import java.util.List;
+
+/**
+ * Verifies that a {@link TestHistory} remembers test times and statuses, and
+ * that {@link ProgressUpdater} uses the expected times to weight progress.
+ *
+ * @author Brian Slesinsky
+ */
+public class TestHistoryTest extends TestGalTestCase {
+
+  private TestHistory history;
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    history = new TestHistory();
+  }
+
+  public void testEmpty() throws Exception {
+    assertFalse(history.contains("FooTest.testFoo"));
+    assertEquals(50.0, history.getExpectedMillis("FooTest.testFoo", 50), 0.0);
+    assertEquals(50.0, history.getAverageMillis(50), 0.0);
+    assertSame(TestStatus.NOT_STARTED, history.getLastStatus("FooTest.testFoo"));
+  }
+
+  public void testAveragesWithPreviousTime() throws Exception {
+    history.record("FooTest.testFoo", 100, TestStatus.PASSED);
+    assertEquals(100.0, history.getExpectedMillis("FooTest.testFoo", 50), 0.0);
+    assertEquals(100.0, history.getAverageMillis(50), 0.0);
+
+    history.record("FooTest.testFoo", 300, TestStatus.FAILED);
+    assertEquals(200.0, history.getExpectedMillis("FooTest.testFoo", 50), 0.0);
+    assertSame(TestStatus.FAILED, history.getLastStatus("FooTest.testFoo"));
+
+    history.record("FooTest.testBar", 400, TestStatus.PASSED);
+    assertEquals(300.0, history.getAverageMillis(50), 0.0);
+
+    history.parse("FooTest.testBaz\t600\tPASSED\n");
+    assertEquals(400.0, history.getAverageMillis(50), 0.0);
+  }
+
+  public void testSerialize() throws Exception {
+    history.record("FooTest.testFoo", 12.4, TestStatus.PASSED);
+    out.assertEquals("The saved history", "FooTest.testFoo\t12\tPASSED\n", history.serialize());
+
+    TestHistory copy = new TestHistory();
+    copy.parse(history.serialize() + "bad line\nFooTest.testBar\tnot a number\tPASSED\n"
+        + "FooTest.testBaz\t5\tNO_SUCH_STATUS\n");
+    assertEquals(1, copy.size());
+    assertEquals(12.0, copy.getExpectedMillis("FooTest.testFoo", 50), 0.0);
+    assertSame(TestStatus.PASSED, copy.getLastStatus("FooTest.testFoo"));
+  }
+
+  public void testMergeKeepsOtherTabsResults() throws Exception {
+    history.parse("FooTest.testFoo\t10\tPASSED\nFooTest.testBar\t20\tPASSED\n");
+    history.record("FooTest.testFoo", 30, TestStatus.FAILED);
+
+    // Another tab saved testBar and testBaz since this history was loaded.
+    String merged = history.merge("FooTest.testFoo\t10\tPASSED\n"
+        + "FooTest.testBar\t40\tFAILED\nFooTest.testBaz\t50\tPASSED\n");
+
+    TestHistory copy = new TestHistory();
+    copy.parse(merged);
+    assertEquals(3, copy.size());
+    assertEquals(20.0, copy.getExpectedMillis("FooTest.testFoo", 0), 0.0);
+    assertSame(TestStatus.FAILED, copy.getLastStatus("FooTest.testFoo"));
+    assertEquals(40.0, copy.getExpectedMillis("FooTest.testBar", 0), 0.0);
+    assertEquals(50.0, copy.getExpectedMillis("FooTest.testBaz", 0), 0.0);
+  }
+
+  public void testSavesOnlyChangesAndNotTooOften() throws Exception {
+    assertFalse(history.hasUnsavedChanges());
+
+    history.record("FooTest.testFoo", 10, TestStatus.PASSED);
+    assertTrue(history.hasUnsavedChanges());
+    history.saveIfDue(1000);
+    assertFalse(history.hasUnsavedChanges());
+
+    history.record("FooTest.testFoo", 10, TestStatus.PASSED);
+    history.saveIfDue(1000 + TestHistory.SAVE_INTERVAL_MILLIS - 1);
+    assertTrue("saved too soon", history.hasUnsavedChanges());
+    history.saveIfDue(1000 + TestHistory.SAVE_INTERVAL_MILLIS);
+    assertFalse(history.hasUnsavedChanges());
+
+    history.record("FooTest.testFoo", 10, TestStatus.PASSED);
+    history.save();
+    assertFalse("the final save isn't throttled", history.hasUnsavedChanges());
+  }
+
+  public void testRecorderSavesFinishedTests() throws Exception {
+    TestHistory.Recorder recorder = history.newRecorder("FooTest.testFoo");
+    recorder.statusChanged(TestStatus.RUNNING);
+    recorder.statusChanged(TestStatus.FAILED);
+
+    PhaseTimes times = new PhaseTimes(EventLocation.TESTGAL, 0);
+    times.finish(25);
+    recorder.testTimed(null, times);
+
+    assertEquals(25.0, history.getExpectedMillis("FooTest.testFoo", 50), 0.0);
+    assertSame(TestStatus.FAILED, history.getLastStatus("FooTest.testFoo"));
+  }
+
+  public void testProgressIsWeightedByExpectedTime() throws Exception {
+    final List<String> log = Lists.newList();
+    ProgressUpdater updater = new ProgressUpdater();
+    updater.setProgressListener(new ProgressListener() {
+      public void progressChanged(int finishedCount, int totalCount, double fractionDone,
+          double remainingMillis, boolean looksGoodSoFar) {
+        log.add(finishedCount + "/" + totalCount + " " + Math.round(fractionDone * 100) + "%");
+      }
+    });
+
+    StatusChangeListener slow = updater.forTest(300);
+    StatusChangeListener fast = updater.forTest(100);
+    updater.reset(2, 400);
+    slow.statusChanged(TestStatus.RUNNING);
+    slow.statusChanged(TestStatus.PASSED);
+    fast.statusChanged(TestStatus.PASSED);
+
+    assertEquals("[0/2 0%, 1/2 75%, 2/2 100%]", log.toString());
+  }
+
+  public void testRunningUntilFinished() throws Exception {
+    ProgressUpdater updater = new ProgressUpdater();
+    assertFalse(updater.isRunning());
+
+    StatusChangeListener test = updater.forTest(100);
+    StatusChangeListener other = updater.forTest(100);
+    updater.reset(2, 200);
+    assertTrue(updater.isRunning());
+
+    // A test that passes and then fails in a late event handler is counted twice.
+    test.statusChanged(TestStatus.PASSED);
+    test.statusChanged(TestStatus.FAILED);
+    assertTrue("the other test hasn't finished", updater.isRunning());
+
+    other.statusChanged(TestStatus.PASSED);
+    updater.finish();
+    assertFalse(updater.isRunning());
+  }
+
+  public void testEstimateRemainingTime() throws Exception {
+    assertEquals(-1.0, ProgressUpdater.estimateRemainingMillis(100, 0), 0.0);
+    assertEquals(300.0, ProgressUpdater.estimateRemainingMillis(100, 0.25), 0.001);
+    assertEquals(0.0, ProgressUpdater.estimateRemainingMillis(100, 1), 0.0);
+  }
+}
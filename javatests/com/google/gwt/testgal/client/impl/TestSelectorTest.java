@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+/**
+ * Verifies that a {@link TestSelector} matches test classes and methods
+ * using wildcards.
+ *
+ * @author Brian Slesinsky
+ */
+public class TestSelectorTest extends TestGalTestCase {
+
+  public void testWholeClass() throws Exception {
+    TestSelector selector = TestSelector.parse("com.example.FooTest");
+    assertTrue(selector.isWholeClass());
+    assertEquals("com.example.FooTest", selector.getClassName());
+    assertTrue(selector.matchesClass("com.example.FooTest"));
+    assertTrue(selector.matches("com.example.FooTest", "testAnything"));
+    assertFalse(selector.matches("com.example.FooTestToo", "testAnything"));
+  }
+
+  public void testOneMethod() throws Exception {
+    TestSelector selector = TestSelector.parse("com.example.FooTest#testBar");
+    assertFalse(selector.isWholeClass());
+    assertFalse(selector.matchesClass("com.example.FooTest"));
+    assertTrue(selector.mayMatchClass("com.example.FooTest"));
+    assertTrue(selector.matches("com.example.FooTest", "testBar"));
+    assertFalse(selector.matches("com.example.FooTest", "testBaz"));
+  }
+
+  public void testStars() throws Exception {
+    TestSelector selector = TestSelector.parse("*.Foo*Test#test*Async*");
+    assertTrue(selector.matches("com.example.FooTest", "testAsync"));
+    assertTrue(selector.matches("com.example.FooBarTest", "testRpcAsyncFailure"));
+    assertFalse(selector.matches("FooTest", "testAsync"));
+    assertFalse(selector.matches("com.example.FooTest", "testSync"));
+
+    assertTrue(TestSelector.parse("*").matchesClass(""));
+    assertTrue(TestSelector.parse("a**b").matchesClass("ab"));
+    assertFalse(TestSelector.parse("ab*ba").matchesClass("aba"));
+  }
+
+  public void testQuestionMarks() throws Exception {
+    TestSelector selector = TestSelector.parse("com.example.Foo?Test");
+    assertTrue(selector.matchesClass("com.example.Foo2Test"));
+    assertFalse(selector.matchesClass("com.example.FooTest"));
+    assertFalse(selector.matchesClass("com.example.Foo22Test"));
+    assertTrue(TestSelector.parse("*Foo?Test").matchesClass("com.example.Foo2Test"));
+  }
+}
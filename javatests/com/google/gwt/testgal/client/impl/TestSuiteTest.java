@@ -17,10 +17,12 @@ package com.google.gwt.testgal.client.impl;
 
 import com.google.gwt.testgal.client.impl.util.Lists;
 import com.google.gwt.testgal.client.impl.util.Scheduler;
+import com.google.gwt.testgal.client.impl.util.YieldingCommand;
 import com.google.gwt.testgal.client.testing.FakeTests;
 import com.google.gwt.testgal.client.testing.TestGalTestCase;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -56,13 +58,173 @@ public class TestSuiteTest extends TestGalTestCase {
     checkRunOneTest(suiteToRun, "1/1 failed");
   }
 
+  public void testRunAsyncTestsConcurrently() throws Exception {
+    final Section section = new Section("com.google.example.ConcurrentTest", null,
+        Arrays.asList(
+            TestMethods.makeAsyncTestThatPasses("testFirst", 50),
+            TestMethods.makeAsyncTestThatPasses("testSecond", 50),
+            TestMethods.makeTestThatFails("testThird", "This failure is expected."),
+            TestMethods.makeAsyncTestThatPasses("testFourth", 50)));
+    TestSuite suite = fakeTests.startSuite().setConcurrency(3).addSection(section).build();
+
+    Scheduler scheduler = start(suite);
+    scheduler.addLast(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        assertEquals("5 progress messages", 5, listener.log.size());
+        assertEquals("4/4 failed", listener.log.get(4));
+        assertSame(TestStatus.FAILED, section.getStatus());
+        for (TestMethod method : section.getMethods()) {
+          TestStatus expected = method.getName().equals("testThird") ?
+              TestStatus.FAILED : TestStatus.PASSED;
+          assertSame(method.getName(), expected, section.getStatus(method));
+        }
+        finishTest();
+      }
+    });
+    delayTestFinish(5000);
+    scheduler.startAfterYield(1, "to run tests concurrently");
+  }
+
+  public void testRerunInPlace() throws Exception {
+    final Section section = new Section("com.google.example.RerunTest", null,
+        Arrays.asList(
+            TestMethods.makeTestThatPasses("testFirst"),
+            TestMethods.makeTestThatFails("testSecond", "This failure is expected.")));
+    final TestSuite suite = fakeTests.startSuite().addSection(section).build();
+    final TestMethod first = section.getMethods().get(0);
+
+    Scheduler scheduler = start(suite);
+    scheduler.addLast(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        assertFalse(suite.isRunning());
+        assertSame(TestStatus.FAILED, section.getStatus());
+        listener.log.clear();
+
+        schedule.push(new YieldingCommand() {
+          public void run(Schedule schedule) {
+            listener.checkLogMessages("0/1 ok", "1/1 ok");
+            assertFalse(suite.isRunning());
+            assertSame(TestStatus.PASSED, section.getStatus(first));
+            assertSame("the section still has a failed test",
+                TestStatus.FAILED, section.getStatus());
+            finishTest();
+          }
+        });
+        schedule.push(suite.makeRerunCommand(section, Lists.of(first)));
+      }
+    });
+    delayTestFinish(5000);
+    scheduler.startAfterYield(1, "to run tests");
+  }
+
+  public void testRerunChecksArguments() throws Exception {
+    TestSuite suite = fakeTests.makeSuiteWithOnePassingTest();
+    Section section = suite.getSections().get(0);
+    try {
+      suite.makeRerunCommand(section,
+          Lists.of(TestMethods.makeTestThatPasses("testNotInSection")));
+      fail("expected an exception for a method that isn't in the section");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testFailedOnly() throws Exception {
+    Section first = new Section("com.google.example.FirstTest", null,
+        Arrays.asList(
+            TestMethods.makeTestThatPasses("testOne"),
+            TestMethods.makeTestThatPasses("testTwo")));
+    Section second = new Section("com.google.example.SecondTest", null,
+        Arrays.asList(TestMethods.makeTestThatPasses("testThree")));
+    TestHistory history = new TestHistory();
+    history.record("com.google.example.FirstTest.testOne", 10, TestStatus.PASSED);
+    history.record("com.google.example.FirstTest.testTwo", 10, TestStatus.FAILED);
+    history.record("com.google.example.SecondTest.testThree", 10, TestStatus.PASSED);
+
+    TestSuite suite = fakeTests.startSuite().setTestHistory(history).setFailedOnly(true)
+        .addSection(first).addSection(second).build();
+    assertEquals(1, suite.getSections().size());
+    Section rerun = suite.getSections().get(0);
+    assertEquals("com.google.example.FirstTest", rerun.getName());
+    assertEquals(1, rerun.getMethods().size());
+    assertEquals("testTwo", rerun.getMethods().get(0).getName());
+    assertTrue(suite.getTitle().endsWith("(failed tests only)"));
+  }
+
+  public void testFailedOnlyWhenNothingFailed() throws Exception {
+    TestHistory history = new TestHistory();
+    history.record("com.google.example.SecondTest.testThree", 10, TestStatus.PASSED);
+    TestSuite suite = fakeTests.startSuite().setTestHistory(history).setFailedOnly(true)
+        .addSection(new Section("com.google.example.SecondTest", null,
+            Arrays.asList(TestMethods.makeTestThatPasses("testThree"))))
+        .build();
+    assertTrue(suite.getSections().isEmpty());
+    assertEquals("None of the tests failed the last time they ran.", suite.getEmptyMessage());
+  }
+
+  public void testShardsIgnoreLocalHistory() throws Exception {
+    // Each shard's browser saw a different history.
+    TestHistory firstHistory = new TestHistory();
+    TestHistory secondHistory = new TestHistory();
+    for (int i = 0; i < 6; i++) {
+      firstHistory.record("com.google.example.Test" + i + ".testOne", 10 * (i + 1),
+          TestStatus.PASSED);
+      secondHistory.record("com.google.example.Test" + i + ".testOne", 10 * (6 - i),
+          TestStatus.PASSED);
+    }
+
+    List<String> seen = Lists.newList();
+    seen.addAll(getShardTests(fakeTests.startSuite().setTestHistory(firstHistory)
+        .setShard(1, 2)));
+    seen.addAll(getShardTests(fakeTests.startSuite().setTestHistory(secondHistory)
+        .setShard(2, 2)));
+    Collections.sort(seen);
+    assertEquals(getShardTests(fakeTests.startSuite().setShard(1, 1)), seen);
+  }
+
+  public void testShardsWithSharedHistory() throws Exception {
+    String shared = "com.google.example.Test0.testOne\t1000\tPASSED\n";
+    for (int i = 1; i < 6; i++) {
+      shared += "com.google.example.Test" + i + ".testOne\t10\tPASSED\n";
+    }
+    List<String> seen = Lists.newList();
+    List<String> first = getShardTests(fakeTests.startSuite().setShardHistory(shared)
+        .setShard(1, 2));
+    seen.addAll(first);
+    seen.addAll(getShardTests(fakeTests.startSuite().setShardHistory(shared).setShard(2, 2)));
+    Collections.sort(seen);
+    assertEquals(getShardTests(fakeTests.startSuite().setShard(1, 1)), seen);
+    assertEquals("the slowest test gets a shard to itself",
+        "[com.google.example.Test0.testOne]", first.toString());
+  }
+
   // ============== end of tests ===========
 
+  /**
+   * Adds six one-method sections to a builder and returns the tests
+   * in the shard that it builds, in sorted order.
+   */
+  private static List<String> getShardTests(TestSuite.Builder builder) {
+    for (int i = 0; i < 6; i++) {
+      builder.addSection(new Section("com.google.example.Test" + i, null,
+          Lists.of(TestMethods.makeTestThatPasses("testOne"))));
+    }
+    List<String> result = Lists.newList();
+    for (Section section : builder.build().getSections()) {
+      for (TestMethod method : section.getMethods()) {
+        result.add(TestHistory.makeKey(section, method));
+      }
+    }
+    Collections.sort(result);
+    return result;
+  }
+
   private void checkRunOneTest(TestSuite suite, String resultMessage) {
     Scheduler scheduler = start(suite);
     checkResetProgress(scheduler);
     checkPrepareTest(scheduler);
     checkRunLastTest(scheduler, resultMessage);
+    checkFinishRun(scheduler, suite);
   }
 
   private void checkResetProgress(Scheduler scheduler) {
@@ -76,10 +238,17 @@ public class TestSuiteTest extends TestGalTestCase {
   }
 
   private void checkRunLastTest(Scheduler scheduler, String result) {
-    assertFalse("running last test should return false", scheduler.runStepsManually());
+    assertTrue("running last test should return true", scheduler.runStepsManually());
     listener.checkLogMessages(result);
   }
 
+  private void checkFinishRun(Scheduler scheduler, TestSuite suite) {
+    assertTrue(suite.isRunning());
+    assertFalse("finishing the run should return false", scheduler.runStepsManually());
+    assertFalse(suite.isRunning());
+    listener.checkLogMessages();
+  }
+
   private Scheduler start(TestSuite suite) {
     suite.setProgressListener(listener);
     Scheduler scheduler = new Scheduler();
@@ -90,7 +259,8 @@ public class TestSuiteTest extends TestGalTestCase {
   private class RecordingListener implements ProgressListener {
     final List<String> log = Lists.newList();
 
-    public void progressChanged(int finishedCount, int totalCount, boolean looksGoodSoFar) {
+    public void progressChanged(int finishedCount, int totalCount, double fractionDone,
+        double remainingMillis, boolean looksGoodSoFar) {
       String progress = finishedCount + "/" + totalCount;
       String status = looksGoodSoFar ? "ok" : "failed";
       log.add(progress + " " + status);
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl;
+
+import com.google.gwt.testgal.client.impl.util.Lists;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+import com.google.gwt.user.client.Timer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that a {@link ThrottledProgressListener} sends only the
+ * latest progress, after the current event handler returns.
+ *
+ * @author Brian Slesinsky
+ */
+public class ThrottledProgressListenerTest extends TestGalTestCase {
+
+  public void testOnlyLatestProgressIsSent() throws Exception {
+    final List<String> log = Lists.newList();
+    ThrottledProgressListener throttled = new ThrottledProgressListener(new ProgressListener() {
+      public void progressChanged(int finishedCount, int totalCount, double fractionDone,
+          double remainingMillis, boolean looksGoodSoFar) {
+        log.add(finishedCount + "/" + totalCount + " " + (looksGoodSoFar ? "passed" : "failed"));
+      }
+    });
+
+    throttled.progressChanged(1, 3, 0.3, 200, true);
+    throttled.progressChanged(2, 3, 0.6, 100, false);
+    throttled.progressChanged(3, 3, 1, 0, false);
+    assertEquals("no progress should be sent right away", 0, log.size());
+
+    delayTestFinish(2000);
+    new Timer() {
+      @Override
+      public void run() {
+        assertEquals(Arrays.asList("3/3 failed"), log);
+        finishTest();
+      }
+    }.schedule(200);
+  }
+}
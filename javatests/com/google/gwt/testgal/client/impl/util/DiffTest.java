@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl.util;
+
+import com.google.gwt.testgal.client.impl.util.Diff.Edit;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that {@link Diff} finds the differences between two sequences.
+ *
+ * @author Brian Slesinsky
+ */
+public class DiffTest extends TestGalTestCase {
+
+  public void testSameString() throws Exception {
+    checkChars("abc", "abc", "EQUAL 0-3 0-3");
+  }
+
+  public void testEmptyStrings() throws Exception {
+    checkChars("", "");
+    checkChars("", "ab", "INSERT 0-0 0-2");
+    checkChars("ab", "", "DELETE 0-2 0-0");
+  }
+
+  public void testOneCharChanged() throws Exception {
+    checkChars("abcde", "abXde",
+        "EQUAL 0-2 0-2", "DELETE 2-3 2-2", "INSERT 3-3 2-3", "EQUAL 3-5 3-5");
+  }
+
+  public void testInsertAndDeleteInMiddle() throws Exception {
+    checkChars("abcdefgh", "aXbcdfgh",
+        "EQUAL 0-1 0-1", "INSERT 1-1 1-2", "EQUAL 1-4 2-5", "DELETE 4-5 5-5", "EQUAL 5-8 5-8");
+  }
+
+  public void testApplyingEditsGivesNewString() throws Exception {
+    String oldText = "the quick brown fox jumps over the lazy dog";
+    String newText = "a quick brown cat leaps over one lazy dog!";
+    assertEquals(newText, apply(oldText, newText, Diff.chars(oldText, newText, 100000)));
+  }
+
+  public void testOverBudgetIsOneReplacement() throws Exception {
+    checkChars("<abcdef>", "<ghijkl>", 2,
+        "EQUAL 0-1 0-1", "DELETE 1-7 1-1", "INSERT 7-7 1-7", "EQUAL 7-8 7-8");
+  }
+
+  public void testLines() throws Exception {
+    String[] oldLines = Diff.splitLines("one\ntwo\nthree\n");
+    String[] newLines = Diff.splitLines("one\n2\nthree\n");
+    assertEquals(Arrays.asList("EQUAL 0-1 0-1", "DELETE 1-2 1-1", "INSERT 2-2 1-2", "EQUAL 2-4 2-4"),
+        toStrings(Diff.lines(oldLines, newLines, Diff.DEFAULT_BUDGET)));
+  }
+
+  public void testSplitLines() throws Exception {
+    assertEquals(Arrays.asList(""), Arrays.asList(Diff.splitLines("")));
+    assertEquals(Arrays.asList("a"), Arrays.asList(Diff.splitLines("a")));
+    assertEquals(Arrays.asList("a", "b", ""), Arrays.asList(Diff.splitLines("a\nb\n")));
+  }
+
+  // ======== end of tests ========
+
+  private void checkChars(String oldText, String newText, String... expectedEdits) {
+    checkChars(oldText, newText, Diff.DEFAULT_BUDGET, expectedEdits);
+  }
+
+  private void checkChars(String oldText, String newText, int budget, String... expectedEdits) {
+    List<Edit> edits = Diff.chars(oldText, newText, budget);
+    assertEquals(Arrays.asList(expectedEdits), toStrings(edits));
+    assertEquals(newText, apply(oldText, newText, edits));
+  }
+
+  private static List<String> toStrings(List<Edit> edits) {
+    List<String> result = Lists.newList();
+    for (Edit edit : edits) {
+      result.add(edit.toString());
+    }
+    return result;
+  }
+
+  /** Rebuilds the new string from the old one, using the edits. */
+  private static String apply(String oldText, String newText, List<Edit> edits) {
+    StringBuilder result = new StringBuilder();
+    for (Edit edit : edits) {
+      switch (edit.getOp()) {
+        case EQUAL:
+          result.append(oldText.substring(edit.getOldStart(), edit.getOldEnd()));
+          break;
+        case INSERT:
+          result.append(newText.substring(edit.getNewStart(), edit.getNewEnd()));
+          break;
+        case DELETE:
+          break;
+      }
+    }
+    return result.toString();
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.gwt.testgal.client.impl.util;
 
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.testgal.client.testing.TestGalTestCase;
 
 /**
@@ -40,4 +42,88 @@ public class HtmlWriterTest extends TestGalTestCase {
         "<span>SomeText<br><br></span>", writer.getTopElement().getInnerHTML());
   }
 
+  public void testBufferedWriterCreatesSameElements() throws Exception {
+    HtmlWriter plain = new HtmlWriter();
+    writeSomething(plain);
+
+    HtmlWriter buffered = HtmlWriter.buffered();
+    writeSomething(buffered);
+
+    assertEquals(plain.getTopElement().getInnerHTML(), buffered.getTopElement().getInnerHTML());
+  }
+
+  public void testBufferedWriterEscapesText() throws Exception {
+    HtmlWriter writer = HtmlWriter.buffered();
+    writer.startTag("div", "title", "\"quoted\" & <tagged>");
+    writer.text("<b>not bold</b> & such");
+    writer.endTag("div");
+
+    Element div = writer.getTopElement().getFirstChildElement();
+    assertEquals("\"quoted\" & <tagged>", div.getAttribute("title"));
+    assertEquals("<b>not bold</b> & such", div.getInnerText());
+  }
+
+  public void testBufferedWriterCanAppendAfterFlushInsideOpenTag() throws Exception {
+    HtmlWriter writer = HtmlWriter.buffered();
+    writer.startTag("div");
+    writer.textP("first");
+    writer.flush();
+    writer.textP("second");
+    writer.endTag("div");
+    writer.textP("third");
+
+    out.assertEquals("Buffered output differs",
+        "<div><p>first</p><p>second</p></div><p>third</p>",
+        writer.getTopElement().getInnerHTML().toLowerCase());
+  }
+
+  public void testBufferedOutputIsNotVisibleUntilFlushed() throws Exception {
+    Element top = Document.get().createDivElement();
+    HtmlWriter writer = HtmlWriter.buffered(top);
+    writer.textP("hello");
+    assertEquals("", top.getInnerHTML());
+    writer.flush();
+    assertEquals("hello", top.getFirstChildElement().getInnerText());
+  }
+
+  public void testBufferedWriterRejectsTableAndSelectTags() throws Exception {
+    HtmlWriter writer = HtmlWriter.buffered();
+    writer.startTag("table");
+    checkRejected(writer, "tr");
+    checkRejected(writer, "TD");
+    checkRejected(writer, "tbody");
+    checkRejected(writer, "option");
+
+    HtmlWriter plain = new HtmlWriter();
+    plain.startTag("table");
+    plain.startTag("tr");
+    plain.startTag("td");
+    plain.text("cell");
+    plain.endTag("td");
+    plain.endTag("tr");
+    plain.endTag("table");
+    assertEquals("cell", plain.getTopElement().getElementsByTagName("td").getItem(0)
+        .getInnerText());
+  }
+
+  // ======== end of tests ========
+
+  private static void checkRejected(HtmlWriter writer, String tagName) {
+    try {
+      writer.startTag(tagName);
+      fail("expected an exception for <" + tagName + ">");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static void writeSomething(HtmlWriter writer) {
+    writer.textH3("A heading");
+    writer.startTag("div", "class", "tg-error");
+    writer.textP("A paragraph & some <text>.");
+    writer.endTag("div");
+    writer.text("Some text");
+    writer.br();
+  }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl.util;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that a {@link Scheduler} runs steps in the order documented by
+ * {@link YieldingCommand.Schedule}.
+ *
+ * @author Brian Slesinsky
+ */
+public class SchedulerTest extends TestGalTestCase {
+
+  private Scheduler scheduler;
+  private List<String> log;
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    scheduler = new Scheduler();
+    log = Lists.newList();
+  }
+
+  public void testPushIsLastInFirstOut() throws Exception {
+    scheduler.push(record("a"));
+    scheduler.push(record("b"));
+    scheduler.push(record("c"));
+    runAll();
+    checkLog("c", "b", "a");
+  }
+
+  public void testPushIterableKeepsIteratorOrder() throws Exception {
+    scheduler.push(record("last"));
+    scheduler.push(Arrays.asList(record("a"), record("b"), record("c")));
+    runAll();
+    checkLog("a", "b", "c", "last");
+  }
+
+  public void testAddLastIsFirstInFirstOut() throws Exception {
+    scheduler.addLast(record("a"));
+    scheduler.addLast(record("b"));
+    scheduler.push(record("first"));
+    runAll();
+    checkLog("first", "a", "b");
+  }
+
+  public void testStepCanScheduleMoreSteps() throws Exception {
+    scheduler.push(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        log.add("outer");
+        schedule.addLast(record("cleanup"));
+        schedule.push(record("inner"));
+      }
+    });
+    scheduler.addLast(record("end"));
+    runAll();
+    checkLog("outer", "inner", "end", "cleanup");
+  }
+
+  public void testManyStepsGrowTheQueue() throws Exception {
+    List<String> expected = Lists.newList();
+    for (int i = 0; i < 100; i++) {
+      scheduler.addLast(record("last" + i));
+    }
+    for (int i = 99; i >= 0; i--) {
+      scheduler.push(record("first" + i));
+    }
+    for (int i = 0; i < 100; i++) {
+      expected.add("first" + i);
+    }
+    for (int i = 0; i < 100; i++) {
+      expected.add("last" + i);
+    }
+    runAll();
+    assertEquals(expected, log);
+  }
+
+  public void testRecycledStepsRunTheirNewCommand() throws Exception {
+    scheduler.push(record("a"));
+    runAll();
+    scheduler.push(record("b"));
+    scheduler.push(record("c"));
+    runAll();
+    checkLog("a", "c", "b");
+  }
+
+  public void testSleepStopsManualRun() throws Exception {
+    scheduler.push(record("after"));
+    scheduler.push(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        log.add("before");
+        schedule.sleepAfterThisStep(10, "for testing");
+      }
+    });
+    assertTrue(scheduler.runStepsManually());
+    checkLog("before");
+    assertFalse(scheduler.runStepsManually());
+    checkLog("after");
+  }
+
+  public void testSleepIsOnlyAHintWithinTimeSlice() throws Exception {
+    scheduler = new Scheduler(10000);
+    scheduler.push(record("after"));
+    scheduler.push(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        log.add("before");
+        schedule.sleepAfterThisStep(10, "for testing");
+      }
+    });
+    assertFalse(scheduler.runStepsManually());
+    checkLog("before", "after");
+  }
+
+  public void testUsedUpTimeSliceIgnoresHints() throws Exception {
+    final Scheduler slicing = new Scheduler(1);
+    slicing.push(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        assertEquals("yield after a used-up time slice", 1, slicing.getLastYieldMillis());
+        finishTest();
+      }
+    });
+    slicing.push(new YieldingCommand() {
+      public void run(Schedule schedule) {
+        schedule.sleepAfterThisStep(10, "for testing");
+        // use up the time slice
+        double start = Duration.currentTimeMillis();
+        while (Duration.currentTimeMillis() - start < 5) {
+        }
+      }
+    });
+    delayTestFinish(5000);
+    slicing.startAfterYield(2, "to start the test");
+  }
+
+  // ============== end of tests ===========
+
+  private YieldingCommand record(final String name) {
+    return new YieldingCommand() {
+      public void run(Schedule schedule) {
+        log.add(name);
+      }
+    };
+  }
+
+  private void runAll() {
+    int steps = 0;
+    while (scheduler.runStepsManually()) {
+      steps++;
+      assertTrue("scheduler didn't finish", steps < 1000);
+    }
+  }
+
+  private void checkLog(String... expected) {
+    assertEquals(Arrays.asList(expected), log);
+    log.clear();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.client.impl.util;
+
+import com.google.gwt.testgal.client.testing.TestGalTestCase;
+
+/**
+ * Verifies that a {@link TraceLog} writes the Trace Event Format.
+ *
+ * @author Brian Slesinsky
+ */
+public class TraceLogTest extends TestGalTestCase {
+
+  private TraceLog trace;
+
+  @Override
+  protected void gwtSetUp() throws Exception {
+    super.gwtSetUp();
+    trace = new TraceLog(3, 1000);
+  }
+
+  public void testEmpty() throws Exception {
+    out.assertEquals("An empty trace", "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[]}\n",
+        trace.toJson());
+  }
+
+  public void testSpans() throws Exception {
+    trace.nameTrack(2, "scheduler 2");
+    trace.addSpan("step", "RunTestCommand", 2, 1001, 1003.5, null);
+    trace.addSpan("wait", "for \"UI\" update", 2, 1003.5, 1020, "asked for 10 ms");
+
+    out.assertEquals("Spans on a track",
+        "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n"
+        + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":2,"
+        + "\"args\":{\"name\":\"scheduler 2\"}},\n"
+        + "{\"name\":\"RunTestCommand\",\"cat\":\"step\",\"ph\":\"X\",\"pid\":1,\"ts\":1000,"
+        + "\"tid\":2,\"dur\":2500},\n"
+        + "{\"name\":\"for \\\"UI\\\" update\",\"cat\":\"wait\",\"ph\":\"X\",\"pid\":1,"
+        + "\"ts\":3500,\"tid\":2,\"dur\":16500,\"args\":{\"detail\":\"asked for 10 ms\"}}]}\n",
+        trace.toJson());
+  }
+
+  public void testSpanNamedAfterClass() throws Exception {
+    trace.addSpan("step", TraceLogTest.class, 2, 1001, 1002, null);
+    assertTrue(trace.toJson().contains("{\"name\":\"TraceLogTest\",\"cat\":\"step\""));
+  }
+
+  public void testForgetsUnusedTracks() throws Exception {
+    trace.nameTrack(1, "busy");
+    trace.addSpan("step", "running", 1, 1000, 1001, null);
+    for (int track = 2; track <= 1000; track++) {
+      trace.nameTrack(track, "idle " + track);
+    }
+    assertTrue("tracks kept: " + trace.getTrackCount(), trace.getTrackCount() < 300);
+    assertTrue(trace.toJson().contains("\"name\":\"busy\""));
+  }
+
+  public void testAsyncSpan() throws Exception {
+    int id = trace.newAsyncId();
+    trace.addAsyncSpan("test", "setUp", id, 1002, 1004, "testSomething");
+
+    out.assertEquals("An asynchronous span",
+        "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n"
+        + "{\"name\":\"setUp\",\"cat\":\"test\",\"ph\":\"b\",\"pid\":1,\"ts\":2000,"
+        + "\"tid\":0,\"id\":" + id + ",\"args\":{\"detail\":\"testSomething\"}},\n"
+        + "{\"name\":\"setUp\",\"cat\":\"test\",\"ph\":\"e\",\"pid\":1,\"ts\":4000,"
+        + "\"tid\":0,\"id\":" + id + "}]}\n",
+        trace.toJson());
+  }
+
+  public void testDropsOldestEventsWhenFull() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      trace.addSpan("step", "step" + i, 1, 1000 + i, 1000 + i, null);
+    }
+    assertEquals(3, trace.size());
+    String json = trace.toJson();
+    assertFalse(json.contains("step1"));
+    assertTrue(json.contains("step2"));
+    assertTrue(json.contains("step4"));
+    assertTrue(json.indexOf("step2") < json.indexOf("step4"));
+  }
+
+  public void testDisabled() throws Exception {
+    trace.setEnabled(false);
+    trace.addSpan("step", "ignored", 1, 1000, 1001, null);
+    assertEquals(0, trace.size());
+
+    trace.setEnabled(true);
+    trace.addSpan("step", "recorded", 1, 1000, 1001, null);
+    trace.clear();
+    assertEquals(0, trace.size());
+  }
+}
@@ -18,16 +18,30 @@ package com.google.gwt.testgal.gallery.client;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.testgal.client.AbstractTestGallery;
 import com.google.gwt.testgal.client.AsyncTest;
+import com.google.gwt.testgal.client.InheritedTest;
 import com.google.gwt.testgal.client.impl.GalleryRunnerTest;
 import com.google.gwt.testgal.client.impl.ContentsPageTest;
+import com.google.gwt.testgal.client.impl.ElementDiffTest;
 import com.google.gwt.testgal.client.impl.ElementTreeViewTest;
 import com.google.gwt.testgal.client.impl.LeftSideViewTest;
 import com.google.gwt.testgal.client.impl.MethodResultPageTest;
+import com.google.gwt.testgal.client.impl.MethodResultRecorderTest;
+import com.google.gwt.testgal.client.impl.OutputLogTest;
+import com.google.gwt.testgal.client.impl.PhaseTimesTest;
+import com.google.gwt.testgal.client.impl.ResultUploaderTest;
 import com.google.gwt.testgal.client.impl.ProgressBarTest;
+import com.google.gwt.testgal.client.impl.RunOrderTest;
 import com.google.gwt.testgal.client.impl.SectionResultPageTest;
+import com.google.gwt.testgal.client.impl.SharderTest;
 import com.google.gwt.testgal.client.impl.StatusViewTest;
+import com.google.gwt.testgal.client.impl.TestHistoryTest;
+import com.google.gwt.testgal.client.impl.TestSelectorTest;
 import com.google.gwt.testgal.client.impl.TestSuiteTest;
+import com.google.gwt.testgal.client.impl.ThrottledProgressListenerTest;
+import com.google.gwt.testgal.client.impl.util.DiffTest;
 import com.google.gwt.testgal.client.impl.util.HtmlWriterTest;
+import com.google.gwt.testgal.client.impl.util.SchedulerTest;
+import com.google.gwt.testgal.client.impl.util.TraceLogTest;
 import com.google.gwt.testgal.shared.EmptyMethodTest;
 import com.google.gwt.testgal.api.shared.TestLocalTest;
 
@@ -70,6 +84,21 @@ public class Gallery extends AbstractTestGallery {
     addSection(GWT.create(ProgressBarTest.class),
         "Shows what progress bars look like at various times when running tests.");
 
+    addSection(GWT.create(ThrottledProgressListenerTest.class),
+        "Verifies that the progress bar is updated at most once per frame.");
+
+    addSection(GWT.create(TestHistoryTest.class),
+        "Verifies that test times are remembered between runs and used to estimate progress.");
+
+    addSection(GWT.create(RunOrderTest.class),
+        "Verifies that tests can run failed-first, longest-first, or in a random order.");
+
+    addSection(GWT.create(SharderTest.class),
+        "Verifies that a gallery can be split into balanced shards that run separately.");
+
+    addSection(GWT.create(TestSelectorTest.class),
+        "Verifies that test classes and methods can be selected using wildcards.");
+
     addSection(GWT.create(GalleryRunnerTest.class),
         "Shows what the errors look like if a gallery is configured incorrectly.");
 
@@ -93,15 +122,39 @@ public class Gallery extends AbstractTestGallery {
     addSection(GWT.create(MethodResultPageTest.class),
         "Shows the method result page will appear as the result of running various tests.");
 
+    addSection(GWT.create(MethodResultRecorderTest.class),
+        "Verifies that method result pages can be created after the tests run.");
+
+    addSection(GWT.create(OutputLogTest.class),
+        "Verifies that test output can be recorded and replayed later.");
+
+    addSection(GWT.create(PhaseTimesTest.class),
+        "Verifies that the time a test spends in each phase is added up correctly.");
+
+    addSection(GWT.create(ResultUploaderTest.class),
+        "Verifies that test results are collected and uploaded to the server in batches.");
+
     addSection(GWT.create(ElementTreeViewTest.class),
         "Shows what the 'HTML Tree' tab will look like when a test takes "
         + "a snapshot of a widget or DOM element.");
 
+    addSection(GWT.create(ElementDiffTest.class),
+        "Shows how the differences between two widgets or DOM elements are displayed.");
+
     // util
 
     addSection(GWT.create(HtmlWriterTest.class),
         "Verifies that we can create HTML fragments.");
 
+    addSection(GWT.create(SchedulerTest.class),
+        "Verifies that the scheduler runs steps in the right order.");
+
+    addSection(GWT.create(TraceLogTest.class),
+        "Verifies that timing traces are written in Chrome's Trace Event Format.");
+
+    addSection(GWT.create(DiffTest.class),
+        "Verifies that we can find the differences between two strings.");
+
     // testgal.testing
 
     addSection(GWT.create(TestLocalTest.class),
@@ -110,7 +163,10 @@ public class Gallery extends AbstractTestGallery {
     // testgal.client
 
     addSection(GWT.create(AsyncTest.class),
-        "Verifies that we can run an asynchronous test.");
+        "Verifies that we can run an asynchronous test. (These tests run concurrently.)", 2);
+
+    addSection(GWT.create(InheritedTest.class),
+        "Verifies that test methods inherited from a superclass are run.");
 
     // testgal.shared
     
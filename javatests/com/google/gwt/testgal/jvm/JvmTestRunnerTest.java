@@ -0,0 +1,368 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.jvm;
+
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.testgal.api.shared.TestOutput;
+import com.google.gwt.testgal.jvm.MethodResult.Status;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies that the {@link JvmTestRunner} runs each test method and reports
+ * its result. (This test runs in the JVM, so it's not in the gallery.)
+ *
+ * @author Brian Slesinsky
+ */
+public class JvmTestRunnerTest extends TestCase {
+
+  public void testReportsEachMethod() throws Exception {
+    List<MethodResult> results = run(1, ExampleTest.class);
+    assertEquals(3, results.size());
+
+    MethodResult error = results.get(0);
+    assertEquals("testError", error.getMethodName());
+    assertEquals(Status.FAILED, error.getStatus());
+    assertEquals("The test method threw an exception.", error.getMessage());
+    assertEquals("oops", error.getFailure().getMessage());
+
+    MethodResult fail = results.get(1);
+    assertEquals("testFail", fail.getMethodName());
+    assertEquals(Status.FAILED, fail.getStatus());
+    assertEquals("The test failed due to an assertion.", fail.getMessage());
+
+    MethodResult pass = results.get(2);
+    assertEquals(ExampleTest.class.getName() + ".testPass: passed", pass.toString());
+    assertNull(pass.getFailure());
+    assertEquals("hello from testPass\n", pass.getOutput());
+  }
+
+  public void testTearDownRunsAfterFailure() throws Exception {
+    List<MethodResult> results = run(1, BadTearDownTest.class);
+    assertEquals(1, results.size());
+    assertEquals("The test failed due to an assertion.", results.get(0).getMessage());
+    assertEquals("tearDown ran\n", results.get(0).getOutput());
+  }
+
+  public void testSetUpFailure() throws Exception {
+    List<MethodResult> results = run(1, BadSetUpTest.class);
+    assertEquals(Status.FAILED, results.get(0).getStatus());
+    assertEquals("This test failed in its setUp() method.", results.get(0).getMessage());
+  }
+
+  public void testSkipsGWTTestCase() throws Exception {
+    List<MethodResult> results = run(1, BrowserTest.class);
+    assertEquals(1, results.size());
+    assertEquals(Status.SKIPPED, results.get(0).getStatus());
+  }
+
+  public void testRunsMethodsConcurrently() throws Exception {
+    ConcurrentTest.barrier = new CyclicBarrier(4);
+    List<MethodResult> results = run(4, ConcurrentTest.class);
+    assertEquals(4, results.size());
+    for (MethodResult result : results) {
+      assertEquals(result.toString(), Status.PASSED, result.getStatus());
+    }
+  }
+
+  public void testThreadPerTestRunsMethodsConcurrently() throws Exception {
+    ConcurrentTest.barrier = new CyclicBarrier(4);
+    List<MethodResult> results = run(JvmTestRunner.threadPerTest(4), ConcurrentTest.class);
+    for (MethodResult result : results) {
+      assertEquals(result.toString(), Status.PASSED, result.getStatus());
+    }
+  }
+
+  public void testConcurrentTestsGetTheirOwnOutput() throws Exception {
+    List<MethodResult> results = run(JvmTestRunner.threadPerTest(8), ChattyTest.class);
+    assertEquals(8, results.size());
+    for (MethodResult result : results) {
+      assertEquals(result.toString(), Status.PASSED, result.getStatus());
+      String expectedLine = result.getMethodName() + "\n";
+      StringBuilder expected = new StringBuilder();
+      for (int i = 0; i < ChattyTest.LINES; i++) {
+        expected.append(expectedLine);
+      }
+      assertEquals(expected.toString(), result.getOutput());
+    }
+  }
+
+  public void testThreadPerTestLimitsConcurrency() throws Exception {
+    CountingTest.running.set(0);
+    CountingTest.maxRunning.set(0);
+    List<MethodResult> results = run(JvmTestRunner.threadPerTest(2), CountingTest.class);
+    assertEquals(6, results.size());
+    assertTrue("too many tests ran at once: " + CountingTest.maxRunning.get(),
+        CountingTest.maxRunning.get() <= 2);
+  }
+
+  public void testAsyncTestWaitsForFinish() throws Exception {
+    List<MethodResult> results = run(JvmTestRunner.threadPerTest(2), AsyncExampleTest.class);
+    assertEquals(2, results.size());
+
+    MethodResult finished = results.get(0);
+    assertEquals("testFinishesLater", finished.getMethodName());
+    assertEquals(Status.PASSED, finished.getStatus());
+    assertEquals("returned\nfinished\ntearDown\n", finished.getOutput());
+
+    MethodResult timedOut = results.get(1);
+    assertEquals("testNeverFinishes", timedOut.getMethodName());
+    assertEquals(Status.FAILED, timedOut.getStatus());
+    assertEquals("The asynchronous test timed out.", timedOut.getMessage());
+    assertEquals("tearDown\n", timedOut.getOutput());
+  }
+
+  public void testAsyncSupportNeedsRunner() throws Exception {
+    // not "this", since JvmTestRunner registers a callback for the running test
+    TestCase unregistered = new TestCase() {};
+    try {
+      AsyncSupport.delayTestFinish(unregistered, 1000);
+      fail("expected an exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  public void testShardsCoverEachClassOnce() throws Exception {
+    List<Class<? extends TestCase>> classes = new ArrayList<Class<? extends TestCase>>();
+    classes.add(ExampleTest.class);
+    classes.add(BadTearDownTest.class);
+    classes.add(BadSetUpTest.class);
+    classes.add(CountingTest.class);
+    classes.add(ChattyTest.class);
+
+    List<Class<? extends TestCase>> seen = new ArrayList<Class<? extends TestCase>>();
+    for (int shard = 1; shard <= 3; shard++) {
+      seen.addAll(JvmTestRunner.selectShard(classes, shard, 3));
+    }
+    assertEquals(classes.size(), seen.size());
+    assertTrue(seen.containsAll(classes));
+    assertEquals(classes, JvmTestRunner.selectShard(classes, 1, 1));
+  }
+
+  public void testFindsInheritedMethods() throws Exception {
+    List<MethodResult> results = run(1, InheritingTest.class);
+    assertEquals(3, results.size());
+    assertEquals("testBase", results.get(0).getMethodName());
+    assertEquals("testOverridden", results.get(1).getMethodName());
+    assertEquals(Status.PASSED, results.get(1).getStatus());
+    assertEquals("testOwn", results.get(2).getMethodName());
+  }
+
+  // ======== end of tests ========
+
+  private static List<MethodResult> run(int threadCount, Class<? extends TestCase> testClass)
+      throws InterruptedException {
+    return run(new JvmTestRunner(threadCount), testClass);
+  }
+
+  private static List<MethodResult> run(JvmTestRunner runner,
+      Class<? extends TestCase> testClass) throws InterruptedException {
+    List<Class<? extends TestCase>> classes = new ArrayList<Class<? extends TestCase>>();
+    classes.add(testClass);
+    return runner.run(classes);
+  }
+
+  abstract static class BaseTest extends TestCase {
+    public void testBase() {
+    }
+
+    public void testOverridden() {
+      fail("should have been overridden");
+    }
+  }
+
+  public static class InheritingTest extends BaseTest {
+    @Override
+    public void testOverridden() {
+    }
+
+    public void testOwn() {
+    }
+  }
+
+  public static class ExampleTest extends TestCase {
+    private TestOutput out;
+
+    @Override
+    protected void setUp() throws Exception {
+      super.setUp();
+      out = new TestOutput(this);
+    }
+
+    public void testPass() {
+      out.paragraph("hello from " + getName());
+    }
+
+    public void testFail() {
+      fail("expected failure");
+    }
+
+    public void testError() {
+      throw new IllegalStateException("oops");
+    }
+
+    public void helperNotATest() {
+      fail("shouldn't run");
+    }
+  }
+
+  public static class BadTearDownTest extends TestCase {
+    public void testFail() {
+      fail("expected failure");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+      new TestOutput(this).paragraph("tearDown ran");
+      throw new IllegalStateException("should be reported after the test's failure");
+    }
+  }
+
+  public static class BadSetUpTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+      throw new IllegalStateException("setUp failed");
+    }
+
+    public void testNothing() {}
+  }
+
+  /**
+   * Keeps track of how many test methods are running at once.
+   */
+  public static class CountingTest extends TestCase {
+    static final AtomicInteger running = new AtomicInteger();
+    static final AtomicInteger maxRunning = new AtomicInteger();
+
+    public void test1() throws Exception { count(); }
+    public void test2() throws Exception { count(); }
+    public void test3() throws Exception { count(); }
+    public void test4() throws Exception { count(); }
+    public void test5() throws Exception { count(); }
+    public void test6() throws Exception { count(); }
+
+    private static void count() throws InterruptedException {
+      int now = running.incrementAndGet();
+      while (true) {
+        int max = maxRunning.get();
+        if (now <= max || maxRunning.compareAndSet(max, now)) {
+          break;
+        }
+      }
+      Thread.sleep(20);
+      running.decrementAndGet();
+    }
+  }
+
+  /**
+   * Each test writes its name many times, while the other tests are doing the same.
+   */
+  public static class ChattyTest extends TestCase {
+    static final int LINES = 1000;
+
+    public void testA() { chat(); }
+    public void testB() { chat(); }
+    public void testC() { chat(); }
+    public void testD() { chat(); }
+    public void testE() { chat(); }
+    public void testF() { chat(); }
+    public void testG() { chat(); }
+    public void testH() { chat(); }
+
+    private void chat() {
+      TestOutput out = new TestOutput(this);
+      for (int i = 0; i < LINES; i++) {
+        out.paragraph(getName());
+      }
+    }
+  }
+
+  public static class AsyncExampleTest extends TestCase {
+    private TestOutput out;
+
+    @Override
+    protected void setUp() throws Exception {
+      super.setUp();
+      out = new TestOutput(this);
+    }
+
+    public void testFinishesLater() {
+      AsyncSupport.delayTestFinish(this, 10000);
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            return;
+          }
+          out.paragraph("finished");
+          AsyncSupport.finishTest(AsyncExampleTest.this);
+        }
+      }.start();
+      out.paragraph("returned");
+    }
+
+    public void testNeverFinishes() {
+      AsyncSupport.delayTestFinish(this, 10);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+      out.paragraph("tearDown");
+      super.tearDown();
+    }
+  }
+
+  public static class BrowserTest extends GWTTestCase {
+    @Override
+    public String getModuleName() {
+      return "com.google.gwt.testgal.TestSuite";
+    }
+
+    public void testNeedsBrowser() {}
+  }
+
+  /**
+   * Each test method waits until all of them are running.
+   */
+  public static class ConcurrentTest extends TestCase {
+    static CyclicBarrier barrier;
+
+    public void testA() throws Exception {
+      barrier.await(10, TimeUnit.SECONDS);
+    }
+
+    public void testB() throws Exception {
+      barrier.await(10, TimeUnit.SECONDS);
+    }
+
+    public void testC() throws Exception {
+      barrier.await(10, TimeUnit.SECONDS);
+    }
+
+    public void testD() throws Exception {
+      barrier.await(10, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.testgal.results.server;
+
+import com.google.gwt.testgal.results.shared.TestResult;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that a {@link ResultStore} saves results and reads them back.
+ * (This test runs in the JVM, so it's not in the gallery.)
+ *
+ * @author Brian Slesinsky
+ */
+public class ResultStoreTest extends TestCase {
+
+  private File dir;
+  private ResultStore store;
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = File.createTempFile("results", "");
+    assertTrue(dir.delete());
+    store = new ResultStore(new File(dir, "results"));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    deleteTree(dir);
+  }
+
+  public void testSaveAndLoad() throws Exception {
+    store.save("run-1", new TestResult[] {
+        new TestResult("FooTest", "testOne", "PASSED", 12,
+            new String[] {"setUp", "test method"}, new long[] {2, 10},
+            new String[] {"heading: tab\there", "paragraph: two\nlines, a \\ backslash"}),
+        new TestResult("FooTest", "testTwo", "FAILED", 3, new String[0], new long[0],
+            new String[0]),
+    });
+    store.save("run-1", new TestResult[] {
+        new TestResult("BarTest", "testThree", "PASSED", 0, new String[0], new long[0],
+            new String[] {""}),
+    });
+
+    List<TestResult> results = store.load("run-1");
+    assertEquals(3, results.size());
+
+    TestResult first = results.get(0);
+    assertEquals("FooTest.testOne: PASSED", first.toString());
+    assertEquals(12, first.getElapsedMillis());
+    assertEquals(Arrays.asList("setUp", "test method"), Arrays.asList(first.getPhaseNames()));
+    assertEquals(10, first.getPhaseMillis()[1]);
+    assertEquals(Arrays.asList("heading: tab\there", "paragraph: two\nlines, a \\ backslash"),
+        Arrays.asList(first.getOutput()));
+
+    assertEquals("FooTest.testTwo: FAILED", results.get(1).toString());
+    assertEquals(0, results.get(1).getOutput().length);
+    assertEquals(Arrays.asList(""), Arrays.asList(results.get(2).getOutput()));
+
+    assertEquals(Arrays.asList("run-1"), store.listRuns());
+  }
+
+  public void testUnknownRun() throws Exception {
+    assertEquals(0, store.load("run-2").size());
+    assertEquals(0, store.listRuns().size());
+  }
+
+  public void testRejectsBadRunIds() throws Exception {
+    assertFalse(ResultStore.isValidRunId(null));
+    assertFalse(ResultStore.isValidRunId(""));
+    assertFalse(ResultStore.isValidRunId("../escape"));
+    assertTrue(ResultStore.isValidRunId("run-123_4"));
+    try {
+      store.save("../escape", new TestResult[0]);
+      fail("expected an exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  // ======== end of tests ========
+
+  private static void deleteTree(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteTree(child);
+      }
+    }
+    file.delete();
+  }
+}